@@ -0,0 +1,117 @@
+package dk.nykredit.api.capabilities;
+
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Defines a seek (keyset) based pagination of responses by using the Query Parameter <code>cursor</code>.
+ *
+ * The cursor points at a position in an ordered result set, the position is given by the last modified time
+ * of an element together with the semantic id of that element, which makes the position unique. The cursor is
+ * delivered to the consumers as an opaque token in the <code>next</code> and <code>prev</code> links of a
+ * response and the consumers must not try to build or interpret tokens themselves.
+ *
+ * <p>
+ * Example:
+ * <code>
+ * https://banking.services.sample-bank.dk/accounts/1234-56789/transactions?cursor=YTE0NzY0NDk4NDYuMHw...
+ * </code>
+ * which returns the elements following the element the cursor was created from.
+ * </p>
+ * Using a cursor instead of the <code>elements</code> capability lets the persistence seek directly to the
+ * position in an index instead of reading and skipping all elements in front of the page.
+ */
+public class Cursor {
+    private static final char AFTER = 'a';
+    private static final char BEFORE = 'b';
+
+    private final Instant time;
+    private final String id;
+    private final boolean after;
+
+    private Cursor(Instant time, String id, boolean after) {
+        this.time = time;
+        this.id = id;
+        this.after = after;
+    }
+
+    /**
+     * @return a cursor pointing at the elements following the element at the given position
+     */
+    public static Cursor after(Instant time, String id) {
+        return new Cursor(time, id, true);
+    }
+
+    /**
+     * @return a cursor pointing at the elements preceding the element at the given position
+     */
+    public static Cursor before(Instant time, String id) {
+        return new Cursor(time, id, false);
+    }
+
+    /**
+     * @return the time of the element the cursor was created from
+     */
+    public Instant getTime() {
+        return time;
+    }
+
+    /**
+     * @return the semantic id of the element the cursor was created from
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return true if the cursor points at the elements following the position, false if it is the preceding ones
+     */
+    public boolean isAfter() {
+        return after;
+    }
+
+    /**
+     * @return the opaque token representing the cursor
+     */
+    public String getToken() {
+        String position = (after ? AFTER : BEFORE) + Long.toString(time.getEpochSecond()) + "." + time.getNano() + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * A cursor from a token previously delivered by {@link #getToken()}.
+     *
+     * @param token an opaque cursor token
+     * @return a cursor or empty if the token is not a valid cursor token
+     */
+    public static Optional<Cursor> getCursor(String token) {
+        if (null == token || !token.matches("^[A-Za-z0-9_\\-]+$")) {
+            return Optional.empty();
+        }
+        String position;
+        try {
+            position = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (!position.matches("^[ab][0-9]+\\.[0-9]{1,9}\\|[a-zA-Z_0-9\\-]+$")) {
+            return Optional.empty();
+        }
+        int dot = position.indexOf('.');
+        int pipe = position.indexOf('|');
+        String id = Sanitizer.sanitize(position.substring(pipe + 1), false, true);
+        if (id.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            long seconds = Long.parseLong(position.substring(1, dot));
+            int nanos = Integer.parseInt(position.substring(dot + 1, pipe));
+            return Optional.of(new Cursor(Instant.ofEpochSecond(seconds, nanos), id, AFTER == position.charAt(0)));
+        } catch (NumberFormatException | DateTimeException e) {
+            return Optional.empty();
+        }
+    }
+}
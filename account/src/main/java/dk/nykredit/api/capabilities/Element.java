@@ -45,6 +45,13 @@ public class Element {
         return end;
     }
 
+    /**
+     * @return the number of instances in the desired sequence
+     */
+    public int size() {
+        return end - start + 1;
+    }
+
     /**
      * A span of elements.
      * The syntax supported is given by the regexp: <code>"^([0-9]+)?(\\|[0-9]+)?"</code>
@@ -12,6 +12,8 @@ import javax.annotation.security.PermitAll;
 import javax.annotation.security.RolesAllowed;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.validation.Valid;
 import javax.validation.constraints.Pattern;
 import javax.ws.rs.Consumes;
@@ -20,6 +22,7 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
@@ -28,14 +31,19 @@ import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
+import dk.nykredit.api.capabilities.Select;
+import dk.nykredit.api.capabilities.Sort;
 import dk.nykredit.bank.account.exposure.rs.model.AccountRepresentation;
 import dk.nykredit.bank.account.exposure.rs.model.AccountSparseRepresentation;
 import dk.nykredit.bank.account.exposure.rs.model.AccountUpdateRepresentation;
 import dk.nykredit.bank.account.exposure.rs.model.AccountsRepresentation;
 import dk.nykredit.bank.account.model.Account;
+import dk.nykredit.bank.account.model.AccountOverview;
 import dk.nykredit.bank.account.persistence.AccountArchivist;
+import dk.nykredit.jackson.dataformat.hal.HALLink;
 import dk.nykredit.nic.core.logging.LogDuration;
 import dk.nykredit.nic.rs.EntityResponseBuilder;
+import dk.nykredit.nic.rs.HALCollectionOutput;
 import dk.nykredit.nic.rs.error.ErrorRepresentation;
 import dk.nykredit.time.CurrentTime;
 import io.swagger.annotations.*;
@@ -60,6 +68,7 @@ import org.slf4j.LoggerFactory;
  * the versioned resources.
  */
 @Stateless
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
 @Path("/accounts")
 @PermitAll
 @DeclareRoles("advisor")
@@ -81,14 +90,17 @@ public class AccountServiceExposure {
                             }
                     )
             },
-            produces = "application/hal+json, application/hal+json;concept=accountoverview;v=1",
+            tags = {"select", "sort", "accounts"},
+            produces = "application/hal+json, application/hal+json;concept=accountoverview;v=1, " +
+                    "application/hal+json;concept=accountexport;v=1",
             notes = "List all accounts in a default projection, which is AccountOverview version 1" +
                     "Supported projections and versions are: " +
                     "AccountOverview in version 1 " +
                     "The Accept header for the default version is application/hal+json;concept=AccountOverview;v=1.0.0.... " +
                     "The format for the default version is {....}", nickname = "listAccounts")
-    public Response list(@Context UriInfo uriInfo, @Context Request request) {
-        return listServiceGeneration1Version1(uriInfo, request);
+    public Response list(@QueryParam("select") String select, @QueryParam("sort") String sort,
+                         @Context UriInfo uriInfo, @Context Request request) {
+        return listServiceGeneration1Version1(select, sort, uriInfo, request);
     }
 
     @GET
@@ -115,6 +127,7 @@ public class AccountServiceExposure {
     }
 
     @PUT
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
     @RolesAllowed("advisor")
     @Path("{regNo}-{accountNo}")
     @Produces({"application/hal+json"})
@@ -176,13 +189,39 @@ public class AccountServiceExposure {
     @GET
     @Produces({"application/hal+json;concept=accountoverview;v=1", "application/hal+json+accountoverview+1"})
     @LogDuration(limit = 50)
-    public Response listServiceGeneration1Version1(@Context UriInfo uriInfo, @Context Request request) {
-        List<Account> accounts = archivist.listAccounts();
+    public Response listServiceGeneration1Version1(@QueryParam("select") String select, @QueryParam("sort") String sort,
+                                                   @Context UriInfo uriInfo, @Context Request request) {
+        List<AccountOverview> accounts = archivist.listAccounts(Select.getSelections(select), Sort.getSortings(sort));
         return new EntityResponseBuilder<>(accounts, list -> new AccountsRepresentation(list, uriInfo))
                 .maxAge(10)
                 .build(request);
     }
 
+    /**
+     * The export projection has the same form as the account overview, but the accounts are streamed to the consumer
+     * as they are read, which keeps the memory used by the service constant regardless of the number of accounts.
+     */
+    @GET
+    @Produces({"application/hal+json;concept=accountexport;v=1", "application/hal+json+accountexport+1"})
+    @LogDuration(limit = 50)
+    public Response exportServiceGeneration1Version1(@QueryParam("select") String select, @QueryParam("sort") String sort,
+                                                     @Context UriInfo uriInfo) {
+        List<Select> selectAs = Select.getSelections(select);
+        List<Sort> sortAs = Sort.getSortings(sort);
+        HALLink self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(AccountServiceExposure.class)
+                .build())
+                .build();
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("concept", "accountexport");
+        parameters.put("v", "1");
+        return Response.ok(new HALCollectionOutput<AccountOverview, AccountRepresentation>(self, "accounts",
+                        accounts -> archivist.streamAccounts(selectAs, sortAs, accounts),
+                        account -> new AccountRepresentation(account, uriInfo)))
+                .type(EntityResponseBuilder.getMediaType(parameters, true))
+                .build();
+    }
+
     @GET
     @Path("{regNo}-{accountNo}")
     @Produces({"application/hal+json;concept=account;v=1", "application/hal+json+account+1"})
@@ -223,7 +262,7 @@ public class AccountServiceExposure {
     public Response getServiceGeneration1Version2(@PathParam("regNo") @Pattern(regexp = "^[0-9]{4}$") String regNo,
                                                   @PathParam("accountNo") @Pattern(regexp = "^[0-9]+$") String accountNo,
                                                   @Context UriInfo uriInfo, @Context Request request) {
-        Account account = archivist.getAccount(regNo, accountNo);
+        Account account = archivist.getAccountWithTransactions(regNo, accountNo);
         LOGGER.info("Usage - application/hal+json;concept=account;v=2");
         return new EntityResponseBuilder<>(account, acc -> new AccountRepresentation(acc, acc.getTransactions(), uriInfo))
                 .name("account")
@@ -0,0 +1,202 @@
+package dk.nykredit.bank.account.exposure.rs;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.annotation.security.DeclareRoles;
+import javax.annotation.security.PermitAll;
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.validation.Valid;
+import javax.validation.constraints.Pattern;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+
+import dk.nykredit.bank.account.exposure.rs.model.ConsumerOffsetRepresentation;
+import dk.nykredit.bank.account.exposure.rs.model.ConsumerOffsetUpdateRepresentation;
+import dk.nykredit.bank.account.exposure.rs.model.ConsumerOffsetsRepresentation;
+import dk.nykredit.bank.account.model.ConsumerOffset;
+import dk.nykredit.bank.account.persistence.AccountArchivist;
+import dk.nykredit.nic.core.logging.LogDuration;
+import dk.nykredit.nic.rs.EntityResponseBuilder;
+import dk.nykredit.nic.rs.error.ErrorRepresentation;
+
+import io.swagger.annotations.*;
+
+/**
+ * REST exposure of the offsets committed by the subscribers of the event feed.
+ *
+ * A subscriber commits the watermark it has reached in a category, or in the complete feed using the category
+ * <code>all</code>, and continues from the committed offset when it is restarted by following the next link of the
+ * offset to the page of the feed that follows the watermark. A commit gives the watermark the subscriber started from
+ * and is rejected with a conflict if another watermark has been committed since, which keeps two instances of a
+ * subscriber from overwriting each other's progress.
+ *
+ * The offsets report the number of events following the watermark and the list of offsets is ordered by it, which
+ * shows the subscribers falling behind the feed first.
+ */
+@Stateless
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+@PermitAll
+@Path("/account-events-consumers")
+@DeclareRoles("tx-system")
+@Api(value = "/account-events-consumers",
+     tags = {"events"})
+public class ConsumerOffsetServiceExposure {
+
+    @EJB
+    private AccountArchivist archivist;
+
+    @GET
+    @Produces({"application/hal+json"})
+    @ApiOperation(value = "list the offsets committed by the subscribers of the event feed", response = ConsumerOffsetsRepresentation.class,
+            notes = "the offsets are ordered by their lag, i.e., the subscribers that are furthest behind the feed come first",
+            authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
+            tags = {"events"},
+            produces = "application/hal+json,  application/hal+json;concept=consumeroffsets;v=1",
+            nickname = "listConsumerOffsets")
+    public Response list(@Context UriInfo uriInfo, @Context Request request) {
+        return listSG1V1(uriInfo, request);
+    }
+
+    @GET
+    @Produces({"application/hal+json;concept=consumeroffsets;v=1", "application/hal+json+account+consumeroffsets+1"})
+    @LogDuration(limit = 50)
+    public Response listSG1V1(@Context UriInfo uriInfo, @Context Request request) {
+        UriBuilder self = uriInfo.getBaseUriBuilder()
+                .path(ConsumerOffsetServiceExposure.class);
+        return offsets(archivist.getConsumerOffsets(Optional.empty()), self, uriInfo, request);
+    }
+
+    @GET
+    @Path("{consumer}")
+    @Produces({"application/hal+json"})
+    @ApiOperation(value = "list the offsets committed by a subscriber of the event feed", response = ConsumerOffsetsRepresentation.class,
+            authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
+            tags = {"events"},
+            produces = "application/hal+json,  application/hal+json;concept=consumeroffsets;v=1",
+            nickname = "listOffsetsOfConsumer")
+    public Response listConsumer(@PathParam("consumer") String consumer, @Context UriInfo uriInfo, @Context Request request) {
+        return listConsumerSG1V1(consumer, uriInfo, request);
+    }
+
+    @GET
+    @Path("{consumer}")
+    @Produces({"application/hal+json;concept=consumeroffsets;v=1", "application/hal+json+account+consumeroffsets+1"})
+    @LogDuration(limit = 50)
+    public Response listConsumerSG1V1(@PathParam("consumer") String consumer, @Context UriInfo uriInfo,
+                                      @Context Request request) {
+        UriBuilder self = uriInfo.getBaseUriBuilder()
+                .path(ConsumerOffsetServiceExposure.class)
+                .path(ConsumerOffsetServiceExposure.class, "listConsumer")
+                .resolveTemplate("consumer", consumer);
+        return offsets(archivist.getConsumerOffsets(Optional.of(consumer)), self, uriInfo, request);
+    }
+
+    @GET
+    @Path("{consumer}/{category}")
+    @Produces({"application/hal+json"})
+    @ApiOperation(value = "obtain the offset a subscriber has committed for a category", response = ConsumerOffsetRepresentation.class,
+            notes = "the offset links to the page of the feed following the committed watermark, from where the subscriber continues",
+            authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
+            tags = {"events"},
+            produces = "application/hal+json,  application/hal+json;concept=consumeroffset;v=1",
+            nickname = "getConsumerOffset")
+    @ApiResponses(value = {
+            @ApiResponse(code = 404, message = "No offset found.")
+    })
+    public Response get(@PathParam("consumer") String consumer, @PathParam("category") String category,
+                        @Context UriInfo uriInfo, @Context Request request) {
+        return getSG1V1(consumer, category, uriInfo, request);
+    }
+
+    /**
+     * The offset changes whenever the subscriber commits and is thus not cached.
+     */
+    @GET
+    @Path("{consumer}/{category}")
+    @Produces({"application/hal+json;concept=consumeroffset;v=1", "application/hal+json+account+consumeroffset+1"})
+    @LogDuration(limit = 50)
+    public Response getSG1V1(@PathParam("consumer") String consumer, @PathParam("category") String category,
+                             @Context UriInfo uriInfo, @Context Request request) {
+        ConsumerOffset offset = archivist.getConsumerOffset(consumer, category);
+        return new EntityResponseBuilder<>(offset, o -> representation(o, uriInfo))
+                .name("consumeroffset")
+                .version("1")
+                .build(request);
+    }
+
+    @PUT
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    @Path("{consumer}/{category}")
+    @Produces({"application/hal+json"})
+    @Consumes(MediaType.APPLICATION_JSON)
+    @LogDuration(limit = 50)
+    @ApiOperation(value = "Commit the offset of a subscriber for a category", response = ConsumerOffsetRepresentation.class,
+            authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
+            notes = "PUT commits the watermark if the committed watermark is still the previous watermark given, the first " +
+                    "offset of a subscriber for a category is committed without a previous watermark",
+            consumes = "application/json",
+            produces = "application/hal+json, application/hal+json;concept=consumeroffset;v=1",
+            nickname = "commitConsumerOffset")
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "Could not commit the offset", response = ErrorRepresentation.class),
+            @ApiResponse(code = 409, message = "Another watermark has been committed, the current offset is returned",
+                    response = ConsumerOffsetRepresentation.class)
+    })
+    public Response commit(@PathParam("consumer") @Pattern(regexp = "^.{1,36}$") String consumer,
+                           @PathParam("category") @Pattern(regexp = "^.{1,36}$") String category,
+                           @ApiParam(value = "offset") @Valid ConsumerOffsetUpdateRepresentation offset,
+                           @Context UriInfo uriInfo, @Context Request request) {
+        long watermark = Long.parseLong(offset.getWatermark());
+        long previous = null == offset.getPrevious() ? 0L : Long.parseLong(offset.getPrevious());
+        boolean committed = archivist.commitConsumerOffset(consumer, category, previous, watermark);
+
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("concept", "consumeroffset");
+        parameters.put("v", "1");
+
+        return Response.status(committed ? Response.Status.OK : Response.Status.CONFLICT)
+                .entity(representation(archivist.getConsumerOffset(consumer, category), uriInfo))
+                .type(EntityResponseBuilder.getMediaType(parameters, true))
+                .build();
+    }
+
+    private Response offsets(List<ConsumerOffset> offsets, UriBuilder self, UriInfo uriInfo, Request request) {
+        return new EntityResponseBuilder<>(offsets, os -> new ConsumerOffsetsRepresentation(os.stream()
+                .map(o -> representation(o, uriInfo))
+                .sorted(Comparator.comparing((ConsumerOffsetRepresentation o) -> Long.parseLong(o.getLag())).reversed())
+                .collect(Collectors.toList()), self))
+                .name("consumeroffsets")
+                .version("1")
+                .build(request);
+    }
+
+    private ConsumerOffsetRepresentation representation(ConsumerOffset offset, UriInfo uriInfo) {
+        return new ConsumerOffsetRepresentation(offset,
+                archivist.getLag(feed(offset.getCategory()), offset.getWatermark()), uriInfo);
+    }
+
+    /**
+     * @return the category of the feed followed by the offset or empty for the complete feed
+     */
+    private static Optional<String> feed(String category) {
+        return ConsumerOffset.ALL.equals(category) ? Optional.empty() : Optional.of(category);
+    }
+}
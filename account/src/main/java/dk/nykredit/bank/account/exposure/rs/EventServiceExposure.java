@@ -1,34 +1,61 @@
 package dk.nykredit.bank.account.exposure.rs;
 
+import java.time.Duration;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
 
 import javax.annotation.security.DeclareRoles;
 import javax.annotation.security.PermitAll;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
+import dk.nykredit.api.capabilities.Element;
 import dk.nykredit.api.capabilities.Interval;
+import dk.nykredit.api.capabilities.Select;
+import dk.nykredit.api.capabilities.Sort;
 import dk.nykredit.bank.account.exposure.rs.model.EventRepresentation;
+import dk.nykredit.bank.account.exposure.rs.model.EventSnapshotRepresentation;
 import dk.nykredit.bank.account.exposure.rs.model.EventsMetadataRepresentation;
 import dk.nykredit.bank.account.exposure.rs.model.EventsRepresentation;
 import dk.nykredit.bank.account.model.Event;
+import dk.nykredit.bank.account.model.EventOverview;
+import dk.nykredit.bank.account.model.EventSequencer;
+import dk.nykredit.bank.account.model.EventSnapshot;
 import dk.nykredit.bank.account.persistence.AccountArchivist;
+import dk.nykredit.bank.account.persistence.EventNotifier;
+import dk.nykredit.jackson.dataformat.hal.HALLink;
 import dk.nykredit.nic.core.logging.LogDuration;
 import dk.nykredit.nic.rs.EntityResponseBuilder;
+import dk.nykredit.nic.rs.HALCollectionOutput;
+import dk.nykredit.nic.rs.ServerSentEventOutput;
 import dk.nykredit.time.CurrentTime;
 
 import io.swagger.annotations.*;
@@ -39,22 +66,44 @@ import io.swagger.annotations.*;
  * category - can be regNo-accountNo if the events are related to a given account and that would be the case for eg. transactions
  * belonging to a given account. The default category is named (default) but any category can be used, it has to unique though.
  *
+ * Subscribers may follow the feed by polling the pages following their watermark, by long-polling or by receiving the
+ * events pushed as server-sent events, the two latter are signalled by the {@link EventNotifier} as events are stored.
+ * Subscribers that read the feed from the start may instead follow the chain of pages beginning at
+ * <code>pages/0</code>, which are fixed in size and never change once full, and are thus served from HTTP caches.
+ * A subscriber joining the feed of a category late may start from the snapshot of the category and the page
+ * following it. Events covered by the snapshots are pruned over time, a subscriber reading the feed from a watermark
+ * below the events pruned is answered <code>410 Gone</code> and must start over from the snapshots.
+ *
  * The metadata resource should evolve further in order for it to take metadata as something that is delivered by a dynamic
  * content setup such as the the DCN++ a combination between a classical cdn and a json based content delivery.
  */
 @Stateless
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
 @PermitAll
 @Path("/account-events")
 @DeclareRoles("tx-system")
 @Api(value = "/account-events",
      tags = {"events"})
 public class EventServiceExposure {
+    private static final String SERVER_SENT_EVENTS = "text/event-stream";
     private static final String CONCEPT_NAME = "accountEvent";
     private static final String CONCEPT_VERSION = "1.0.0";
+    private static final int FEED_LIMIT = 100;
+    private static final int FEED_TAIL_MAX_AGE = 5;
+    private static final int PAGE_SIZE = 100;
+    private static final int PAGE_MAX_AGE = 365 * 24 * 60 * 60;
+    private static final Duration PAGE_SETTLE_TIME = Duration.ofMinutes(15);
+    private static final int POLL_WAIT = 30;
+    private static final int POLL_MAX_WAIT = 60;
+    private static final Duration STREAM_DURATION = Duration.ofMinutes(5);
+    private static final int STREAM_RETRY_AFTER = 30;
 
     @EJB
     private AccountArchivist archivist;
 
+    @EJB
+    private EventNotifier notifier;
+
     @GET
     @Produces({"application/hal+json"})
     @ApiOperation(
@@ -63,13 +112,14 @@ public class EventServiceExposure {
                     "subscribers to the account service should be able to listen for and react to. In other words this is the authoritative" +
                     "feed for the account service",
             authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
-            tags = {"interval", "events"},
-            produces = "application/hal+json,  application/hal+json;concept=events;v=1",
+            tags = {"interval", "select", "sort", "after", "events"},
+            produces = "application/hal+json,  application/hal+json;concept=events;v=1,  application/hal+json;concept=eventexport;v=1",
             nickname = "listAllEvents"
     )
-    public Response listAll(@QueryParam("interval") String interval,
+    public Response listAll(@QueryParam("interval") String interval, @QueryParam("select") String select,
+                         @QueryParam("sort") String sort, @QueryParam("after") String after, @QueryParam("limit") String limit,
                          @Context UriInfo uriInfo, @Context Request request) {
-        return listAllSG1V1(interval, uriInfo, request);
+        return listAllSG1V1(interval, select, sort, after, limit, uriInfo, request);
     }
 
 
@@ -81,14 +131,16 @@ public class EventServiceExposure {
                     "subscribers to the account service should be able to listen for and react to. In other words this is the authoritative" +
                     "feed for the account service, allowing for subscribers to have these grouped into categories",
             authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
-            tags = {"interval", "events"},
-            produces = "application/hal+json,  application/hal+json;concept=eventcategory;v=1",
+            tags = {"interval", "select", "sort", "after", "events"},
+            produces = "application/hal+json,  application/hal+json;concept=eventcategory;v=1,  " +
+                    "application/hal+json;concept=eventcategoryexport;v=1",
             nickname = "getEventsByCategory"
     )
     public Response getByCategory(@PathParam("category") String category,
-                                @QueryParam("interval") String interval,
-                                @Context UriInfo uriInfo, @Context Request request) {
-        return listByCategorySG1V1(category, interval, uriInfo, request);
+                                @QueryParam("interval") String interval, @QueryParam("select") String select,
+                                @QueryParam("sort") String sort, @QueryParam("after") String after,
+                                @QueryParam("limit") String limit, @Context UriInfo uriInfo, @Context Request request) {
+        return listByCategorySG1V1(category, interval, select, sort, after, limit, uriInfo, request);
     }
 
     @GET
@@ -111,6 +163,105 @@ public class EventServiceExposure {
     }
 
 
+    @GET
+    @Path("pages/{after: \\d{1,18}}")
+    @Produces({"application/hal+json"})
+    @ApiOperation(value = "obtain a page of the event feed", response = EventsRepresentation.class,
+            notes = "a full page is immutable and thus can be cached for a long time, the head page is cached briefly",
+            authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
+            tags = {"immutable", "events"},
+            produces = "application/hal+json,  application/hal+json;concept=eventpage;v=1",
+            nickname = "getEventPage")
+    public Response getPage(@PathParam("after") long after, @Context UriInfo uriInfo, @Context Request request) {
+        return getPageSG1V1(after, uriInfo, request);
+    }
+
+    @GET
+    @Path("{category}/pages/{after: \\d{1,18}}")
+    @Produces({"application/hal+json"})
+    @ApiOperation(value = "obtain a page of the event feed of a category", response = EventsRepresentation.class,
+            notes = "a full page is immutable and thus can be cached for a long time, the head page is cached briefly",
+            authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
+            tags = {"immutable", "events"},
+            produces = "application/hal+json,  application/hal+json;concept=eventcategorypage;v=1",
+            nickname = "getEventCategoryPage")
+    public Response getCategoryPage(@PathParam("category") String category, @PathParam("after") long after,
+                                    @Context UriInfo uriInfo, @Context Request request) {
+        return getCategoryPageSG1V1(category, after, uriInfo, request);
+    }
+
+    /**
+     * A page of the feed holds the {@value #PAGE_SIZE} events following the watermark that opens it and links to the
+     * page opened by its last event, which means that the chain of pages from <code>pages/0</code> is the same for
+     * every subscriber and thus shared by the caches, see
+     * {@link #page(List, long, UriBuilder, Optional, String, UriInfo, Request)}.
+     */
+    @GET
+    @Path("pages/{after: \\d{1,18}}")
+    @Produces({"application/hal+json;concept=eventpage;v=1", "application/hal+json+account+eventpage+1"})
+    @LogDuration(limit = 50)
+    public Response getPageSG1V1(@PathParam("after") long after, @Context UriInfo uriInfo, @Context Request request) {
+        retained(after, Optional.empty(), uriInfo);
+        UriBuilder pages = uriInfo.getBaseUriBuilder()
+                .path(EventServiceExposure.class)
+                .path(EventServiceExposure.class, "getPage");
+        return page(archivist.getEventsAfter(after, PAGE_SIZE), after, pages, Optional.empty(), "eventpage", uriInfo, request);
+    }
+
+    /**
+     * A page of the feed of a category.
+     *
+     * @see #getPageSG1V1(long, UriInfo, Request)
+     */
+    @GET
+    @Path("{category}/pages/{after: \\d{1,18}}")
+    @Produces({"application/hal+json;concept=eventcategorypage;v=1", "application/hal+json+account+eventcategorypage+1"})
+    @LogDuration(limit = 50)
+    public Response getCategoryPageSG1V1(@PathParam("category") String category, @PathParam("after") long after,
+                                         @Context UriInfo uriInfo, @Context Request request) {
+        retained(after, Optional.of(category), uriInfo);
+        UriBuilder pages = uriInfo.getBaseUriBuilder()
+                .path(EventServiceExposure.class)
+                .path(EventServiceExposure.class, "getCategoryPage")
+                .resolveTemplate("category", category);
+        return page(archivist.getEventsForCategoryAfter(category, after, PAGE_SIZE), after, pages, Optional.of(category),
+                "eventcategorypage", uriInfo, request);
+    }
+
+    @GET
+    @Path("{category}/snapshot")
+    @Produces({"application/hal+json"})
+    @ApiOperation(value = "obtain the snapshot of a category", response = EventSnapshotRepresentation.class,
+            notes = "the snapshot summarises the events of the category up to its sequence and links to the page of the " +
+                    "feed following it, which allows a new subscriber to start from the snapshot",
+            authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
+            tags = {"events"},
+            produces = "application/hal+json,  application/hal+json;concept=eventsnapshot;v=1",
+            nickname = "getEventSnapshot")
+    @ApiResponses(value = {
+            @ApiResponse(code = 404, message = "No snapshot found.")
+    })
+    public Response getSnapshot(@PathParam("category") String category, @Context UriInfo uriInfo, @Context Request request) {
+        return getSnapshotSG1V1(category, uriInfo, request);
+    }
+
+    /**
+     * The snapshot is replaced when the category is compacted and is thus cached for as long as the lists of events.
+     */
+    @GET
+    @Path("{category}/snapshot")
+    @Produces({"application/hal+json;concept=eventsnapshot;v=1", "application/hal+json+account+eventsnapshot+1"})
+    @LogDuration(limit = 50)
+    public Response getSnapshotSG1V1(@PathParam("category") String category, @Context UriInfo uriInfo,
+                                     @Context Request request) {
+        EventSnapshot snapshot = archivist.getSnapshot(category);
+        return new EntityResponseBuilder<>(snapshot, s -> new EventSnapshotRepresentation(s, uriInfo))
+                .name("eventsnapshot")
+                .version("1")
+                .maxAge(60)
+                .build(request);
+    }
+
     @GET
     @Produces({"application/hal+json;concept=events;v=1", "application/hal+json+account+events+1"})
     @LogDuration(limit = 50)
@@ -121,10 +272,23 @@ public class EventServiceExposure {
      * "application/hal+json;concept=TransactionOverview;v=1.0.0" is removed and replaced with
      * "{"application/hal+json+account+event+1" then the endpoint will work with versioning.
      * The correct content-type controlled by the Accept header is "application/hal+json;concept=Event;v=1.0.0"
+     *
+     * A subscriber following the feed reads it from its watermark, which is given as <code>after</code>, and receives
+     * the events following the watermark in pages of at most <code>limit</code> events together with a link to the
+     * next page holding the new watermark, see {@link #feed(List, long, int, Optional, String, UriInfo, Request)}.
      */
-    public Response listAllSG1V1(String interval, UriInfo uriInfo, Request request) {
+    public Response listAllSG1V1(@QueryParam("interval") String interval, @QueryParam("select") String select,
+                                 @QueryParam("sort") String sort, @QueryParam("after") String after,
+                                 @QueryParam("limit") String limit, @Context UriInfo uriInfo, @Context Request request) {
+        Optional<Long> watermark = watermark(after);
+        if (watermark.isPresent()) {
+            retained(watermark.get(), Optional.empty(), uriInfo);
+            int size = limit(limit);
+            return feed(archivist.getEventsAfter(watermark.get(), size), watermark.get(), size, Optional.empty(), "events", uriInfo,
+                    request);
+        }
         Optional<Interval> withIn = Interval.getInterval(interval);
-        List<Event> events = archivist.findEvents(withIn);
+        List<EventOverview> events = archivist.findEvents(withIn, Select.getSelections(select), Sort.getSortings(sort));
         return new EntityResponseBuilder<>(events, txs -> new EventsRepresentation(events, uriInfo))
                 .name("events")
                 .version("1")
@@ -132,6 +296,25 @@ public class EventServiceExposure {
                 .build(request);
     }
 
+    /**
+     * The export projection has the same form as the events projection, but the events are streamed to the consumer
+     * as they are read, which allows for exporting the complete feed using a constant amount of memory in the service.
+     */
+    @GET
+    @Produces({"application/hal+json;concept=eventexport;v=1", "application/hal+json+account+eventexport+1"})
+    @LogDuration(limit = 50)
+    public Response exportAllSG1V1(@QueryParam("interval") String interval, @QueryParam("select") String select,
+                                   @QueryParam("sort") String sort, @Context UriInfo uriInfo) {
+        Optional<Interval> withIn = Interval.getInterval(interval);
+        List<Select> selectAs = Select.getSelections(select);
+        List<Sort> sortAs = Sort.getSortings(sort);
+        HALLink self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(EventServiceExposure.class)
+                .build())
+                .build();
+        return export(self, "eventexport", events -> archivist.streamEvents(withIn, selectAs, sortAs, events), uriInfo);
+    }
+
 
     @GET
     @Path("{category}")
@@ -144,19 +327,265 @@ public class EventServiceExposure {
      * "application/hal+json;concept=AccountEvent;v=1.0.0" is removed and replaced with
      * "{"application/hal+json+account+event+1" then the endpoint will work with versioning.
      * The correct content-type controlled by the Accept header is "application/hal+json;concept=Event;v=1.0.0"
+     *
+     * A subscriber may follow the feed of the category from its watermark in the same way as the complete feed.
      */
     public Response listByCategorySG1V1(@PathParam("category") String category,
-                                        @QueryParam("interval") String interval,
-                                        @Context UriInfo uriInfo, @Context Request request) {
+                                        @QueryParam("interval") String interval, @QueryParam("select") String select,
+                                        @QueryParam("sort") String sort, @QueryParam("after") String after,
+                                        @QueryParam("limit") String limit, @Context UriInfo uriInfo, @Context Request request) {
+        Optional<Long> watermark = watermark(after);
+        if (watermark.isPresent()) {
+            retained(watermark.get(), Optional.of(category), uriInfo);
+            int size = limit(limit);
+            return feed(archivist.getEventsForCategoryAfter(category, watermark.get(), size), watermark.get(), size,
+                    Optional.of(category), "eventcategory", uriInfo, request);
+        }
         Optional<Interval> withIn = Interval.getInterval(interval);
-        List<Event> events = archivist.getEventsForCategory(category, withIn);
-        return new EntityResponseBuilder<>(events, txs -> new EventsRepresentation(events, uriInfo))
+        List<EventOverview> events = archivist.getEventsForCategory(category, withIn, Select.getSelections(select),
+                Sort.getSortings(sort));
+        return new EntityResponseBuilder<>(events, txs -> new EventsRepresentation(events, uriInfo)
+                .withSnapshot(category, uriInfo))
                 .name("eventcategory")
                 .version("1")
                 .maxAge(60)
                 .build(request);
     }
 
+    /**
+     * Streams the events of a category to the consumer as they are read.
+     *
+     * @see #exportAllSG1V1(String, String, String, UriInfo)
+     */
+    @GET
+    @Path("{category}")
+    @Produces({"application/hal+json;concept=eventcategoryexport;v=1", "application/hal+json+account+eventcategoryexport+1"})
+    @LogDuration(limit = 50)
+    public Response exportByCategorySG1V1(@PathParam("category") String category,
+                                          @QueryParam("interval") String interval, @QueryParam("select") String select,
+                                          @QueryParam("sort") String sort, @Context UriInfo uriInfo) {
+        Optional<Interval> withIn = Interval.getInterval(interval);
+        List<Select> selectAs = Select.getSelections(select);
+        List<Sort> sortAs = Sort.getSortings(sort);
+        HALLink self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(EventServiceExposure.class)
+                .path(EventServiceExposure.class, "getByCategory")
+                .build(category))
+                .build();
+        return export(self, "eventcategoryexport",
+                events -> archivist.streamEventsForCategory(category, withIn, selectAs, sortAs, events), uriInfo);
+    }
+
+    /**
+     * Long-poll variant of the feed, which responds as soon as there are events following the watermark. If there are
+     * none the request is suspended until an event is stored or until <code>wait</code> seconds, 30 by default, have
+     * passed, in which case an empty page is returned. A suspended request does not hold a thread.
+     */
+    @GET
+    @Produces({"application/hal+json;concept=eventpoll;v=1", "application/hal+json+account+eventpoll+1"})
+    public void pollAllSG1V1(@QueryParam("after") String after, @QueryParam("limit") String limit,
+                             @QueryParam("wait") String wait, @Context UriInfo uriInfo, @Context Request request,
+                             @Suspended AsyncResponse response) {
+        int size = limit(limit);
+        long watermark = retained(watermark(after).orElse(0L), Optional.empty(), uriInfo);
+        poll(notifier.next(), watermark, size, wait(wait), w -> archivist.getEventsAfter(w, size), Optional.empty(),
+                "eventpoll", uriInfo, request, response);
+    }
+
+    /**
+     * Long-poll variant of the feed of a category.
+     *
+     * @see #pollAllSG1V1(String, String, String, UriInfo, Request, AsyncResponse)
+     */
+    @GET
+    @Path("{category}")
+    @Produces({"application/hal+json;concept=eventcategorypoll;v=1", "application/hal+json+account+eventcategorypoll+1"})
+    public void pollByCategorySG1V1(@PathParam("category") String category, @QueryParam("after") String after,
+                                    @QueryParam("limit") String limit, @QueryParam("wait") String wait,
+                                    @Context UriInfo uriInfo, @Context Request request, @Suspended AsyncResponse response) {
+        int size = limit(limit);
+        long watermark = retained(watermark(after).orElse(0L), Optional.of(category), uriInfo);
+        poll(notifier.next(category), watermark, size, wait(wait),
+                w -> archivist.getEventsForCategoryAfter(category, w, size), Optional.of(category), "eventcategorypoll",
+                uriInfo, request, response);
+    }
+
+    /**
+     * Pushes the events of the feed following the watermark as server-sent events as they are stored. The watermark
+     * is given by the <code>Last-Event-ID</code> header when the consumer reconnects or else by <code>after</code>.
+     * A stream is refused with 503 and a <code>Retry-After</code> header while the maximum number of streams are open,
+     * in which case the consumer may long-poll the feed instead.
+     */
+    @GET
+    @Produces(SERVER_SENT_EVENTS)
+    public Response streamAll(@QueryParam("after") String after, @HeaderParam("Last-Event-ID") String lastEventId,
+                              @Context UriInfo uriInfo) {
+        long watermark = retained(watermark(lastEventId).orElse(watermark(after).orElse(0L)), Optional.empty(), uriInfo);
+        return stream(watermark, w -> archivist.getEventsAfter(w, FEED_LIMIT), notifier::next, uriInfo);
+    }
+
+    /**
+     * Pushes the events of the feed of a category as server-sent events as they are stored.
+     *
+     * @see #streamAll(String, String, UriInfo)
+     */
+    @GET
+    @Path("{category}")
+    @Produces(SERVER_SENT_EVENTS)
+    public Response streamByCategory(@PathParam("category") String category, @QueryParam("after") String after,
+                                     @HeaderParam("Last-Event-ID") String lastEventId, @Context UriInfo uriInfo) {
+        long watermark = retained(watermark(lastEventId).orElse(watermark(after).orElse(0L)), Optional.of(category),
+                uriInfo);
+        return stream(watermark, w -> archivist.getEventsForCategoryAfter(category, w, FEED_LIMIT),
+                () -> notifier.next(category), uriInfo);
+    }
+
+    /**
+     * Reads the events following the watermark and responds if there are any, otherwise the response waits for the
+     * signal and reads again once the signal completes. The signal is asked for before the events are read, which
+     * means that an event stored in between is not missed.
+     */
+    private void poll(CompletableFuture<Void> signal, long after, int limit, int wait, LongFunction<List<EventOverview>> read,
+                      Optional<String> category, String concept, UriInfo uriInfo, Request request,
+                      AsyncResponse response) {
+        List<EventOverview> events = read.apply(after);
+        if (!events.isEmpty() || wait == 0) {
+            signal.cancel(false);
+            response.resume(feed(events, after, limit, category, concept, uriInfo, request));
+            return;
+        }
+        response.setTimeout(wait, TimeUnit.SECONDS);
+        response.setTimeoutHandler(suspended -> {
+            signal.cancel(false);
+            suspended.resume(feed(Collections.emptyList(), after, limit, category, concept, uriInfo, request));
+        });
+        signal.thenRun(() -> notifier.dispatch(
+                () -> response.resume(feed(read.apply(after), after, limit, category, concept, uriInfo, request))));
+    }
+
+    /**
+     * Streams the events following the watermark, which holds a container thread for as long as the stream lasts. The
+     * number of concurrent streams is capped, see {@link EventNotifier#openStream()}, and a consumer asking for a
+     * stream beyond that is told to retry later or to fall back to long-polling.
+     */
+    private Response stream(long watermark, LongFunction<List<EventOverview>> read, Supplier<Future<?>> signal,
+                            UriInfo uriInfo) {
+        if (!notifier.openStream()) {
+            throw new WebApplicationException(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", STREAM_RETRY_AFTER)
+                    .build());
+        }
+        StreamingOutput events = new ServerSentEventOutput<EventOverview, EventRepresentation>(watermark, read,
+                EventOverview::getSequence, event -> new EventRepresentation(event, uriInfo), signal, STREAM_DURATION);
+        CacheControl cc = new CacheControl();
+        cc.setNoCache(true);
+        return Response.ok((StreamingOutput) output -> {
+                    try {
+                        events.write(output);
+                    } finally {
+                        notifier.closeStream();
+                    }
+                })
+                .type(SERVER_SENT_EVENTS)
+                .cacheControl(cc)
+                .build();
+    }
+
+    private static int wait(String wait) {
+        if (null == wait || !wait.matches("^\\d{1,3}$")) {
+            return POLL_WAIT;
+        }
+        return Math.min(POLL_MAX_WAIT, Integer.parseInt(wait));
+    }
+
+    /**
+     * Responds with a page of the feed following the watermark and a link to the next page, which follows the last
+     * event of the page or, if the page is empty, the same watermark. A full page never changes and is cached for
+     * as long as the other lists of events, whereas a page that is not full is only cached briefly as new events are
+     * added to it. A page of the feed of a category links to the snapshot of the category.
+     */
+    private static Response feed(List<EventOverview> events, long after, int limit, Optional<String> category,
+                                 String concept, UriInfo uriInfo, Request request) {
+        long next = events.isEmpty() ? after : events.get(events.size() - 1).getSequence();
+        return new EntityResponseBuilder<>(events, es -> snapshot(new EventsRepresentation(events, next, uriInfo), category,
+                uriInfo))
+                .name(concept)
+                .version("1")
+                .maxAge(events.size() < limit ? FEED_TAIL_MAX_AGE : 60)
+                .build(request);
+    }
+
+    /**
+     * Responds with a page of the feed, which is sealed once it is full and the sequence of its last event was
+     * generated more than the settle time ago, see {@link EventSequencer#time(long)}. The sequences are generated as
+     * the outbox is relayed, see {@link AccountArchivist#relayOutbox}, and the settle time is kept well above the
+     * time a relay transaction may take before it commits, which is bounded by the transaction timeout of the
+     * container, so no event holding an earlier sequence is committed once a page is sealed. A sealed page never
+     * changes and is cached for a year, whereas the head page is cached briefly as events are still added to it.
+     * <p>
+     * The entity tag is made from the range and size of the page and is strong, as a sealed page having a given range
+     * and size always holds the same events. The tag only identifies the same page across nodes reading the same
+     * store, i.e., the event table shared by the nodes, the event log is kept by a single node, see
+     * {@link dk.nykredit.bank.account.persistence.EventLog}.
+     */
+    private static Response page(List<EventOverview> events, long after, UriBuilder pages, Optional<String> category,
+                                 String concept, UriInfo uriInfo, Request request) {
+        long next = events.isEmpty() ? after : events.get(events.size() - 1).getSequence();
+        boolean sealed = events.size() == PAGE_SIZE
+                && EventSequencer.time(next).isBefore(CurrentTime.now().minus(PAGE_SETTLE_TIME));
+        return new EntityResponseBuilder<>(events, es -> snapshot(new EventsRepresentation(events, pages.clone().build(after),
+                pages.clone().build(next), uriInfo), category, uriInfo))
+                .name(concept)
+                .version("1")
+                .tag(after + "-" + next + "-" + events.size())
+                .maxAge(sealed ? PAGE_MAX_AGE : FEED_TAIL_MAX_AGE)
+                .build(request);
+    }
+
+    private static EventsRepresentation snapshot(EventsRepresentation events, Optional<String> category, UriInfo uriInfo) {
+        return category.map(c -> events.withSnapshot(c, uriInfo)).orElse(events);
+    }
+
+    /**
+     * @return the watermark if no events following it have been pruned from the feed, otherwise the subscriber is
+     * answered <code>410 Gone</code>, which for a category links to the snapshot of the category to start over from
+     */
+    private long retained(long after, Optional<String> category, UriInfo uriInfo) {
+        if (after >= archivist.getPrunedSequence(category)) {
+            return after;
+        }
+        Response.ResponseBuilder gone = Response.status(Response.Status.GONE);
+        category.ifPresent(c -> gone.link(uriInfo.getBaseUriBuilder()
+                .path(EventServiceExposure.class)
+                .path(EventServiceExposure.class, "getSnapshot")
+                .build(c), "snapshot"));
+        throw new WebApplicationException(gone.build());
+    }
+
+    private static Optional<Long> watermark(String after) {
+        if (null == after || !after.matches("^\\d{1,18}$")) {
+            return Optional.empty();
+        }
+        return Optional.of(Long.valueOf(after));
+    }
+
+    private static int limit(String limit) {
+        if (null == limit || !limit.matches("^\\d{1,3}$")) {
+            return FEED_LIMIT;
+        }
+        return Math.max(1, Math.min(Element.MAX_ELEMENTS, Integer.parseInt(limit)));
+    }
+
+    private static Response export(HALLink self, String concept, Consumer<Consumer<EventOverview>> source, UriInfo uriInfo) {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("concept", concept);
+        parameters.put("v", "1");
+        return Response.ok(new HALCollectionOutput<EventOverview, EventRepresentation>(self, "events", source,
+                event -> new EventRepresentation(event, uriInfo)))
+                .type(EntityResponseBuilder.getMediaType(parameters, true))
+                .build();
+    }
+
     @GET
     @Path("{category}/{id}")
     @Produces({"application/hal+json;concept=event;v=1", "application/hal+json+account+event+1" })
@@ -2,6 +2,8 @@ package dk.nykredit.bank.account.exposure.rs;
 
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.validation.Valid;
 import javax.validation.constraints.Pattern;
 import javax.ws.rs.Consumes;
@@ -39,6 +41,7 @@ import io.swagger.annotations.*;
  * longer period.
  */
 @Stateless
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
 @Path("/accounts/{regNo}-{accountNo}/reconciled-transactions")
 @Api(value = "/accounts/{regNo}-{accountNo}/reconciled-transactions",
      tags = {"decorator", "reconciled"})
@@ -88,6 +91,7 @@ public class ReconciledTransactionServiceExposure {
     }
 
     @PUT
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
     @Path("{id}")
     @Produces({ "application/hal+json" })
     @Consumes(MediaType.APPLICATION_JSON)
@@ -128,7 +132,7 @@ public class ReconciledTransactionServiceExposure {
     @LogDuration(limit = 50)
     public Response listReconciledTransactionsSG1V1(@PathParam("regNo") String regNo, @PathParam("accountNo") String accountNo,
                                           @Context UriInfo uriInfo, @Context Request request) {
-        Account account = archivist.getAccount(regNo, accountNo);
+        Account account = archivist.getAccountWithReconciledTransactions(regNo, accountNo);
         return new EntityResponseBuilder<>(account.getReconciledTransactions(),
             transactions -> new ReconciledTransactionsRepresentation(account, uriInfo))
             .name("reconciledtransactions")
@@ -0,0 +1,221 @@
+package dk.nykredit.bank.account.exposure.rs;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.annotation.security.DeclareRoles;
+import javax.annotation.security.PermitAll;
+import javax.annotation.security.RolesAllowed;
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.validation.Valid;
+import javax.validation.constraints.Pattern;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+import dk.nykredit.bank.account.exposure.rs.model.DeadLettersRepresentation;
+import dk.nykredit.bank.account.exposure.rs.model.SubscriptionRepresentation;
+import dk.nykredit.bank.account.exposure.rs.model.SubscriptionUpdateRepresentation;
+import dk.nykredit.bank.account.exposure.rs.model.SubscriptionsRepresentation;
+import dk.nykredit.bank.account.exposure.webhook.WebhookDispatcher;
+import dk.nykredit.bank.account.model.ConsumerOffset;
+import dk.nykredit.bank.account.model.Subscription;
+import dk.nykredit.bank.account.persistence.AccountArchivist;
+import dk.nykredit.nic.core.logging.LogDuration;
+import dk.nykredit.nic.rs.EntityResponseBuilder;
+import dk.nykredit.nic.rs.error.ErrorRepresentation;
+
+import io.swagger.annotations.*;
+
+/**
+ * REST exposure of the subscriptions having the events of the feed pushed to an endpoint by the
+ * {@link WebhookDispatcher}.
+ *
+ * A subscription is registered for a category, or for the complete feed using the category <code>all</code>, and
+ * receives the events stored after it was registered. The name of a subscription is the consumer of its offset and
+ * cannot be the name of another consumer of the feed. The progress of the delivery is the offset committed under the
+ * name of the subscription and the batches that could not be delivered are listed as dead letters, each linking to
+ * the events of the batch in the feed.
+ */
+@Stateless
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
+@PermitAll
+@Path("/account-events-subscriptions")
+@DeclareRoles("tx-system")
+@Api(value = "/account-events-subscriptions",
+     tags = {"events"})
+public class SubscriptionServiceExposure {
+
+    @EJB
+    private AccountArchivist archivist;
+
+    @GET
+    @Produces({"application/hal+json"})
+    @ApiOperation(value = "list the subscriptions having the events pushed to them", response = SubscriptionsRepresentation.class,
+            authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
+            tags = {"events"},
+            produces = "application/hal+json,  application/hal+json;concept=subscriptions;v=1",
+            nickname = "listSubscriptions")
+    public Response list(@Context UriInfo uriInfo, @Context Request request) {
+        return listSG1V1(uriInfo, request);
+    }
+
+    @GET
+    @Produces({"application/hal+json;concept=subscriptions;v=1", "application/hal+json+account+subscriptions+1"})
+    @LogDuration(limit = 50)
+    public Response listSG1V1(@Context UriInfo uriInfo, @Context Request request) {
+        return new EntityResponseBuilder<>(archivist.getSubscriptions(), s -> new SubscriptionsRepresentation(s, uriInfo))
+                .name("subscriptions")
+                .version("1")
+                .build(request);
+    }
+
+    @GET
+    @Path("{name}")
+    @Produces({"application/hal+json"})
+    @ApiOperation(value = "obtain a subscription", response = SubscriptionRepresentation.class,
+            authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
+            tags = {"events"},
+            produces = "application/hal+json,  application/hal+json;concept=subscription;v=1",
+            nickname = "getSubscription")
+    @ApiResponses(value = {
+            @ApiResponse(code = 404, message = "No subscription found.")
+    })
+    public Response get(@PathParam("name") String name, @Context UriInfo uriInfo, @Context Request request) {
+        return getSG1V1(name, uriInfo, request);
+    }
+
+    @GET
+    @Path("{name}")
+    @Produces({"application/hal+json;concept=subscription;v=1", "application/hal+json+account+subscription+1"})
+    @LogDuration(limit = 50)
+    public Response getSG1V1(@PathParam("name") String name, @Context UriInfo uriInfo, @Context Request request) {
+        Subscription subscription = archivist.getSubscription(name);
+        return new EntityResponseBuilder<>(subscription, s -> new SubscriptionRepresentation(s, uriInfo))
+                .name("subscription")
+                .version("1")
+                .build(request);
+    }
+
+    @PUT
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    @RolesAllowed("tx-system")
+    @Path("{name}")
+    @Produces({"application/hal+json"})
+    @Consumes(MediaType.APPLICATION_JSON)
+    @LogDuration(limit = 50)
+    @ApiOperation(value = "Register a new or change the endpoint of an existing subscription", response = SubscriptionRepresentation.class,
+            authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
+            notes = "PUT registers a subscription receiving the events stored from now on under a name not used by " +
+                    "other consumers of the feed, and may be used to change the endpoint of the subscription",
+            consumes = "application/json",
+            produces = "application/hal+json, application/hal+json;concept=subscription;v=1",
+            nickname = "updateSubscription")
+    @ApiResponses(value = {
+            @ApiResponse(code = 400, message = "Could not register or update the subscription", response = ErrorRepresentation.class),
+            @ApiResponse(code = 409, message = "The name is in use by a consumer of the feed", response = ErrorRepresentation.class),
+            @ApiResponse(code = 201, message = "New Subscription Registered", response = SubscriptionRepresentation.class)
+    })
+    public Response createOrUpdate(@PathParam("name") @Pattern(regexp = "^.{1,36}$") String name,
+                                   @ApiParam(value = "subscription") @Valid SubscriptionUpdateRepresentation update,
+                                   @Context UriInfo uriInfo, @Context Request request) {
+        String category = null == update.getCategory() ? ConsumerOffset.ALL : update.getCategory();
+        Optional<Subscription> existing = archivist.findSubscription(name);
+        if (existing.isPresent() && !existing.get().getCategory().equals(category)) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+
+        URI endpoint = endpoint(update.getEndpoint());
+        Subscription subscription;
+        if (existing.isPresent()) {
+            subscription = existing.get();
+            subscription.setEndpoint(endpoint);
+        } else {
+            if (!archivist.getConsumerOffsets(Optional.of(name)).isEmpty()) {
+                throw new WebApplicationException(Response.Status.CONFLICT);
+            }
+            subscription = new Subscription(name, category, endpoint);
+            long last = archivist.getLastSequence(ConsumerOffset.ALL.equals(category) ? Optional.empty() : Optional.of(category));
+            if (!archivist.commitConsumerOffset(name, category, 0L, last)) {
+                throw new WebApplicationException(Response.Status.CONFLICT);
+            }
+        }
+        archivist.save(subscription);
+
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("concept", "subscription");
+        parameters.put("v", "1");
+
+        return Response.status(existing.isPresent() ? Response.Status.OK : Response.Status.CREATED)
+                .location(existing.isPresent() ? null : URI.create(uriInfo.getPath()))
+                .entity(new SubscriptionRepresentation(subscription, uriInfo))
+                .type(EntityResponseBuilder.getMediaType(parameters, true))
+                .build();
+    }
+
+    private static URI endpoint(String endpoint) {
+        try {
+            return URI.create(endpoint);
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+    }
+
+    @DELETE
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    @RolesAllowed("tx-system")
+    @Path("{name}")
+    @LogDuration(limit = 50)
+    @ApiOperation(value = "Remove a subscription, which stops the events from being pushed to it",
+            authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
+            nickname = "removeSubscription")
+    @ApiResponses(value = {
+            @ApiResponse(code = 204, message = "Subscription removed."),
+            @ApiResponse(code = 404, message = "No subscription found.")
+    })
+    public Response remove(@PathParam("name") String name) {
+        if (!archivist.removeSubscription(name)) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+        return Response.noContent().build();
+    }
+
+    @GET
+    @Path("{name}/dead-letters")
+    @Produces({"application/hal+json"})
+    @ApiOperation(value = "list the batches that could not be pushed to a subscription", response = DeadLettersRepresentation.class,
+            notes = "each batch links to its events in the feed, from where the subscriber may read them",
+            authorizations = {@Authorization(value = "Bearer"), @Authorization(value = "oauth")},
+            tags = {"events"},
+            produces = "application/hal+json,  application/hal+json;concept=deadletters;v=1",
+            nickname = "listDeadLetters")
+    public Response listDeadLetters(@PathParam("name") String name, @Context UriInfo uriInfo, @Context Request request) {
+        return listDeadLettersSG1V1(name, uriInfo, request);
+    }
+
+    @GET
+    @Path("{name}/dead-letters")
+    @Produces({"application/hal+json;concept=deadletters;v=1", "application/hal+json+account+deadletters+1"})
+    @LogDuration(limit = 50)
+    public Response listDeadLettersSG1V1(@PathParam("name") String name, @Context UriInfo uriInfo, @Context Request request) {
+        return new EntityResponseBuilder<>(archivist.getDeadLetters(name), letters -> new DeadLettersRepresentation(name, letters, uriInfo))
+                .name("deadletters")
+                .version("1")
+                .build(request);
+    }
+}
@@ -3,6 +3,7 @@ package dk.nykredit.bank.account.exposure.rs;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -14,6 +15,8 @@ import javax.annotation.security.PermitAll;
 import javax.annotation.security.RolesAllowed;
 import javax.ejb.EJB;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.validation.Valid;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
@@ -30,15 +33,19 @@ import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
+import dk.nykredit.api.capabilities.Cursor;
 import dk.nykredit.api.capabilities.Element;
 import dk.nykredit.api.capabilities.Interval;
+import dk.nykredit.api.capabilities.Select;
 import dk.nykredit.api.capabilities.Sort;
 import dk.nykredit.bank.account.exposure.rs.model.TransactionRepresentation;
 import dk.nykredit.bank.account.exposure.rs.model.TransactionUpdateRepresentation;
 import dk.nykredit.bank.account.exposure.rs.model.TransactionsRepresentation;
 import dk.nykredit.bank.account.model.Account;
 import dk.nykredit.bank.account.model.Event;
+import dk.nykredit.bank.account.model.OutboxMessage;
 import dk.nykredit.bank.account.model.Transaction;
+import dk.nykredit.bank.account.model.TransactionOverview;
 import dk.nykredit.bank.account.persistence.AccountArchivist;
 import dk.nykredit.nic.rs.EntityResponseBuilder;
 import dk.nykredit.nic.rs.error.ErrorRepresentation;
@@ -50,6 +57,7 @@ import io.swagger.annotations.*;
  * REST exposure of account transactions.
  */
 @Stateless
+@TransactionAttribute(TransactionAttributeType.SUPPORTS)
 @PermitAll
 @DeclareRoles("tx-system")
 @Path("/accounts/{regNo}-{accountNo}/transactions")
@@ -70,16 +78,17 @@ public class TransactionServiceExposure {
                     @AuthorizationScope(scope = "customer", description = "allows getting own account"),
                     @AuthorizationScope(scope = "advisor", description = "allows getting every account")})
             },
-            tags = {"sort", "elements", "interval", "transactions"},
+            tags = {"select", "sort", "elements", "interval", "cursor", "transactions"},
             produces = "application/hal+json, application/hal+json;concept=transactionoverview;v=1",
             nickname = "listTransactions"
     )
     public Response list(@PathParam("regNo") String regNo, @PathParam("accountNo") String accountNo,
-                         @QueryParam("sort") String sort, @QueryParam("elements") String elements,
-                         @QueryParam("interval") String interval,
+                         @QueryParam("select") String select, @QueryParam("sort") String sort,
+                         @QueryParam("elements") String elements,
+                         @QueryParam("interval") String interval, @QueryParam("cursor") String cursor,
                          @Context UriInfo uriInfo, @Context Request request) {
 
-        return listTransactionsSG1V1(regNo, accountNo, sort, elements, interval, uriInfo, request);
+        return listTransactionsSG1V1(regNo, accountNo, select, sort, elements, interval, cursor, uriInfo, request);
     }
 
     @GET
@@ -103,6 +112,7 @@ public class TransactionServiceExposure {
     }
 
     @PUT
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
     @Path("{id}")
     @RolesAllowed("tx-system")
     @Produces({ "application/hal+json" })
@@ -129,9 +139,7 @@ public class TransactionServiceExposure {
         if (acc.isPresent()) {
             a = acc.get();
             try {
-                t = new Transaction(a, new BigDecimal(tx.getAmount()), tx.getDescription());
-                a.addTransaction(t.getDescription(), t.getAmount());
-                archivist.save(a);
+                t = a.addTransaction(tx.getDescription(), new BigDecimal(tx.getAmount()));
 
                 CacheControl cc = new CacheControl();
                 int maxAge = 30;
@@ -147,8 +155,9 @@ public class TransactionServiceExposure {
                         .status(201)
                         .type(EntityResponseBuilder.getMediaType(parameters, true))
                         .build();
-                Event newTX = new Event(new URI(uriInfo.getPath()), Event.getCategory(accountNo, regNo), "new transaction on account " + regNo + "-" + accountNo);
-                archivist.save(newTX);
+                OutboxMessage newTX = new OutboxMessage(new URI(uriInfo.getPath()), Event.getCategory(accountNo, regNo),
+                        "new transaction on account " + regNo + "-" + accountNo);
+                archivist.saveAll(Arrays.asList(t, newTX));
                 return response;
             } catch (URISyntaxException e) {
                 throw new WebApplicationException(Response.Status.INTERNAL_SERVER_ERROR);
@@ -173,14 +182,24 @@ public class TransactionServiceExposure {
      * The correct content-type controlled by the Accept header is "application/hal+json;concept=Transaction;v=1.0.0"
      */
     public Response listTransactionsSG1V1(@PathParam("regNo") String regNo, @PathParam("accountNo") String accountNo,
-                                          @QueryParam("sort") String sort, @QueryParam("elements") String elements,
-                                          @QueryParam("interval") String interval,
+                                          @QueryParam("select") String select, @QueryParam("sort") String sort,
+                                          @QueryParam("elements") String elements,
+                                          @QueryParam("interval") String interval, @QueryParam("cursor") String cursor,
                                           @Context UriInfo uriInfo, @Context Request request) {
         List<Sort> sortAs = Sort.getSortings(sort);
         Optional<Element> elementSet = Element.getElement(elements);
         Optional<Interval> withIn = Interval.getInterval(interval);
-        List<Transaction> transactions = archivist.getTransactions(regNo, accountNo, elementSet, withIn, sortAs);
-        return new EntityResponseBuilder<>(transactions, txs -> new TransactionsRepresentation(regNo, accountNo, transactions, uriInfo))
+        Optional<Cursor> at = Cursor.getCursor(cursor);
+        List<TransactionOverview> transactions = archivist.getTransactions(regNo, accountNo, Select.getSelections(select), elementSet, withIn, sortAs, at);
+        boolean pageable = sortAs.isEmpty() && !transactions.isEmpty();
+        boolean backwards = at.filter(c -> !c.isAfter()).isPresent();
+        boolean full = transactions.size() >= elementSet.map(Element::size).orElse(Element.MAX_ELEMENTS);
+        boolean skipped = at.isPresent() || elementSet.filter(e -> e.getStart() > 1).isPresent();
+        Optional<Cursor> next = pageable && (backwards || full)
+                ? Optional.of(cursorAfter(transactions.get(transactions.size() - 1))) : Optional.empty();
+        Optional<Cursor> prev = pageable && (backwards ? full : skipped)
+                ? Optional.of(cursorBefore(transactions.get(0))) : Optional.empty();
+        return new EntityResponseBuilder<>(transactions, txs -> new TransactionsRepresentation(regNo, accountNo, txs, next, prev, uriInfo))
                 .name("transactionoverview")
                 .version("1")
                 .maxAge(10)
@@ -208,4 +227,12 @@ public class TransactionServiceExposure {
                 .version("1")
                 .build(request);
     }
+
+    private static Cursor cursorAfter(TransactionOverview transaction) {
+        return Cursor.after(transaction.getLastModifiedTime().toInstant(), transaction.getId());
+    }
+
+    private static Cursor cursorBefore(TransactionOverview transaction) {
+        return Cursor.before(transaction.getLastModifiedTime().toInstant(), transaction.getId());
+    }
 }
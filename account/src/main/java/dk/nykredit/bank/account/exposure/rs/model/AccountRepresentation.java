@@ -1,8 +1,11 @@
 package dk.nykredit.bank.account.exposure.rs.model;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -11,6 +14,7 @@ import javax.ws.rs.core.UriInfo;
 import dk.nykredit.bank.account.exposure.rs.AccountServiceExposure;
 import dk.nykredit.bank.account.exposure.rs.TransactionServiceExposure;
 import dk.nykredit.bank.account.model.Account;
+import dk.nykredit.bank.account.model.AccountOverview;
 import dk.nykredit.bank.account.model.Transaction;
 import dk.nykredit.jackson.dataformat.hal.HALLink;
 import dk.nykredit.jackson.dataformat.hal.annotation.EmbeddedResource;
@@ -29,6 +33,9 @@ public class AccountRepresentation {
     private String regNo;
     private String accountNo;
     private String name;
+    private String balance;
+    private long transactionCount;
+    private String lastTransactionTime;
 
     @EmbeddedResource("transactions")
     private Collection<TransactionRepresentation> transactions;
@@ -48,16 +55,30 @@ public class AccountRepresentation {
     }
 
     public AccountRepresentation(Account account, UriInfo uriInfo) {
-        this.regNo = account.getRegNo();
-        this.accountNo = account.getAccountNo();
-        this.name = account.getName();
+        this(account.getRegNo(), account.getAccountNo(), account.getName(), account.getBalance(),
+            account.getTransactionCount(), account.getLastTransactionTime(), uriInfo);
+    }
+
+    public AccountRepresentation(AccountOverview account, UriInfo uriInfo) {
+        this(account.getRegNo(), account.getAccountNo(), account.getName(), account.getBalance(),
+            account.getTransactionCount(), account.getLastTransactionTime(), uriInfo);
+    }
+
+    private AccountRepresentation(String regNo, String accountNo, String name, BigDecimal balance, long transactionCount,
+                                  Optional<Instant> lastTransactionTime, UriInfo uriInfo) {
+        this.regNo = regNo;
+        this.accountNo = accountNo;
+        this.name = name;
+        this.balance = balance.toPlainString();
+        this.transactionCount = transactionCount;
+        this.lastTransactionTime = lastTransactionTime.map(Instant::toString).orElse(null);
         this.transactionsResource = new HALLink.Builder(uriInfo.getBaseUriBuilder()
             .path(TransactionServiceExposure.class)
-            .build(account.getRegNo(), account.getAccountNo())).build();
+            .build(regNo, accountNo)).build();
         this.self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
             .path(AccountServiceExposure.class)
             .path(AccountServiceExposure.class, "get")
-            .build(account.getRegNo(), account.getAccountNo()))
+            .build(regNo, accountNo))
             .build();
     }
 
@@ -91,6 +112,36 @@ public class AccountRepresentation {
         return name;
     }
 
+    @ApiModelProperty(
+            access = "public",
+            name = "balance",
+            example = "1234.42",
+            notes = "the balance of the account, which is the sum of the amounts of the transactions on the account.",
+            value = "Read-only")
+    public String getBalance() {
+        return balance;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "transactionCount",
+            example = "42",
+            notes = "the number of transactions that have taken place for the account.",
+            value = "Read-only")
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "lastTransactionTime",
+            example = "2016-10-14T12:57:26Z",
+            notes = "the time of the latest transaction on the account, not present if there are no transactions.",
+            value = "Read-only")
+    public String getLastTransactionTime() {
+        return lastTransactionTime;
+    }
+
     @ApiModelProperty(
             access = "public",
             name = "transactions",
@@ -9,7 +9,7 @@ import java.util.stream.Collectors;
 import javax.ws.rs.core.UriInfo;
 
 import dk.nykredit.bank.account.exposure.rs.AccountServiceExposure;
-import dk.nykredit.bank.account.model.Account;
+import dk.nykredit.bank.account.model.AccountOverview;
 import dk.nykredit.jackson.dataformat.hal.HALLink;
 import dk.nykredit.jackson.dataformat.hal.annotation.EmbeddedResource;
 import dk.nykredit.jackson.dataformat.hal.annotation.Link;
@@ -31,7 +31,7 @@ public class AccountsRepresentation {
     @EmbeddedResource("accounts")
     private Collection<AccountRepresentation> accounts;
 
-    public AccountsRepresentation(List<Account> accounts, UriInfo uriInfo) {
+    public AccountsRepresentation(List<AccountOverview> accounts, UriInfo uriInfo) {
         this.accounts = new ArrayList<>();
         this.accounts.addAll(accounts.stream().map(account -> new AccountRepresentation(account, uriInfo)).collect(Collectors.toList()));
         this.self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
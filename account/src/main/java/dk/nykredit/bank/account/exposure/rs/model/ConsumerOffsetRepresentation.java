@@ -0,0 +1,113 @@
+package dk.nykredit.bank.account.exposure.rs.model;
+
+import javax.ws.rs.core.UriInfo;
+
+import dk.nykredit.bank.account.exposure.rs.ConsumerOffsetServiceExposure;
+import dk.nykredit.bank.account.exposure.rs.EventServiceExposure;
+import dk.nykredit.bank.account.model.ConsumerOffset;
+import dk.nykredit.jackson.dataformat.hal.HALLink;
+import dk.nykredit.jackson.dataformat.hal.annotation.Link;
+import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Represents the offset a subscriber has committed for a category as returned by the REST service, the next link
+ * points to the page of the feed that follows the committed watermark.
+ */
+@Resource
+@ApiModel(value = "ConsumerOffset",
+        description = "The watermark a subscriber of the event feed has committed for a category")
+
+public class ConsumerOffsetRepresentation {
+    private String consumer;
+    private String category;
+    private String watermark;
+    private String lag;
+    private String time;
+
+    @Link
+    private HALLink self;
+
+    @Link
+    private HALLink next;
+
+    public ConsumerOffsetRepresentation(ConsumerOffset offset, long lag, UriInfo uriInfo) {
+        this.consumer = offset.getConsumer();
+        this.category = offset.getCategory();
+        this.watermark = Long.toString(offset.getWatermark());
+        this.lag = Long.toString(lag);
+        this.time = offset.getTime().toString();
+        this.self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(ConsumerOffsetServiceExposure.class)
+                .path(ConsumerOffsetServiceExposure.class, "get")
+                .build(consumer, category)).build();
+        this.next = new HALLink.Builder(ConsumerOffset.ALL.equals(category)
+                ? uriInfo.getBaseUriBuilder()
+                    .path(EventServiceExposure.class)
+                    .path(EventServiceExposure.class, "getPage")
+                    .build(offset.getWatermark())
+                : uriInfo.getBaseUriBuilder()
+                    .path(EventServiceExposure.class)
+                    .path(EventServiceExposure.class, "getCategoryPage")
+                    .build(category, offset.getWatermark())).build();
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "consumer",
+            example = "statement-service",
+            notes = "the subscriber that committed the offset.")
+    public String getConsumer() {
+        return consumer;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "category",
+            example = "1234-12345678",
+            notes = "the category followed by the subscriber, or all for the complete feed.")
+    public String getCategory() {
+        return category;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "watermark",
+            notes = "the sequence of the last event handled by the subscriber.")
+    public String getWatermark() {
+        return watermark;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "lag",
+            notes = "the number of events following the watermark, i.e., how far the subscriber is behind.")
+    public String getLag() {
+        return lag;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "time",
+            notes = "the time the watermark was committed.")
+    public String getTime() {
+        return time;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "self",
+            notes = "link to the offset itself.")
+    public HALLink getSelf() {
+        return self;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "next",
+            notes = "link to the page of the event feed that follows the watermark.")
+    public HALLink getNext() {
+        return next;
+    }
+}
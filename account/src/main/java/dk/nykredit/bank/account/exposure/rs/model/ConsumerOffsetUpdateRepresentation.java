@@ -0,0 +1,45 @@
+package dk.nykredit.bank.account.exposure.rs.model;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * The input necessary for committing the offset of a subscriber of the event feed.
+ */
+@ApiModel(value = "ConsumerOffsetUpdate",
+        description = "the input necessary for committing an offset")
+
+public class ConsumerOffsetUpdateRepresentation {
+
+    @NotNull
+    @Pattern(regexp = "^[0-9]{1,18}$")
+    private String watermark;
+
+    @Pattern(regexp = "^[0-9]{1,18}$")
+    private String previous;
+
+    @ApiModelProperty(
+            access = "public",
+            name = "watermark",
+            required = true,
+            example = "1234",
+            notes = "the sequence of the last event handled by the subscriber.",
+            value = "Readable and Writeable")
+    public String getWatermark() {
+        return watermark;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "previous",
+            example = "1200",
+            notes = "the watermark the subscriber read before handling the events, the commit is rejected if another "
+                    + "watermark has been committed since, left out when the first offset is committed.",
+            value = "Write-only")
+    public String getPrevious() {
+        return previous;
+    }
+}
@@ -0,0 +1,54 @@
+package dk.nykredit.bank.account.exposure.rs.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.core.UriInfo;
+
+import dk.nykredit.bank.account.exposure.rs.ConsumerOffsetServiceExposure;
+import dk.nykredit.jackson.dataformat.hal.HALLink;
+import dk.nykredit.jackson.dataformat.hal.annotation.EmbeddedResource;
+import dk.nykredit.jackson.dataformat.hal.annotation.Link;
+import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Represents a set of committed offsets from the REST service exposure ordered by their lag, i.e., the subscribers
+ * that are furthest behind come first.
+ */
+@Resource
+@ApiModel(value = "ConsumerOffsets",
+        description = "a list of the offsets committed by subscribers of the event feed")
+public class ConsumerOffsetsRepresentation {
+
+    @Link
+    private HALLink self;
+
+    @EmbeddedResource("offsets")
+    private Collection<ConsumerOffsetRepresentation> offsets;
+
+    public ConsumerOffsetsRepresentation(List<ConsumerOffsetRepresentation> offsets, UriBuilder self) {
+        this.offsets = new ArrayList<>(offsets);
+        this.self = new HALLink.Builder(self.build()).build();
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "self",
+            notes = "link to the offset list itself.")
+    public HALLink getSelf() {
+        return self;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "offsets",
+            notes = "offset list.")
+    public Collection<ConsumerOffsetRepresentation> getOffsets() {
+        return Collections.unmodifiableCollection(offsets);
+    }
+}
@@ -0,0 +1,107 @@
+package dk.nykredit.bank.account.exposure.rs.model;
+
+import javax.ws.rs.core.UriInfo;
+
+import dk.nykredit.bank.account.exposure.rs.EventServiceExposure;
+import dk.nykredit.bank.account.model.ConsumerOffset;
+import dk.nykredit.bank.account.model.DeadLetter;
+import dk.nykredit.jackson.dataformat.hal.HALLink;
+import dk.nykredit.jackson.dataformat.hal.annotation.Link;
+import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Represents a batch that could not be pushed to a subscription as returned by the REST service, the events link
+ * points to the page of the feed starting with the first event of the batch.
+ */
+@Resource
+@ApiModel(value = "DeadLetter",
+        description = "A batch of events that could not be pushed to a subscription")
+
+public class DeadLetterRepresentation {
+    private String firstSequence;
+    private String lastSequence;
+    private String eventCount;
+    private String attempts;
+    private String reason;
+    private String time;
+
+    @Link
+    private HALLink events;
+
+    public DeadLetterRepresentation(DeadLetter letter, UriInfo uriInfo) {
+        this.firstSequence = Long.toString(letter.getFirstSequence());
+        this.lastSequence = Long.toString(letter.getLastSequence());
+        this.eventCount = Integer.toString(letter.getEventCount());
+        this.attempts = Integer.toString(letter.getAttempts());
+        this.reason = letter.getReason();
+        this.time = letter.getTime().toString();
+        long after = letter.getFirstSequence() - 1;
+        this.events = new HALLink.Builder(ConsumerOffset.ALL.equals(letter.getCategory())
+                ? uriInfo.getBaseUriBuilder()
+                    .path(EventServiceExposure.class)
+                    .path(EventServiceExposure.class, "getPage")
+                    .build(after)
+                : uriInfo.getBaseUriBuilder()
+                    .path(EventServiceExposure.class)
+                    .path(EventServiceExposure.class, "getCategoryPage")
+                    .build(letter.getCategory(), after)).build();
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "firstSequence",
+            notes = "the sequence of the first event of the batch.")
+    public String getFirstSequence() {
+        return firstSequence;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "lastSequence",
+            notes = "the sequence of the last event of the batch.")
+    public String getLastSequence() {
+        return lastSequence;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "eventCount",
+            notes = "the number of events in the batch.")
+    public String getEventCount() {
+        return eventCount;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "attempts",
+            notes = "the number of times the batch was pushed.")
+    public String getAttempts() {
+        return attempts;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "reason",
+            notes = "the reason the last attempt failed.")
+    public String getReason() {
+        return reason;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "time",
+            notes = "the time the batch was given up.")
+    public String getTime() {
+        return time;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "events",
+            notes = "link to the page of the event feed starting with the first event of the batch.")
+    public HALLink getEvents() {
+        return events;
+    }
+}
@@ -0,0 +1,73 @@
+package dk.nykredit.bank.account.exposure.rs.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.core.UriInfo;
+
+import dk.nykredit.bank.account.exposure.rs.SubscriptionServiceExposure;
+import dk.nykredit.bank.account.model.DeadLetter;
+import dk.nykredit.jackson.dataformat.hal.HALLink;
+import dk.nykredit.jackson.dataformat.hal.annotation.EmbeddedResource;
+import dk.nykredit.jackson.dataformat.hal.annotation.Link;
+import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Represents the batches that could not be pushed to a subscription from the REST service exposure.
+ */
+@Resource
+@ApiModel(value = "DeadLetters",
+        description = "a list of the batches that could not be pushed to a subscription")
+public class DeadLettersRepresentation {
+
+    @Link
+    private HALLink self;
+
+    @Link
+    private HALLink subscription;
+
+    @EmbeddedResource("deadLetters")
+    private Collection<DeadLetterRepresentation> deadLetters;
+
+    public DeadLettersRepresentation(String subscription, List<DeadLetter> deadLetters, UriInfo uriInfo) {
+        this.deadLetters = deadLetters.stream()
+                .map(letter -> new DeadLetterRepresentation(letter, uriInfo))
+                .collect(Collectors.toList());
+        this.self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(SubscriptionServiceExposure.class)
+                .path(SubscriptionServiceExposure.class, "listDeadLetters")
+                .build(subscription)).build();
+        this.subscription = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(SubscriptionServiceExposure.class)
+                .path(SubscriptionServiceExposure.class, "get")
+                .build(subscription)).build();
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "self",
+            notes = "link to the dead letter list itself.")
+    public HALLink getSelf() {
+        return self;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "subscription",
+            notes = "link to the subscription.")
+    public HALLink getSubscription() {
+        return subscription;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "deadLetters",
+            notes = "dead letter list.")
+    public Collection<DeadLetterRepresentation> getDeadLetters() {
+        return Collections.unmodifiableCollection(deadLetters);
+    }
+}
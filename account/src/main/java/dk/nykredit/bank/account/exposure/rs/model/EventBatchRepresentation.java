@@ -0,0 +1,91 @@
+package dk.nykredit.bank.account.exposure.rs.model;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.core.UriBuilder;
+
+import dk.nykredit.bank.account.exposure.rs.SubscriptionServiceExposure;
+import dk.nykredit.bank.account.model.EventOverview;
+import dk.nykredit.jackson.dataformat.hal.HALLink;
+import dk.nykredit.jackson.dataformat.hal.annotation.EmbeddedResource;
+import dk.nykredit.jackson.dataformat.hal.annotation.Link;
+import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Represents a batch of events pushed to the endpoint of a subscription, the events are embedded in the same form as
+ * they are read from the feed and ordered by their sequence.
+ */
+@Resource
+@ApiModel(value = "EventBatch",
+        description = "A batch of immutable events pushed to a subscriber")
+
+public class EventBatchRepresentation {
+    private String subscription;
+    private String firstSequence;
+    private String lastSequence;
+
+    @EmbeddedResource("events")
+    private Collection<EventRepresentation> events;
+
+    @Link("subscription")
+    private HALLink subscriptionLink;
+
+    public EventBatchRepresentation(String subscription, List<EventOverview> events, URI base) {
+        this.subscription = subscription;
+        this.firstSequence = events.get(0).getSequence().toString();
+        this.lastSequence = events.get(events.size() - 1).getSequence().toString();
+        this.events = events.stream()
+                .map(event -> new EventRepresentation(event, base))
+                .collect(Collectors.toList());
+        this.subscriptionLink = new HALLink.Builder(UriBuilder.fromUri(base)
+                .path(SubscriptionServiceExposure.class)
+                .path(SubscriptionServiceExposure.class, "get")
+                .build(subscription)).build();
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "subscription",
+            notes = "the name of the subscription the batch is pushed to.")
+    public String getSubscription() {
+        return subscription;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "firstSequence",
+            notes = "the sequence of the first event in the batch.")
+    public String getFirstSequence() {
+        return firstSequence;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "lastSequence",
+            notes = "the sequence of the last event in the batch, which becomes the offset of the subscription once the batch is accepted.")
+    public String getLastSequence() {
+        return lastSequence;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "events",
+            notes = "the events of the batch.")
+    public Collection<EventRepresentation> getEvents() {
+        return Collections.unmodifiableCollection(events);
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "subscription",
+            notes = "link to the subscription the batch is pushed to.")
+    public HALLink getSubscriptionLink() {
+        return subscriptionLink;
+    }
+}
@@ -1,9 +1,15 @@
 package dk.nykredit.bank.account.exposure.rs.model;
 
+import java.net.URI;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
 import dk.nykredit.bank.account.exposure.rs.EventServiceExposure;
 import dk.nykredit.bank.account.model.Event;
+import dk.nykredit.bank.account.model.EventOverview;
 import dk.nykredit.jackson.dataformat.hal.HALLink;
 import dk.nykredit.jackson.dataformat.hal.annotation.Link;
 import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
@@ -33,19 +39,34 @@ public class EventRepresentation {
     private HALLink metadata;
 
     public EventRepresentation(Event event, UriInfo uriInfo) {
-        this.id = event.getId();
-        this.time = event.getTime().toString();
-        this.sequence = event.getSequence().toString();
-        this.category = event.getCategory();
-        this.self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+        this(event.getId(), event.getTime(), event.getSequence(), event.getCategory(), event.getOrigin(), uriInfo::getBaseUriBuilder);
+    }
+
+    public EventRepresentation(EventOverview event, UriInfo uriInfo) {
+        this(event.getId(), event.getTime(), event.getSequence(), event.getCategory(), event.getOrigin(), uriInfo::getBaseUriBuilder);
+    }
+
+    /**
+     * Creates the representation outside of a request with links relative to the given base uri of the service.
+     */
+    public EventRepresentation(EventOverview event, URI base) {
+        this(event.getId(), event.getTime(), event.getSequence(), event.getCategory(), event.getOrigin(), () -> UriBuilder.fromUri(base));
+    }
+
+    private EventRepresentation(String id, Instant time, Long sequence, String category, URI origin, Supplier<UriBuilder> base) {
+        this.id = id;
+        this.time = time.toString();
+        this.sequence = sequence.toString();
+        this.category = category;
+        this.self = new HALLink.Builder(base.get()
                 .path(EventServiceExposure.class)
                 .path(EventServiceExposure.class, "getSingle")
-                .build(event.getCategory(), event.getId())).build();
-        this.origin = new HALLink.Builder(uriInfo.getBaseUriBuilder()
-                .path(event.getOrigin() != null ? event.getOrigin().getPath() : "no path")
+                .build(category, id)).build();
+        this.origin = new HALLink.Builder(base.get()
+                .path(origin != null ? origin.getPath() : "no path")
                 .build())
                 .build();
-        this.metadata = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+        this.metadata = new HALLink.Builder(base.get()
                 .path(EventServiceExposure.class)
                 .build())
                 .name("eventMetadata")
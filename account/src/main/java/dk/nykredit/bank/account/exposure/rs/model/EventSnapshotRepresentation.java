@@ -0,0 +1,133 @@
+package dk.nykredit.bank.account.exposure.rs.model;
+
+import javax.ws.rs.core.UriInfo;
+
+import dk.nykredit.bank.account.exposure.rs.AccountServiceExposure;
+import dk.nykredit.bank.account.exposure.rs.EventServiceExposure;
+import dk.nykredit.bank.account.model.EventSnapshot;
+import dk.nykredit.jackson.dataformat.hal.HALLink;
+import dk.nykredit.jackson.dataformat.hal.annotation.Link;
+import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Represents the snapshot of an event category as returned by the REST service, the next link points to the page of
+ * the feed of the category that follows the snapshot.
+ */
+@Resource
+@ApiModel(value = "EventSnapshot",
+        description = "The state of an account summarising the events of its category up to a sequence")
+
+public class EventSnapshotRepresentation {
+    private String category;
+    private String sequence;
+    private String time;
+    private String balance;
+    private String transactionCount;
+    private String lastTransactionTime;
+
+    @Link
+    private HALLink self;
+
+    @Link
+    private HALLink account;
+
+    @Link
+    private HALLink next;
+
+    public EventSnapshotRepresentation(EventSnapshot snapshot, UriInfo uriInfo) {
+        this.category = snapshot.getCategory();
+        this.sequence = Long.toString(snapshot.getSequence());
+        this.time = snapshot.getTime().toString();
+        this.balance = snapshot.getBalance().toPlainString();
+        this.transactionCount = Long.toString(snapshot.getTransactionCount());
+        this.lastTransactionTime = snapshot.getLastTransactionTime().map(Object::toString).orElse(null);
+        this.self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(EventServiceExposure.class)
+                .path(EventServiceExposure.class, "getSnapshot")
+                .build(category)).build();
+        this.account = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(AccountServiceExposure.class)
+                .path(AccountServiceExposure.class, "get")
+                .build(snapshot.getRegNo(), snapshot.getAccountNo())).build();
+        this.next = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(EventServiceExposure.class)
+                .path(EventServiceExposure.class, "getCategoryPage")
+                .build(category, snapshot.getSequence())).build();
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "category",
+            example = "1234-12345678",
+            notes = "the category summarised by the snapshot.")
+    public String getCategory() {
+        return category;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "sequence",
+            notes = "the sequence of the last event summarised by the snapshot, the feed is followed from here.")
+    public String getSequence() {
+        return sequence;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "time",
+            notes = "the time the snapshot was taken.")
+    public String getTime() {
+        return time;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "balance",
+            example = "987654321.00",
+            notes = "the balance of the account at the sequence of the snapshot.")
+    public String getBalance() {
+        return balance;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "transactionCount",
+            notes = "the number of transactions on the account at the sequence of the snapshot.")
+    public String getTransactionCount() {
+        return transactionCount;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "lastTransactionTime",
+            notes = "the time of the latest transaction on the account at the sequence of the snapshot.")
+    public String getLastTransactionTime() {
+        return lastTransactionTime;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "self",
+            notes = "link to the snapshot itself.")
+    public HALLink getSelf() {
+        return self;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "account",
+            notes = "link to the account summarised by the snapshot.")
+    public HALLink getAccount() {
+        return account;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "next",
+            notes = "link to the page of the event feed of the category that follows the snapshot.")
+    public HALLink getNext() {
+        return next;
+    }
+}
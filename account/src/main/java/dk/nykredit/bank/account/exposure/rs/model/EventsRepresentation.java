@@ -1,5 +1,6 @@
 package dk.nykredit.bank.account.exposure.rs.model;
 
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -9,7 +10,7 @@ import java.util.stream.Collectors;
 import javax.ws.rs.core.UriInfo;
 
 import dk.nykredit.bank.account.exposure.rs.EventServiceExposure;
-import dk.nykredit.bank.account.model.Event;
+import dk.nykredit.bank.account.model.EventOverview;
 import dk.nykredit.jackson.dataformat.hal.HALLink;
 import dk.nykredit.jackson.dataformat.hal.annotation.EmbeddedResource;
 import dk.nykredit.jackson.dataformat.hal.annotation.Link;
@@ -31,7 +32,13 @@ public class EventsRepresentation {
     @Link
     private HALLink self;
 
-    public EventsRepresentation(List<Event> events, UriInfo uriInfo) {
+    @Link("next")
+    private HALLink next;
+
+    @Link("snapshot")
+    private HALLink snapshot;
+
+    public EventsRepresentation(List<EventOverview> events, UriInfo uriInfo) {
         this.events = new ArrayList<>();
         this.events.addAll(events.stream()
                 .map(event -> new EventRepresentation(event, uriInfo))
@@ -42,6 +49,39 @@ public class EventsRepresentation {
                 .build();
     }
 
+    /**
+     * Creates a page of the event feed that links to the next page following the given watermark.
+     */
+    public EventsRepresentation(List<EventOverview> events, long watermark, UriInfo uriInfo) {
+        this(events, uriInfo);
+        this.next = new HALLink.Builder(uriInfo.getRequestUriBuilder()
+                .replaceQueryParam("after", watermark)
+                .build())
+                .build();
+    }
+
+    /**
+     * Creates a page of the event feed addressed by the given uri that links to the page that follows it.
+     */
+    public EventsRepresentation(List<EventOverview> events, URI self, URI next, UriInfo uriInfo) {
+        this(events, uriInfo);
+        this.self = new HALLink.Builder(self).build();
+        this.next = new HALLink.Builder(next).build();
+    }
+
+    /**
+     * Links the events of a category to the snapshot of the category, which allows a new subscriber to read the
+     * snapshot and the events following it instead of every event of the category.
+     */
+    public EventsRepresentation withSnapshot(String category, UriInfo uriInfo) {
+        this.snapshot = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(EventServiceExposure.class)
+                .path(EventServiceExposure.class, "getSnapshot")
+                .build(category))
+                .build();
+        return this;
+    }
+
     @ApiModelProperty(
             access = "public",
             name = "events",
@@ -57,4 +97,20 @@ public class EventsRepresentation {
     public HALLink getSelf() {
         return self;
     }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "next",
+            notes = "link to the following page of the event feed.")
+    public HALLink getNext() {
+        return next;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "snapshot",
+            notes = "link to the snapshot of the category of the events.")
+    public HALLink getSnapshot() {
+        return snapshot;
+    }
 }
@@ -0,0 +1,114 @@
+package dk.nykredit.bank.account.exposure.rs.model;
+
+import javax.ws.rs.core.UriInfo;
+
+import dk.nykredit.bank.account.exposure.rs.ConsumerOffsetServiceExposure;
+import dk.nykredit.bank.account.exposure.rs.SubscriptionServiceExposure;
+import dk.nykredit.bank.account.model.Subscription;
+import dk.nykredit.jackson.dataformat.hal.HALLink;
+import dk.nykredit.jackson.dataformat.hal.annotation.Link;
+import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Represents a subscription having the events pushed to an endpoint as returned by the REST service, the offset link
+ * points to the progress of the delivery.
+ */
+@Resource
+@ApiModel(value = "Subscription",
+        description = "A subscriber having the events of the feed pushed to an endpoint")
+
+public class SubscriptionRepresentation {
+    private String name;
+    private String category;
+    private String endpoint;
+    private String time;
+
+    @Link
+    private HALLink self;
+
+    @Link
+    private HALLink offset;
+
+    @Link("dead-letters")
+    private HALLink deadLetters;
+
+    public SubscriptionRepresentation(Subscription subscription, UriInfo uriInfo) {
+        this.name = subscription.getName();
+        this.category = subscription.getCategory();
+        this.endpoint = subscription.getEndpoint().toString();
+        this.time = subscription.getTime().toString();
+        this.self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(SubscriptionServiceExposure.class)
+                .path(SubscriptionServiceExposure.class, "get")
+                .build(name)).build();
+        this.offset = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(ConsumerOffsetServiceExposure.class)
+                .path(ConsumerOffsetServiceExposure.class, "get")
+                .build(name, category)).build();
+        this.deadLetters = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(SubscriptionServiceExposure.class)
+                .path(SubscriptionServiceExposure.class, "listDeadLetters")
+                .build(name)).build();
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "name",
+            example = "statement-service",
+            notes = "the name of the subscription, which is also the consumer of its offset.")
+    public String getName() {
+        return name;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "category",
+            example = "1234-12345678",
+            notes = "the category pushed to the subscription, or all for the complete feed.")
+    public String getCategory() {
+        return category;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "endpoint",
+            example = "https://statements.example.com/account-events",
+            notes = "the endpoint the batches of events are posted to.")
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "time",
+            notes = "the time the subscription was registered.")
+    public String getTime() {
+        return time;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "self",
+            notes = "link to the subscription itself.")
+    public HALLink getSelf() {
+        return self;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "offset",
+            notes = "link to the offset committed as the batches are accepted by the endpoint.")
+    public HALLink getOffset() {
+        return offset;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "dead-letters",
+            notes = "link to the batches that could not be pushed to the endpoint.")
+    public HALLink getDeadLetters() {
+        return deadLetters;
+    }
+}
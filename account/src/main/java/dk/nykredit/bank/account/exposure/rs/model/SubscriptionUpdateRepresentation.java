@@ -0,0 +1,44 @@
+package dk.nykredit.bank.account.exposure.rs.model;
+
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * The input necessary for registering a subscription and used for changing its endpoint.
+ */
+@ApiModel(value = "SubscriptionUpdate",
+        description = "the input necessary for registering a subscription")
+
+public class SubscriptionUpdateRepresentation {
+
+    @NotNull
+    @Pattern(regexp = "^https?://.{1,390}$")
+    private String endpoint;
+
+    @Pattern(regexp = "^.{1,36}$")
+    private String category;
+
+    @ApiModelProperty(
+            access = "public",
+            name = "endpoint",
+            required = true,
+            example = "https://statements.example.com/account-events",
+            notes = "the endpoint the batches of events are posted to.",
+            value = "Readable and Writeable")
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "category",
+            example = "1234-12345678",
+            notes = "the category pushed to the subscription, the complete feed is pushed if left out.",
+            value = "Read-only")
+    public String getCategory() {
+        return category;
+    }
+}
@@ -0,0 +1,58 @@
+package dk.nykredit.bank.account.exposure.rs.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.core.UriInfo;
+
+import dk.nykredit.bank.account.exposure.rs.SubscriptionServiceExposure;
+import dk.nykredit.bank.account.model.Subscription;
+import dk.nykredit.jackson.dataformat.hal.HALLink;
+import dk.nykredit.jackson.dataformat.hal.annotation.EmbeddedResource;
+import dk.nykredit.jackson.dataformat.hal.annotation.Link;
+import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
+import io.swagger.annotations.ApiModel;
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Represents the set of subscriptions from the REST service exposure.
+ */
+@Resource
+@ApiModel(value = "Subscriptions",
+        description = "a list of the subscriptions having the events pushed to them")
+public class SubscriptionsRepresentation {
+
+    @Link
+    private HALLink self;
+
+    @EmbeddedResource("subscriptions")
+    private Collection<SubscriptionRepresentation> subscriptions;
+
+    public SubscriptionsRepresentation(List<Subscription> subscriptions, UriInfo uriInfo) {
+        this.subscriptions = subscriptions.stream()
+                .map(subscription -> new SubscriptionRepresentation(subscription, uriInfo))
+                .collect(Collectors.toList());
+        this.self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
+                .path(SubscriptionServiceExposure.class)
+                .build())
+                .build();
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "self",
+            notes = "link to the subscription list itself.")
+    public HALLink getSelf() {
+        return self;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "subscriptions",
+            notes = "subscription list.")
+    public Collection<SubscriptionRepresentation> getSubscriptions() {
+        return Collections.unmodifiableCollection(subscriptions);
+    }
+}
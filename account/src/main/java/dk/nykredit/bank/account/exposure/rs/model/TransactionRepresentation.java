@@ -1,9 +1,12 @@
 package dk.nykredit.bank.account.exposure.rs.model;
 
+import java.math.BigDecimal;
+
 import javax.ws.rs.core.UriInfo;
 
 import dk.nykredit.bank.account.exposure.rs.TransactionServiceExposure;
 import dk.nykredit.bank.account.model.Transaction;
+import dk.nykredit.bank.account.model.TransactionOverview;
 import dk.nykredit.jackson.dataformat.hal.HALLink;
 import dk.nykredit.jackson.dataformat.hal.annotation.Link;
 import dk.nykredit.jackson.dataformat.hal.annotation.Resource;
@@ -26,13 +29,24 @@ public class TransactionRepresentation {
     private HALLink self;
 
     public TransactionRepresentation(Transaction transaction, UriInfo uriInfo) {
-        this.id = transaction.getId();
-        this.description = transaction.getDescription();
-        this.amount = transaction.getAmount().toPlainString();
+        this(transaction.getAccount().getRegNo(), transaction.getAccount().getAccountNo(), transaction.getId(),
+            transaction.getDescription(), transaction.getAmount(), uriInfo);
+    }
+
+    public TransactionRepresentation(TransactionOverview transaction, UriInfo uriInfo) {
+        this(transaction.getRegNo(), transaction.getAccountNo(), transaction.getId(),
+            transaction.getDescription(), transaction.getAmount(), uriInfo);
+    }
+
+    private TransactionRepresentation(String regNo, String accountNo, String id, String description, BigDecimal amount,
+                                      UriInfo uriInfo) {
+        this.id = id;
+        this.description = description;
+        this.amount = amount.toPlainString();
         this.self = new HALLink.Builder(uriInfo.getBaseUriBuilder()
             .path(TransactionServiceExposure.class)
             .path(TransactionServiceExposure.class, "get")
-            .build(transaction.getAccount().getRegNo(), transaction.getAccount().getAccountNo(), transaction.getId()))
+            .build(regNo, accountNo, id))
             .build();
     }
 
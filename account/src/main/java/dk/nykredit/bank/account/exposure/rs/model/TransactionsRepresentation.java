@@ -4,13 +4,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.core.UriInfo;
 
+import dk.nykredit.api.capabilities.Cursor;
 import dk.nykredit.bank.account.exposure.rs.TransactionServiceExposure;
 import dk.nykredit.bank.account.model.Account;
-import dk.nykredit.bank.account.model.Transaction;
+import dk.nykredit.bank.account.model.TransactionOverview;
 import dk.nykredit.jackson.dataformat.hal.HALLink;
 import dk.nykredit.jackson.dataformat.hal.annotation.EmbeddedResource;
 import dk.nykredit.jackson.dataformat.hal.annotation.Link;
@@ -32,6 +34,12 @@ public class TransactionsRepresentation {
     @Link
     private HALLink self;
 
+    @Link("next")
+    private HALLink next;
+
+    @Link("prev")
+    private HALLink prev;
+
     public TransactionsRepresentation(Account account, UriInfo uriInfo) {
         transactions = new ArrayList<>();
         transactions.addAll(account.getTransactions().stream()
@@ -43,7 +51,7 @@ public class TransactionsRepresentation {
                 .build();
     }
 
-    public TransactionsRepresentation(String regNo, String accountNo, List<Transaction> txs, UriInfo uriInfo) {
+    public TransactionsRepresentation(String regNo, String accountNo, List<TransactionOverview> txs, UriInfo uriInfo) {
         transactions = new ArrayList<>();
         transactions.addAll(txs.stream()
                 .map(tx -> new TransactionRepresentation(tx, uriInfo))
@@ -54,6 +62,13 @@ public class TransactionsRepresentation {
                 .build();
     }
 
+    public TransactionsRepresentation(String regNo, String accountNo, List<TransactionOverview> txs,
+                                      Optional<Cursor> next, Optional<Cursor> prev, UriInfo uriInfo) {
+        this(regNo, accountNo, txs, uriInfo);
+        this.next = next.map(cursor -> pageLink(cursor, uriInfo)).orElse(null);
+        this.prev = prev.map(cursor -> pageLink(cursor, uriInfo)).orElse(null);
+    }
+
     @ApiModelProperty(
             access = "public",
             name = "transactions",
@@ -69,4 +84,27 @@ public class TransactionsRepresentation {
     public HALLink getSelf() {
         return self;
     }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "next",
+            notes = "link to the following page of transactions.")
+    public HALLink getNext() {
+        return next;
+    }
+
+    @ApiModelProperty(
+            access = "public",
+            name = "prev",
+            notes = "link to the preceding page of transactions.")
+    public HALLink getPrev() {
+        return prev;
+    }
+
+    private static HALLink pageLink(Cursor cursor, UriInfo uriInfo) {
+        return new HALLink.Builder(uriInfo.getRequestUriBuilder()
+                .replaceQueryParam("cursor", cursor.getToken())
+                .build())
+                .build();
+    }
 }
@@ -0,0 +1,409 @@
+package dk.nykredit.bank.account.exposure.webhook;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.nykredit.bank.account.exposure.rs.model.EventBatchRepresentation;
+import dk.nykredit.bank.account.model.ConsumerOffset;
+import dk.nykredit.bank.account.model.DeadLetter;
+import dk.nykredit.bank.account.model.EventOverview;
+import dk.nykredit.bank.account.model.Subscription;
+import dk.nykredit.bank.account.persistence.AccountArchivist;
+import dk.nykredit.bank.account.persistence.ClusterNode;
+import dk.nykredit.bank.account.persistence.EventNotifier;
+import dk.nykredit.jackson.dataformat.hal.HALMapper;
+import dk.nykredit.nic.rs.NykreditJsonProvider;
+import dk.nykredit.time.CurrentTime;
+
+/**
+ * Pushes the events of the feed to the endpoints of the subscriptions, see {@link Subscription}, in batches of at
+ * most <code>webhookBatchSize</code> events posted as {@link EventBatchRepresentation} documents.
+ * <p>
+ * The feed is read once every second from where the previous run stopped and each new event is offered to the
+ * bounded queue of every subscription following its category, which means that an event is read once regardless of
+ * the number of subscriptions. A subscription that is new, or whose queue of <code>webhookQueueCapacity</code>
+ * events is full, stops receiving events from the shared read and instead catches up by reading the feed following
+ * its own offset until it reaches the end of the feed, which keeps a slow endpoint from holding back the others.
+ * <p>
+ * A subscription has at most one batch in flight, which keeps its events in order, and at most
+ * <code>webhookConcurrency</code> batches are in flight in total. A batch accepted by the endpoint with a 2xx status
+ * commits the offset of the subscription, see {@link ConsumerOffset}, whereas a batch that fails is retried with a
+ * delay of <code>webhookRetryDelay</code> milliseconds doubled for each attempt. A batch that still fails after
+ * <code>webhookMaxAttempts</code> attempts is recorded as a {@link DeadLetter} and the delivery moves on past it.
+ * <p>
+ * The events are delivered at least once, i.e., a batch is pushed again if the offset could not be committed after
+ * the batch was accepted. The id of an event is its dedupe key. The events are delivered by a single node holding the
+ * lease of the dispatcher, see {@link ClusterNode#lead(String, Duration)}, which keeps the endpoints from receiving
+ * the events once from every node. A node losing the lease drops its queues, and the node taking over continues from
+ * the committed offsets. As the offsets are committed with a compare-and-set, a batch in flight when the lease moves
+ * is at most delivered twice and never committed twice.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class WebhookDispatcher {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebhookDispatcher.class);
+    static final String MEDIA_TYPE = "application/hal+json;concept=eventbatch;v=1";
+    private static final ObjectMapper MAPPER = NykreditJsonProvider.configure(new HALMapper());
+    private static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(10);
+    private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final int DEFAULT_CONCURRENCY = 8;
+    private static final int DEFAULT_MAX_ATTEMPTS = 8;
+    private static final long DEFAULT_RETRY_DELAY = 1000L;
+    private static final int DEFAULT_TIMEOUT = 10000;
+    private static final String DEFAULT_BASE_URI = "http://localhost:7001/hateoas";
+    static final Duration DISPATCHER_LEASE = Duration.ofSeconds(30);
+
+    @EJB
+    private AccountArchivist archivist;
+
+    @EJB
+    private EventNotifier notifier;
+
+    @EJB
+    private ClusterNode cluster;
+
+    @Resource(name = "webhookQueueCapacity")
+    private Integer queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+    @Resource(name = "webhookBatchSize")
+    private Integer batchSize = DEFAULT_BATCH_SIZE;
+
+    @Resource(name = "webhookConcurrency")
+    private Integer concurrency = DEFAULT_CONCURRENCY;
+
+    @Resource(name = "webhookMaxAttempts")
+    private Integer maxAttempts = DEFAULT_MAX_ATTEMPTS;
+
+    @Resource(name = "webhookRetryDelay")
+    private Long retryDelay = DEFAULT_RETRY_DELAY;
+
+    @Resource(name = "webhookTimeout")
+    private Integer timeout = DEFAULT_TIMEOUT;
+
+    @Resource(name = "webhookBaseUri")
+    private String baseUri = DEFAULT_BASE_URI;
+
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private Semaphore deliveries;
+    private long watermark = -1L;
+
+    public WebhookDispatcher() {
+        // Required by EJB
+    }
+
+    WebhookDispatcher(AccountArchivist archivist, EventNotifier notifier, ClusterNode cluster, int queueCapacity,
+                      int batchSize, int concurrency, int maxAttempts, long retryDelay) {
+        this.archivist = archivist;
+        this.notifier = notifier;
+        this.cluster = cluster;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+        start();
+    }
+
+    @PostConstruct
+    void start() {
+        deliveries = new Semaphore(concurrency);
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void dispatch() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (!cluster.lead("webhook-dispatcher", DISPATCHER_LEASE)) {
+                channels.clear();
+                watermark = -1L;
+                return;
+            }
+            subscribe();
+            distribute();
+            Instant now = CurrentTime.now();
+            for (Channel channel : channels.values()) {
+                try {
+                    catchUp(channel);
+                    deliver(channel, now);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Could not dispatch events to subscription {}", channel.name, e);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not dispatch events, the events are dispatched at the next run", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Opens a channel for each new subscription starting from its committed offset and closes the channels of the
+     * subscriptions that have been removed.
+     */
+    private void subscribe() {
+        Map<String, Subscription> subscriptions = archivist.getSubscriptions().stream()
+                .collect(Collectors.toMap(Subscription::getName, Function.identity()));
+        channels.keySet().retainAll(subscriptions.keySet());
+        for (Subscription subscription : subscriptions.values()) {
+            Channel channel = channels.computeIfAbsent(subscription.getName(),
+                    name -> new Channel(subscription, offset(name, subscription.getCategory()), queueCapacity));
+            channel.endpoint = subscription.getEndpoint();
+        }
+    }
+
+    /**
+     * Reads the events stored since the previous run once and offers each of them to the channels.
+     */
+    private void distribute() {
+        if (watermark < 0L) {
+            watermark = archivist.getLastSequence(Optional.empty());
+        }
+        List<EventOverview> events;
+        do {
+            events = archivist.getEventsAfter(watermark, batchSize);
+            for (EventOverview event : events) {
+                channels.values().forEach(channel -> channel.offer(event));
+                watermark = event.getSequence();
+            }
+        } while (events.size() == batchSize);
+    }
+
+    /**
+     * Fills the queue of a channel that is behind from the feed following the last event queued, the channel receives
+     * the events from the shared read again once it has reached the end of the feed.
+     */
+    private void catchUp(Channel channel) {
+        if (channel.stale.get() && !channel.inFlight.get()) {
+            channel.reset(offset(channel.name, channel.category));
+        }
+        int limit = Math.min(batchSize, channel.queue.remainingCapacity());
+        if (!channel.behind || limit == 0) {
+            return;
+        }
+        List<EventOverview> events = channel.feed()
+                .map(category -> archivist.getEventsForCategoryAfter(category, channel.queued, limit))
+                .orElseGet(() -> archivist.getEventsAfter(channel.queued, limit));
+        for (EventOverview event : events) {
+            channel.queue.add(event);
+            channel.queued = event.getSequence();
+        }
+        channel.behind = events.size() == limit;
+    }
+
+    /**
+     * Pushes the next batch of the channel unless the channel has a batch in flight, is waiting to retry or the limit
+     * of batches in flight is reached.
+     */
+    private void deliver(Channel channel, Instant now) {
+        if (channel.inFlight.get() || now.isBefore(channel.retryAt)) {
+            return;
+        }
+        if (channel.batch.isEmpty()) {
+            channel.queue.drainTo(channel.batch, batchSize);
+        }
+        if (channel.batch.isEmpty() || !deliveries.tryAcquire()) {
+            return;
+        }
+        channel.inFlight.set(true);
+        try {
+            notifier.dispatch(() -> push(channel));
+        } catch (RuntimeException e) {
+            channel.inFlight.set(false);
+            deliveries.release();
+            throw e;
+        }
+    }
+
+    private void push(Channel channel) {
+        try {
+            String failure;
+            try {
+                int status = post(channel.endpoint,
+                        MAPPER.writeValueAsBytes(new EventBatchRepresentation(channel.name, channel.batch, URI.create(baseUri))));
+                failure = status >= 200 && status < 300 ? null : "Endpoint responded with status " + status;
+            } catch (IOException e) {
+                failure = e.toString();
+            }
+            if (null == failure) {
+                accepted(channel);
+            } else {
+                failed(channel, failure);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not complete the delivery of a batch to subscription {}, the batch is pushed again",
+                    channel.name, e);
+        } finally {
+            channel.inFlight.set(false);
+            deliveries.release();
+        }
+    }
+
+    private void accepted(Channel channel) {
+        long last = channel.last();
+        if (archivist.commitConsumerOffset(channel.name, channel.category, channel.committed, last)) {
+            channel.committed = last;
+        } else {
+            LOGGER.info("The offset of subscription {} has been moved, catching up from the committed offset", channel.name);
+            channel.stale.set(true);
+        }
+        channel.batch.clear();
+        channel.attempts = 0;
+        channel.retryAt = Instant.EPOCH;
+    }
+
+    private void failed(Channel channel, String reason) {
+        channel.attempts++;
+        if (channel.attempts < maxAttempts) {
+            Duration delay = Duration.ofMillis(retryDelay << Math.min(channel.attempts - 1, 30));
+            channel.retryAt = CurrentTime.now().plus(delay.compareTo(MAX_RETRY_DELAY) < 0 ? delay : MAX_RETRY_DELAY);
+            LOGGER.info("Could not push a batch to subscription {} at attempt {}, retrying at {}: {}",
+                    channel.name, channel.attempts, channel.retryAt, reason);
+            return;
+        }
+        long last = channel.last();
+        DeadLetter letter = new DeadLetter(channel.name, channel.category, channel.batch.get(0).getSequence(), last,
+                channel.batch.size(), channel.attempts, reason);
+        if (archivist.deadLetter(letter, channel.committed)) {
+            channel.committed = last;
+            LOGGER.warn("Gave up pushing a batch to subscription {}: {}", channel.name, letter);
+        } else {
+            channel.stale.set(true);
+        }
+        channel.batch.clear();
+        channel.attempts = 0;
+        channel.retryAt = Instant.EPOCH;
+    }
+
+    /**
+     * Posts the batch to the endpoint.
+     *
+     * @return the status the endpoint responded with
+     */
+    int post(URI endpoint, byte[] batch) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) endpoint.toURL().openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(batch.length);
+            connection.setRequestProperty("Content-Type", MEDIA_TYPE);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(batch);
+            }
+            int status = connection.getResponseCode();
+            try (InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (null != input) {
+                    while (input.read() >= 0) {
+                        // drain the response to allow the connection to be reused
+                    }
+                }
+            }
+            return status;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private long offset(String name, String category) {
+        return archivist.getConsumerOffsets(Optional.of(name)).stream()
+                .filter(offset -> offset.getCategory().equals(category))
+                .mapToLong(ConsumerOffset::getWatermark)
+                .findFirst()
+                .orElse(0L);
+    }
+
+    /**
+     * The delivery state of a subscription. The queue and the position in the feed are handled by the scheduled run
+     * only, whereas the batch and the retry state are handed to the delivery while the batch is in flight.
+     */
+    private static final class Channel {
+        private final String name;
+        private final String category;
+        private final BlockingQueue<EventOverview> queue;
+        private final List<EventOverview> batch = new ArrayList<>();
+        private final AtomicBoolean inFlight = new AtomicBoolean();
+        private final AtomicBoolean stale = new AtomicBoolean();
+        private volatile URI endpoint;
+        private volatile long committed;
+        private volatile int attempts;
+        private volatile Instant retryAt = Instant.EPOCH;
+        private long queued;
+        private boolean behind = true;
+
+        private Channel(Subscription subscription, long offset, int capacity) {
+            this.name = subscription.getName();
+            this.category = subscription.getCategory();
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.committed = offset;
+            this.queued = offset;
+        }
+
+        private Optional<String> feed() {
+            return ConsumerOffset.ALL.equals(category) ? Optional.empty() : Optional.of(category);
+        }
+
+        /**
+         * Queues the event if it belongs to the category of the channel and follows the last event queued, the
+         * channel falls behind if the queue is full.
+         */
+        private void offer(EventOverview event) {
+            if (behind || event.getSequence() <= queued || feed().map(c -> !c.equals(event.getCategory())).orElse(false)) {
+                return;
+            }
+            if (queue.offer(event)) {
+                queued = event.getSequence();
+            } else {
+                behind = true;
+            }
+        }
+
+        private void reset(long offset) {
+            queue.clear();
+            batch.clear();
+            committed = offset;
+            queued = offset;
+            behind = true;
+            stale.set(false);
+        }
+
+        private long last() {
+            return batch.get(batch.size() - 1).getSequence();
+        }
+    }
+}
@@ -1,30 +1,84 @@
 package dk.nykredit.bank.account.model;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedEntityGraphs;
+import javax.persistence.NamedSubgraph;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
 
 import dk.nykredit.nic.persistence.jpa.AbstractAuditable;
+import dk.nykredit.time.CurrentTime;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 /**
  * Very basic modelling of account concept to show the basic use of JPA for persistence handling.
+ * <p>
+ * The registration and account number is the natural id of the account, the resolution of these to the account is
+ * cached which allows for resolving the account without going to the database once it has been read. The name of
+ * the account may be updated and the account is thus cached in a read-write region.
+ * <p>
+ * The entity graphs are the fetch plans for the projections of the account that include its transactions or its
+ * reconciled transactions, these are read in the same query as the account.
+ * <p>
+ * The account keeps a summary of its transactions, i.e., the balance, the number of transactions and the time of the
+ * latest transaction, which is updated as transactions are added. The summary is versioned which means that two
+ * concurrent units of work adding a transaction to the same account cannot both succeed, and the summary therefore
+ * always matches the transactions. The summary of accounts created before it was introduced is computed from their
+ * transactions by the migration <code>db/migration/account-summary.sql</code>, and the summary columns are indexed
+ * as the accounts may be selected and sorted by them.
  */
 @Entity
-@Table(name = "BANK_ACCOUNT", uniqueConstraints = @UniqueConstraint(columnNames = { "REG_NO", "ACCOUNT_NO" }))
+@NamedEntityGraphs({
+    @NamedEntityGraph(name = Account.WITH_TRANSACTIONS,
+        attributeNodes = @NamedAttributeNode("transactions")),
+    @NamedEntityGraph(name = Account.WITH_RECONCILED_TRANSACTIONS,
+        attributeNodes = @NamedAttributeNode(value = "reconciledTransactions", subgraph = "reconciled"),
+        subgraphs = @NamedSubgraph(name = "reconciled", attributeNodes = @NamedAttributeNode("transaction")))
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "account.account")
+@NaturalIdCache(region = "account.account.naturalid")
+@Table(name = "BANK_ACCOUNT",
+    uniqueConstraints = @UniqueConstraint(columnNames = { "REG_NO", "ACCOUNT_NO" }),
+    indexes = {
+        @Index(name = "IDX_BANK_ACCOUNT_ACCOUNT_NO", columnList = "ACCOUNT_NO, REG_NO"),
+        @Index(name = "IDX_BANK_ACCOUNT_NAME", columnList = "NAME, REG_NO, ACCOUNT_NO"),
+        @Index(name = "IDX_BANK_ACCOUNT_BALANCE", columnList = "BALANCE, REG_NO, ACCOUNT_NO"),
+        @Index(name = "IDX_BANK_ACCOUNT_TX_COUNT", columnList = "TX_COUNT, REG_NO, ACCOUNT_NO"),
+        @Index(name = "IDX_BANK_ACCOUNT_LAST_TX_TS", columnList = "LAST_TX_TS, REG_NO, ACCOUNT_NO")
+    })
 public class Account extends AbstractAuditable {
+    public static final String WITH_TRANSACTIONS = "Account.withTransactions";
+    public static final String WITH_RECONCILED_TRANSACTIONS = "Account.withReconciledTransactions";
+    private static final String[] EXCLUDED_FIELDS = new String[]{
+        "tId", "version", "transactions", "reconciledTransactions", "lastModifiedBy", "lastModifiedTime"
+    };
+
     /**
      * TID - the technical unique identifier for instance, i.e., primary key. This should NEVER EVER be
      * exposed out side the service since it is a key very internal to this service.
@@ -33,15 +87,29 @@ public class Account extends AbstractAuditable {
     @Column(name = "TID", length = 36, nullable = false, columnDefinition = "CHAR(36)")
     private String tId;
 
+    @NaturalId
     @Column(name = "REG_NO", length = 4, nullable = false)
     private String regNo;
 
+    @NaturalId
     @Column(name = "ACCOUNT_NO", length = 12, nullable = false)
     private String accountNo;
 
     @Column(name = "NAME", length = 40, nullable = false)
     private String name;
 
+    @Column(name = "BALANCE", nullable = false, columnDefinition = "DECIMAL(17,2)")
+    private BigDecimal balance;
+
+    @Column(name = "TX_COUNT", nullable = false)
+    private long transactionCount;
+
+    @Column(name = "LAST_TX_TS", nullable = true, columnDefinition = "TIMESTAMP")
+    private Timestamp lastTransactionTime;
+
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    private long version;
 
     @OneToMany(mappedBy = "account", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private Set<Transaction> transactions;
@@ -57,6 +125,7 @@ public class Account extends AbstractAuditable {
         this.regNo = regNo;
         this.accountNo = accountNo;
         this.name = name;
+        balance = BigDecimal.ZERO;
         transactions = new HashSet<>();
         reconciledTransactions = new HashSet<>();
         tId = UUID.randomUUID().toString();
@@ -78,6 +147,21 @@ public class Account extends AbstractAuditable {
         this.name = name;
     }
 
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * @return the time of the latest transaction or empty if no transactions have been added to the account
+     */
+    public Optional<Instant> getLastTransactionTime() {
+        return Optional.ofNullable(lastTransactionTime).map(Timestamp::toInstant);
+    }
+
     public Set<Transaction> getTransactions() {
         return Collections.unmodifiableSet(transactions);
     }
@@ -86,14 +170,31 @@ public class Account extends AbstractAuditable {
         return Collections.unmodifiableSet(reconciledTransactions);
     }
 
-    public void addTransaction(String description, BigDecimal amount) {
-        transactions.add(new Transaction(this, amount, description));
+    /**
+     * Adds a transaction to the account and updates the summary of the account accordingly. The transaction is only
+     * added to the transactions of the account if these are loaded, which saves reading every transaction of the
+     * account when a new one is added - in that case the returned transaction must be saved explicitly.
+     */
+    public Transaction addTransaction(String description, BigDecimal amount) {
+        Transaction transaction = new Transaction(this, amount, description);
+        if (Hibernate.isInitialized(transactions)) {
+            transactions.add(transaction);
+        }
+        balance = balance.add(amount);
+        transactionCount++;
+        lastTransactionTime = Timestamp.from(CurrentTime.now());
+        return transaction;
     }
 
     public void addReconciledTransaction(Transaction transaction, Boolean reconciled, String note) {
         reconciledTransactions.add(new ReconciledTransaction(reconciled, note, transaction));
     }
 
+    @Override
+    protected String[] excludedFields() {
+        return EXCLUDED_FIELDS;
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
@@ -0,0 +1,89 @@
+package dk.nykredit.bank.account.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Read-only projection of an account holding the attributes used in the account overview, instances are created
+ * directly by the persistence query and never become part of the persistence context.
+ */
+public class AccountOverview {
+    private final String regNo;
+    private final String accountNo;
+    private final String name;
+    private final BigDecimal balance;
+    private final long transactionCount;
+    private final Instant lastTransactionTime;
+
+    public AccountOverview(String regNo, String accountNo, String name, BigDecimal balance, long transactionCount,
+                           Date lastTransactionTime) {
+        this.regNo = regNo;
+        this.accountNo = accountNo;
+        this.name = name;
+        this.balance = balance;
+        this.transactionCount = transactionCount;
+        this.lastTransactionTime = lastTransactionTime == null ? null : Instant.ofEpochMilli(lastTransactionTime.getTime());
+    }
+
+    public String getRegNo() {
+        return regNo;
+    }
+
+    public String getAccountNo() {
+        return accountNo;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    public Optional<Instant> getLastTransactionTime() {
+        return Optional.ofNullable(lastTransactionTime);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AccountOverview)) {
+            return false;
+        }
+        AccountOverview that = (AccountOverview) o;
+        return Objects.equals(regNo, that.regNo)
+                && Objects.equals(accountNo, that.accountNo)
+                && Objects.equals(name, that.name)
+                && Objects.equals(balance, that.balance)
+                && transactionCount == that.transactionCount
+                && Objects.equals(lastTransactionTime, that.lastTransactionTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(regNo, accountNo, name, balance, transactionCount, lastTransactionTime);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+            .append("regNo", regNo)
+            .append("accountNo", accountNo)
+            .append("name", name)
+            .append("balance", balance)
+            .toString();
+    }
+}
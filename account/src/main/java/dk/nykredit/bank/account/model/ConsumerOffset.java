@@ -0,0 +1,96 @@
+package dk.nykredit.bank.account.model;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import dk.nykredit.nic.persistence.jpa.AbstractAuditable;
+import dk.nykredit.time.CurrentTime;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * The watermark a subscriber of the event feed has committed for a category, or for the complete feed using the
+ * category {@value #ALL}. The watermark is the sequence of the last event the subscriber has handled, which allows
+ * the subscriber to continue from where it left off when it is restarted.
+ *
+ * A commit replaces the watermark only if the watermark is still the one the subscriber read, which keeps two
+ * instances of a subscriber from overwriting each other's progress.
+ */
+@Entity
+@Table(name = "ACCOUNT_EVENT_CONSUMER",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"CONSUMER", "CATEGORY"}))
+public class ConsumerOffset extends AbstractAuditable {
+    /**
+     * The category of the offset in the complete feed.
+     */
+    public static final String ALL = "all";
+
+    /**
+     * TID - the technical unique identifier for instance, i.e., primary key. This should NEVER EVER be
+     * exposed out side the service since it is a key very internal to this service.
+     */
+    @Id
+    @Column(name = "TID", length = 36, nullable = false, columnDefinition = "CHAR(36)")
+    private String tId;
+
+    @Column(name = "CONSUMER", length = 36, nullable = false)
+    private String consumer;
+
+    @Column(name = "CATEGORY", length = 36, nullable = false)
+    private String category;
+
+    @Column(name = "WATERMARK", nullable = false, columnDefinition = "BIGINT")
+    private long watermark;
+
+    @Column(name = "TIME", nullable = false)
+    private Timestamp time;
+
+    protected ConsumerOffset() {
+        // Required by JPA
+    }
+
+    public ConsumerOffset(String consumer, String category, long watermark) {
+        this.tId = UUID.randomUUID().toString();
+        this.consumer = consumer;
+        this.category = category;
+        this.watermark = watermark;
+        this.time = Timestamp.from(CurrentTime.now());
+    }
+
+    public String getConsumer() {
+        return consumer;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public long getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * @return the time the watermark was committed
+     */
+    public Instant getTime() {
+        return time.toInstant();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("consumer", consumer)
+                .append("category", category)
+                .append("watermark", watermark)
+                .append("time", time)
+                .toString();
+    }
+}
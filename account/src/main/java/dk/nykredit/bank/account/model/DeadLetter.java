@@ -0,0 +1,121 @@
+package dk.nykredit.bank.account.model;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import dk.nykredit.nic.persistence.jpa.AbstractAuditable;
+import dk.nykredit.time.CurrentTime;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * A batch of events that could not be pushed to the endpoint of a subscription within the attempts allowed. The
+ * delivery moves on past the batch, which keeps a failing endpoint from holding back the events following it, and the
+ * subscriber reads the events of the batch from the feed using the sequences recorded here.
+ */
+@Entity
+@Table(name = "ACCOUNT_EVENT_DEAD_LETTER")
+public class DeadLetter extends AbstractAuditable {
+
+    /**
+     * TID - the technical unique identifier for instance, i.e., primary key. This should NEVER EVER be
+     * exposed out side the service since it is a key very internal to this service.
+     */
+    @Id
+    @Column(name = "TID", length = 36, nullable = false, columnDefinition = "CHAR(36)")
+    private String tId;
+
+    @Column(name = "SUBSCRIPTION", length = 36, nullable = false)
+    private String subscription;
+
+    @Column(name = "CATEGORY", length = 36, nullable = false)
+    private String category;
+
+    @Column(name = "FIRST_SEQ", nullable = false, columnDefinition = "BIGINT")
+    private long firstSequence;
+
+    @Column(name = "LAST_SEQ", nullable = false, columnDefinition = "BIGINT")
+    private long lastSequence;
+
+    @Column(name = "EVENT_COUNT", nullable = false)
+    private int eventCount;
+
+    @Column(name = "ATTEMPTS", nullable = false)
+    private int attempts;
+
+    @Column(name = "REASON", length = 400, nullable = true)
+    private String reason;
+
+    @Column(name = "TIME", nullable = false)
+    private Timestamp time;
+
+    protected DeadLetter() {
+        // Required by JPA
+    }
+
+    public DeadLetter(String subscription, String category, long firstSequence, long lastSequence, int eventCount,
+                      int attempts, String reason) {
+        this.tId = UUID.randomUUID().toString();
+        this.subscription = subscription;
+        this.category = category;
+        this.firstSequence = firstSequence;
+        this.lastSequence = lastSequence;
+        this.eventCount = eventCount;
+        this.attempts = attempts;
+        this.reason = null == reason || reason.length() <= 400 ? reason : reason.substring(0, 400);
+        this.time = Timestamp.from(CurrentTime.now());
+    }
+
+    public String getSubscription() {
+        return subscription;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * @return the time the batch was given up
+     */
+    public Instant getTime() {
+        return time.toInstant();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("subscription", subscription)
+                .append("firstSequence", firstSequence)
+                .append("lastSequence", lastSequence)
+                .append("attempts", attempts)
+                .append("reason", reason)
+                .toString();
+    }
+}
@@ -6,12 +6,11 @@ import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.UUID;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
-import javax.persistence.SequenceGenerator;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 import javax.persistence.UniqueConstraint;
@@ -19,24 +18,43 @@ import javax.persistence.UniqueConstraint;
 import dk.nykredit.nic.persistence.jpa.AbstractAuditable;
 import dk.nykredit.time.CurrentTime;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 /**
  * Very basic modelling of an event concept to show the relation to account handled by JPA.
  *
- * The Event is shown here with a sequence and it uses the database for that, this is not recommended in
- * a cloud capable setup as this will not work in a truly distributed setup. In such a scenario it is better
- * to use some form of consensus algorithm to state what is before what in order to create a sequence.
- * An even better way is to use a dedicated feed reader status per endpoint and what endpoints are redundant
- * and in that know how far the feed reading is (behind or at target).
+ * The Event is shown here with a sequence, which is generated by the {@link EventSequencer} on the node creating
+ * the event without a round trip to the database. The sequence orders the events of the feed, but it is not a
+ * consensus on what happened before what across the nodes. An even better way is to use a dedicated feed reader
+ * status per endpoint and what endpoints are redundant and in that know how far the feed reading is (behind or at
+ * target).
+ *
+ * Events are immutable and are kept in a read-only region of the second level cache, the natural id of an event is
+ * its semantic key within its category, which allows for resolving an event from the cache. The natural id is unique
+ * in the database as well, an outbox message relayed twice thus fails to insert its event a second time.
  *
  * The Event here is said to be auditable, but in reality this may not be the case always as not all events will
  * have to be auditable but events that e.g. includes events around accounts may have that requirement.
  */
 @Entity
-@SequenceGenerator(name = "sequencer", initialValue = 1, allocationSize = 100)
-@Table(name = "ACCOUNT_EVENT", uniqueConstraints = @UniqueConstraint(columnNames = {"SID", "SEQ", "TIME"}))
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "account.event")
+@NaturalIdCache(region = "account.event.naturalid")
+@Table(name = "ACCOUNT_EVENT",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"SID", "CATEGORY"}),
+    indexes = {
+        @Index(name = "IDX_ACCOUNT_EVENT_SEQ", columnList = "SEQ"),
+        @Index(name = "IDX_ACCOUNT_EVENT_TIME", columnList = "TIME, SEQ"),
+        @Index(name = "IDX_ACCOUNT_EVENT_CATEGORY_SEQ", columnList = "CATEGORY, SEQ"),
+        @Index(name = "IDX_ACCOUNT_EVENT_CATEGORY_TIME", columnList = "CATEGORY, TIME, SEQ")
+    })
 public class Event extends AbstractAuditable {
 
     /**
@@ -50,19 +68,17 @@ public class Event extends AbstractAuditable {
     /**
      * Semantic key of a event which is exposed as key to the outside world
      */
+    @NaturalId
     @Column(name = "SID", length = 36, nullable = false, columnDefinition = "CHAR(36)")
     private String id;
 
-    /**
-     * using a database generated sequence is not cloud capable
-     */
     @Column(name = "SEQ", nullable = false, columnDefinition = "BIGINT")
-    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequencer")
     private Long sequence;
 
     @Column(name = "TIME", nullable = false)
     private Timestamp time;
 
+    @NaturalId
     @Column(name = "CATEGORY", length = 36, nullable = false)
     private String category;
 
@@ -112,6 +128,18 @@ public class Event extends AbstractAuditable {
      * @param origin is a url pointing to the origin of the event
      */
     public Event(String sid, URI origin, Instant time, String information, String category) {
+        this(sid, EventSequencer.next(), origin, time, information, category);
+    }
+
+    /**
+     * Recreates an event that is kept outside of the event table having the sequence it was given when stored, e.g.,
+     * in the event log.
+     *
+     * @param sid    a controlled human readable and url capable identifier
+     * @param origin is a url pointing to the origin of the event
+     */
+    public Event(String sid, long sequence, URI origin, Instant time, String information, String category) {
+        this.sequence = sequence;
         this.time = new Timestamp(time.toEpochMilli());
         this.transientTime = time;
         this.id = sid;
@@ -122,9 +150,6 @@ public class Event extends AbstractAuditable {
         // The semantic key might as well be generated as a hash value of the event values
         // for simplicity it is just a unique id here. The reason for having a technical
         // id here is the ability to merge og split events according to needs going forward.
-        if (noSequence()) {
-            sequence = time.toEpochMilli() + time.getNano();
-        }
     }
 
     public String getId() {
@@ -177,8 +202,4 @@ public class Event extends AbstractAuditable {
         return scope + "-" + name;
     }
 
-    private boolean noSequence() {
-        return null == sequence;
-    }
-
 }
@@ -0,0 +1,87 @@
+package dk.nykredit.bank.account.model;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Objects;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Read-only projection of an event holding the attributes used in the event lists, instances are created directly
+ * by the persistence query and never become part of the persistence context.
+ */
+public class EventOverview {
+    private final String id;
+    private final Long sequence;
+    private final Instant time;
+    private final String category;
+    private final String origin;
+
+    public EventOverview(String id, Long sequence, Date time, String category, String origin) {
+        this.id = id;
+        this.sequence = sequence;
+        this.time = Instant.ofEpochMilli(time.getTime());
+        this.category = category;
+        this.origin = origin;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getSequence() {
+        return sequence;
+    }
+
+    public Instant getTime() {
+        return time;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public URI getOrigin() {
+        URI uri = null;
+        try {
+            uri = new URI(origin);
+        } catch (URISyntaxException e) {
+            //cannot do anything about that
+        }
+        return uri;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EventOverview)) {
+            return false;
+        }
+        EventOverview that = (EventOverview) o;
+        return Objects.equals(id, that.id)
+                && Objects.equals(sequence, that.sequence)
+                && Objects.equals(time, that.time)
+                && Objects.equals(category, that.category)
+                && Objects.equals(origin, that.origin);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, sequence, time, category, origin);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("id", id)
+                .append("sequence", sequence)
+                .append("time", time)
+                .append("origin", origin)
+                .toString();
+    }
+}
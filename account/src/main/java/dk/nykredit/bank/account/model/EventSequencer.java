@@ -0,0 +1,57 @@
+package dk.nykredit.bank.account.model;
+
+import java.time.Instant;
+
+/**
+ * Holds the sequencer that generates the sequence numbers of the events created on this node.
+ *
+ * The default sequencer is a {@link HybridLogicalClock} for the node given by the system property
+ * <code>account.event.node</code>, which is 0 if it is not set. Each node sharing the event feed must be given its
+ * own node number, or be given another sequencer by {@link #use(Sequencer)} when it starts. The node number is
+ * registered when the service starts, which fails the start of a node given a node number already in use.
+ */
+public final class EventSequencer {
+    static final String NODE_PROPERTY = "account.event.node";
+
+    private static final int NODE = Integer.getInteger(NODE_PROPERTY, 0);
+    private static volatile Sequencer sequencer = new HybridLogicalClock(NODE);
+
+    private EventSequencer() {
+        // static helpers only
+    }
+
+    /**
+     * @return the node number given by the system property <code>account.event.node</code>
+     */
+    public static int node() {
+        return NODE;
+    }
+
+    /**
+     * @return the next sequence number
+     */
+    public static long next() {
+        return sequencer.next();
+    }
+
+    /**
+     * Records a sequence number generated by another node.
+     */
+    public static void observe(long sequence) {
+        sequencer.observe(sequence);
+    }
+
+    /**
+     * @return the time at which the sequence number was generated, see {@link Sequencer#time(long)}
+     */
+    public static Instant time(long sequence) {
+        return sequencer.time(sequence);
+    }
+
+    /**
+     * Plugs in the sequencer used for the events created from now on.
+     */
+    public static void use(Sequencer sequencer) {
+        EventSequencer.sequencer = sequencer;
+    }
+}
@@ -0,0 +1,152 @@
+package dk.nykredit.bank.account.model;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import dk.nykredit.nic.persistence.jpa.AbstractAuditable;
+import dk.nykredit.time.CurrentTime;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Snapshot of the state of an account summarising the events of its category up to and including a sequence.
+ *
+ * A subscriber joining the feed of the category late reads the snapshot and then follows the feed from the sequence
+ * of the snapshot instead of replaying every event of the category. A category has one snapshot, which is replaced
+ * as the category is compacted, and the events covered by the snapshot may be pruned once they are old enough. The
+ * snapshot keeps the last sequence pruned from the category, a subscriber whose watermark is below it has missed
+ * events and must start over from the snapshot.
+ */
+@Entity
+@Table(name = "ACCOUNT_EVENT_SNAPSHOT",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"CATEGORY"}),
+    indexes = @Index(name = "IDX_ACCOUNT_EVENT_SNAPSHOT_PRUNED", columnList = "PRUNED_SEQ"))
+public class EventSnapshot extends AbstractAuditable {
+
+    /**
+     * TID - the technical unique identifier for instance, i.e., primary key. This should NEVER EVER be
+     * exposed out side the service since it is a key very internal to this service.
+     */
+    @Id
+    @Column(name = "TID", length = 36, nullable = false, columnDefinition = "CHAR(36)")
+    private String tId;
+
+    @Column(name = "CATEGORY", length = 36, nullable = false)
+    private String category;
+
+    @Column(name = "SEQ", nullable = false, columnDefinition = "BIGINT")
+    private long sequence;
+
+    @Column(name = "TIME", nullable = false)
+    private Timestamp time;
+
+    @Column(name = "PRUNED_SEQ", nullable = false, columnDefinition = "BIGINT")
+    private long prunedSequence;
+
+    @Column(name = "REG_NO", length = 4, nullable = false)
+    private String regNo;
+
+    @Column(name = "ACCOUNT_NO", length = 12, nullable = false)
+    private String accountNo;
+
+    @Column(name = "BALANCE", nullable = false, columnDefinition = "DECIMAL(17,2)")
+    private BigDecimal balance;
+
+    @Column(name = "TX_COUNT", nullable = false)
+    private long transactionCount;
+
+    @Column(name = "LAST_TX_TS", nullable = true, columnDefinition = "TIMESTAMP")
+    private Timestamp lastTransactionTime;
+
+    protected EventSnapshot() {
+        // Required by JPA
+    }
+
+    public EventSnapshot(String category, long sequence, Account account) {
+        this.tId = UUID.randomUUID().toString();
+        this.category = category;
+        this.regNo = account.getRegNo();
+        this.accountNo = account.getAccountNo();
+        update(sequence, account);
+    }
+
+    /**
+     * Replaces the snapshot by the state of the account, which has been changed by the events up to and including
+     * the given sequence.
+     */
+    public final void update(long sequence, Account account) {
+        this.sequence = sequence;
+        this.time = Timestamp.from(CurrentTime.now());
+        this.balance = account.getBalance();
+        this.transactionCount = account.getTransactionCount();
+        this.lastTransactionTime = account.getLastTransactionTime().map(Timestamp::from).orElse(null);
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Records that the events of the category up to and including the given sequence may have been pruned.
+     */
+    public void pruned(long sequence) {
+        this.prunedSequence = Math.max(prunedSequence, sequence);
+    }
+
+    /**
+     * @return the last sequence pruned from the category, or 0 if no events have been pruned
+     */
+    public long getPrunedSequence() {
+        return prunedSequence;
+    }
+
+    public Instant getTime() {
+        return time.toInstant();
+    }
+
+    public String getRegNo() {
+        return regNo;
+    }
+
+    public String getAccountNo() {
+        return accountNo;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    public Optional<Instant> getLastTransactionTime() {
+        return Optional.ofNullable(lastTransactionTime).map(Timestamp::toInstant);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("category", category)
+                .append("sequence", sequence)
+                .append("time", time)
+                .append("balance", balance)
+                .append("transactionCount", transactionCount)
+                .toString();
+    }
+}
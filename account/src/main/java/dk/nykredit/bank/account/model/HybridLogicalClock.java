@@ -0,0 +1,68 @@
+package dk.nykredit.bank.account.model;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Sequencer based on a hybrid logical clock, which generates sequence numbers following the physical clock of the
+ * node without a round trip to a shared database.
+ *
+ * A sequence number holds the clock in milliseconds in the high bits, a logical counter in the middle bits and the
+ * node in the low bits. The counter orders the sequence numbers generated within the same millisecond and the clock
+ * never moves backwards, if the physical clock is set back or the counter runs out within a millisecond, the logical
+ * clock moves ahead of the physical clock until the physical clock catches up. The node makes the sequence numbers
+ * unique across nodes and orders sequence numbers generated by different nodes with the same clock and counter.
+ * Sequence numbers of different nodes are ordered by time as far as the clocks of the nodes agree.
+ *
+ * The clock is updated by compare-and-set and generating a sequence number never blocks another thread.
+ */
+public class HybridLogicalClock implements Sequencer {
+    static final int NODE_BITS = 8;
+    static final int COUNTER_BITS = 12;
+    static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private final long node;
+    private final LongSupplier physicalClock;
+    private final AtomicLong clock = new AtomicLong();
+
+    /**
+     * @param node the node generating the sequence numbers, from 0 to 255, which must be unique among the nodes
+     */
+    public HybridLogicalClock(int node) {
+        this(node, System::currentTimeMillis);
+    }
+
+    HybridLogicalClock(int node, LongSupplier physicalClock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("The node must be between 0 and " + MAX_NODE + " but was " + node);
+        }
+        this.node = node;
+        this.physicalClock = physicalClock;
+    }
+
+    @Override
+    public long next() {
+        long physical = physicalClock.getAsLong() << COUNTER_BITS;
+        long logical = clock.updateAndGet(last -> Math.max(physical, last + 1));
+        return (logical << NODE_BITS) | node;
+    }
+
+    @Override
+    public void observe(long sequence) {
+        long logical = sequence >>> NODE_BITS;
+        clock.accumulateAndGet(logical, Math::max);
+    }
+
+    @Override
+    public Instant time(long sequence) {
+        return Instant.ofEpochMilli(sequence >>> (NODE_BITS + COUNTER_BITS));
+    }
+
+    /**
+     * @return the node that generated the sequence number
+     */
+    public static int node(long sequence) {
+        return (int) (sequence & MAX_NODE);
+    }
+}
@@ -0,0 +1,81 @@
+package dk.nykredit.bank.account.model;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import dk.nykredit.nic.persistence.jpa.AbstractAuditable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * A named lease held by one instance of the service at a time, e.g., the registration of the node generating event
+ * sequence numbers or the right to run a job that must only run on a single node.
+ *
+ * The lease is held until it expires and may be renewed by its owner before then. An expired lease may be taken over
+ * by another owner, which lets another instance continue the work of an instance that has stopped.
+ */
+@Entity
+@Table(name = "ACCOUNT_LEASE",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"NAME"}))
+public class Lease extends AbstractAuditable {
+
+    /**
+     * TID - the technical unique identifier for instance, i.e., primary key. This should NEVER EVER be
+     * exposed out side the service since it is a key very internal to this service.
+     */
+    @Id
+    @Column(name = "TID", length = 36, nullable = false, columnDefinition = "CHAR(36)")
+    private String tId;
+
+    @Column(name = "NAME", length = 64, nullable = false)
+    private String name;
+
+    @Column(name = "OWNER", length = 36, nullable = false)
+    private String owner;
+
+    @Column(name = "EXPIRES", nullable = false)
+    private Timestamp expires;
+
+    protected Lease() {
+        // Required by JPA
+    }
+
+    public Lease(String name, String owner, Instant expires) {
+        this.tId = UUID.randomUUID().toString();
+        this.name = name;
+        this.owner = owner;
+        this.expires = Timestamp.from(expires);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the identifier of the instance holding the lease
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    public Instant getExpires() {
+        return expires.toInstant();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("name", name)
+                .append("owner", owner)
+                .append("expires", expires)
+                .toString();
+    }
+}
@@ -0,0 +1,27 @@
+package dk.nykredit.bank.account.model;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+/**
+ * The transactions are partitioned by the month in which they are stored, the partition key is the year and month in
+ * UTC written as <code>yyyymm</code>. The transaction table is expected to be range partitioned on the key in the
+ * database, which allows the database to read only the partitions overlapping an interval given that the query has a
+ * predicate on the partition key.
+ */
+public final class MonthPartition {
+
+    private MonthPartition() {
+        // static helpers only
+    }
+
+    public static int of(Instant time) {
+        return of(time.atZone(ZoneOffset.UTC));
+    }
+
+    public static int of(ZonedDateTime time) {
+        ZonedDateTime utc = time.withZoneSameInstant(ZoneOffset.UTC);
+        return utc.getYear() * 100 + utc.getMonthValue();
+    }
+}
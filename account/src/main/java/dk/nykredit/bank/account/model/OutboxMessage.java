@@ -0,0 +1,106 @@
+package dk.nykredit.bank.account.model;
+
+import java.net.URI;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import dk.nykredit.nic.persistence.jpa.AbstractAuditable;
+import dk.nykredit.time.CurrentTime;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * An event that is yet to be published, kept in the outbox table.
+ *
+ * The message is stored in the same transaction as the change it signals, which means that the event is published
+ * if and only if the change is committed. The outbox is relayed to the event feed and the event sinks in the order
+ * the messages were stored and a message is removed once it is published. The dedupe key becomes the id of the
+ * published event, which allows the feed and the sinks to recognize a message that is published more than once.
+ */
+@Entity
+@Table(name = "ACCOUNT_OUTBOX",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"DEDUPE_KEY"}),
+    indexes = @Index(name = "IDX_ACCOUNT_OUTBOX_TIME", columnList = "TIME, TID"))
+public class OutboxMessage extends AbstractAuditable {
+
+    /**
+     * TID - the technical unique identifier for instance, i.e., primary key. This should NEVER EVER be
+     * exposed out side the service since it is a key very internal to this service.
+     */
+    @Id
+    @Column(name = "TID", length = 36, nullable = false, columnDefinition = "CHAR(36)")
+    private String tId;
+
+    @Column(name = "DEDUPE_KEY", length = 36, nullable = false, columnDefinition = "CHAR(36)")
+    private String dedupeKey;
+
+    @Column(name = "TIME", nullable = false)
+    private Timestamp time;
+
+    @Column(name = "CATEGORY", length = 36, nullable = false)
+    private String category;
+
+    @Column(name = "INFO", length = 200, nullable = false)
+    private String information;
+
+    @Column(name = "ORIGIN", length = 300, nullable = false)
+    private String origin;
+
+    protected OutboxMessage() {
+        // Required by JPA
+    }
+
+    /**
+     * @param origin is a url pointing to the origin of the event
+     */
+    public OutboxMessage(URI origin, String category, String information) {
+        this.tId = UUID.randomUUID().toString();
+        this.dedupeKey = UUID.randomUUID().toString();
+        this.time = Timestamp.from(CurrentTime.now());
+        this.origin = origin.getPath();
+        this.category = category;
+        this.information = information;
+    }
+
+    public String getDedupeKey() {
+        return dedupeKey;
+    }
+
+    public Instant getTime() {
+        return time.toInstant();
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getInformation() {
+        return information;
+    }
+
+    /**
+     * @return the event published for the message
+     */
+    public Event toEvent() {
+        return new Event(dedupeKey, URI.create(origin), getTime(), information, category);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("dedupeKey", dedupeKey)
+                .append("time", time)
+                .append("category", category)
+                .append("origin", origin)
+                .toString();
+    }
+}
@@ -2,6 +2,7 @@ package dk.nykredit.bank.account.model;
 
 import java.util.UUID;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
@@ -12,15 +13,24 @@ import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 
 import dk.nykredit.nic.persistence.jpa.AbstractAuditable;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 /**
  * Very basic modelling of an reconciled transaction concept to show the relation to account handled by JPA.
+ * <p>
+ * The reconciliation of a transaction can be updated, which is why it is cached in a read-write region.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "account.reconciledtransaction")
 @Table(name = "BANK_RECONCILED_TX", uniqueConstraints = @UniqueConstraint(columnNames = { "FK_TRANSACTION_TID", "SID" }))
 public class ReconciledTransaction extends AbstractAuditable {
+    private static final String[] EXCLUDED_FIELDS = new String[]{
+        "tId", "account", "transaction", "lastModifiedBy", "lastModifiedTime"
+    };
 
     /**
      * TID - the technical unique identifier for instance, i.e., primary key. This should NEVER EVER be
@@ -61,6 +71,7 @@ public class ReconciledTransaction extends AbstractAuditable {
         this.reconciled = getStringFromBoolean(reconciled);
         this.note = note;
         transaction = tx;
+        account = tx.getAccount();
         tId = UUID.randomUUID().toString();
         id = tx.getId();
     }
@@ -89,6 +100,11 @@ public class ReconciledTransaction extends AbstractAuditable {
         return transaction;
     }
 
+    @Override
+    protected String[] excludedFields() {
+        return EXCLUDED_FIELDS;
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
@@ -0,0 +1,29 @@
+package dk.nykredit.bank.account.model;
+
+import java.time.Instant;
+
+/**
+ * Generates the sequence numbers of the events.
+ *
+ * The sequence numbers generated by a sequencer are strictly increasing and unique across the nodes generating them,
+ * they are not required to be consecutive. A sequencer is plugged in using {@link EventSequencer#use(Sequencer)}.
+ */
+public interface Sequencer {
+
+    /**
+     * @return a sequence number greater than every sequence number generated or observed before by this sequencer
+     */
+    long next();
+
+    /**
+     * Records a sequence number generated by another node, which keeps the sequence numbers generated after it
+     * greater than it, e.g., when an event from another node is stored after it has been read.
+     */
+    void observe(long sequence);
+
+    /**
+     * @return the time at which the sequence number was generated according to the clock of the sequencer, which is
+     * never before the physical time at which it was generated
+     */
+    Instant time(long sequence);
+}
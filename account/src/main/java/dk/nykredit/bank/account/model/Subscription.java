@@ -0,0 +1,93 @@
+package dk.nykredit.bank.account.model;
+
+import java.net.URI;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.UUID;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+
+import dk.nykredit.nic.persistence.jpa.AbstractAuditable;
+import dk.nykredit.time.CurrentTime;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * A subscriber that has the events of a category, or of the complete feed using the category
+ * {@value ConsumerOffset#ALL}, pushed to an HTTP endpoint. The progress of the delivery is the offset committed under
+ * the name of the subscription, see {@link ConsumerOffset}.
+ */
+@Entity
+@Table(name = "ACCOUNT_EVENT_SUBSCRIPTION",
+    uniqueConstraints = @UniqueConstraint(columnNames = {"NAME"}))
+public class Subscription extends AbstractAuditable {
+
+    /**
+     * TID - the technical unique identifier for instance, i.e., primary key. This should NEVER EVER be
+     * exposed out side the service since it is a key very internal to this service.
+     */
+    @Id
+    @Column(name = "TID", length = 36, nullable = false, columnDefinition = "CHAR(36)")
+    private String tId;
+
+    @Column(name = "NAME", length = 36, nullable = false)
+    private String name;
+
+    @Column(name = "CATEGORY", length = 36, nullable = false)
+    private String category;
+
+    @Column(name = "ENDPOINT", length = 400, nullable = false)
+    private String endpoint;
+
+    @Column(name = "TIME", nullable = false)
+    private Timestamp time;
+
+    protected Subscription() {
+        // Required by JPA
+    }
+
+    public Subscription(String name, String category, URI endpoint) {
+        this.tId = UUID.randomUUID().toString();
+        this.name = name;
+        this.category = category;
+        this.endpoint = endpoint.toString();
+        this.time = Timestamp.from(CurrentTime.now());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public URI getEndpoint() {
+        return URI.create(endpoint);
+    }
+
+    public void setEndpoint(URI endpoint) {
+        this.endpoint = endpoint.toString();
+    }
+
+    /**
+     * @return the time the subscription was registered
+     */
+    public Instant getTime() {
+        return time.toInstant();
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+                .append("name", name)
+                .append("category", category)
+                .append("endpoint", endpoint)
+                .toString();
+    }
+}
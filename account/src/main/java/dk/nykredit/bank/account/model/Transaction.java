@@ -3,26 +3,53 @@ package dk.nykredit.bank.account.model;
 import java.math.BigDecimal;
 import java.util.UUID;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.PrePersist;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 
 import dk.nykredit.nic.persistence.jpa.AbstractAuditable;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 /**
  * Very basic modelling of an transaction concept to show the relation to account handled by JPA.
+ * <p>
+ * Transactions are immutable and are kept in a read-only region of the second level cache, the natural id of the
+ * transaction is the semantic key within the owning account which allows for resolving a transaction from the cache.
+ * <p>
+ * Transactions are stored in monthly partitions, see {@link MonthPartition}, the partition of a transaction is the
+ * month of the time it is stored. The partition key of transactions stored before it was introduced is computed by
+ * the migration <code>db/migration/transaction-partition.sql</code>, which also describes how the table is range
+ * partitioned on the key. The key is indexed after the account, which confines an interval query to the months it
+ * overlaps.
  */
 @Entity
-@Table(name = "BANK_TRANSACTION", uniqueConstraints = @UniqueConstraint(columnNames = { "FK_ACCOUNT_TID", "SID" }))
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY, region = "account.transaction")
+@NaturalIdCache(region = "account.transaction.naturalid")
+@Table(name = "BANK_TRANSACTION",
+    uniqueConstraints = @UniqueConstraint(columnNames = { "FK_ACCOUNT_TID", "SID" }),
+    indexes = {
+        @Index(name = "IDX_BANK_TRANSACTION_SEEK", columnList = "FK_ACCOUNT_TID, LAST_MODIFIED_TS, SID"),
+        @Index(name = "IDX_BANK_TRANSACTION_PARTITION", columnList = "FK_ACCOUNT_TID, PARTITION_MONTH, LAST_MODIFIED_TS, SID"),
+        @Index(name = "IDX_BANK_TRANSACTION_AMOUNT", columnList = "FK_ACCOUNT_TID, AMOUNT")
+    })
 public class Transaction extends AbstractAuditable {
     private static final String[] EXCLUDED_FIELDS = new String[]{
-        "tId", "account", "lastModifiedBy", "lastModifiedTime"
+        "tId", "account", "partitionMonth", "lastModifiedBy", "lastModifiedTime"
     };
 
     /**
@@ -36,12 +63,14 @@ public class Transaction extends AbstractAuditable {
     /**
      * Semantic key of a transaction which is exposed as key to the outside world!
      */
+    @NaturalId
     @Column(name = "SID", length = 36, nullable = false, columnDefinition = "CHAR(36)")
     private String id;
 
     /**
      * The transaction is "owned" by account.
      */
+    @NaturalId
     @ManyToOne
     @JoinColumn(name = "FK_ACCOUNT_TID", nullable = false)
     private Account account;
@@ -52,6 +81,9 @@ public class Transaction extends AbstractAuditable {
     @Column(name = "DESCRIPTION", length = 500, nullable = false)
     private String description;
 
+    @Column(name = "PARTITION_MONTH", nullable = false)
+    private int partitionMonth;
+
     protected Transaction() {
         // Required by JPA
     }
@@ -90,6 +122,11 @@ public class Transaction extends AbstractAuditable {
         return description;
     }
 
+    @PrePersist
+    void assignPartition() {
+        partitionMonth = MonthPartition.of(getLastModifiedTime().toInstant());
+    }
+
     @Override
     protected String[] excludedFields() {
         return EXCLUDED_FIELDS;
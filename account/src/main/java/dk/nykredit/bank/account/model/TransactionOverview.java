@@ -0,0 +1,93 @@
+package dk.nykredit.bank.account.model;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Objects;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Read-only projection of a transaction holding the attributes used in the transaction overview, instances are
+ * created directly by the persistence query and never become part of the persistence context.
+ */
+public class TransactionOverview {
+    private final String regNo;
+    private final String accountNo;
+    private final String id;
+    private final BigDecimal amount;
+    private final String description;
+    private final Timestamp lastModifiedTime;
+
+    public TransactionOverview(String regNo, String accountNo, String id, BigDecimal amount, String description,
+                               Date lastModifiedTime) {
+        this.regNo = regNo;
+        this.accountNo = accountNo;
+        this.id = id;
+        this.amount = amount;
+        this.description = description;
+        this.lastModifiedTime = lastModifiedTime instanceof Timestamp
+                ? (Timestamp) lastModifiedTime
+                : lastModifiedTime == null ? null : new Timestamp(lastModifiedTime.getTime());
+    }
+
+    public String getRegNo() {
+        return regNo;
+    }
+
+    public String getAccountNo() {
+        return accountNo;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public Timestamp getLastModifiedTime() {
+        if (lastModifiedTime == null) {
+            return new Timestamp(0);
+        }
+        Timestamp ts = new Timestamp(lastModifiedTime.getTime());
+        ts.setNanos(lastModifiedTime.getNanos());
+        return ts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TransactionOverview)) {
+            return false;
+        }
+        TransactionOverview that = (TransactionOverview) o;
+        return Objects.equals(regNo, that.regNo)
+                && Objects.equals(accountNo, that.accountNo)
+                && Objects.equals(id, that.id)
+                && Objects.equals(amount, that.amount)
+                && Objects.equals(description, that.description);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(regNo, accountNo, id, amount, description);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+            .append("id", id)
+            .append("amount", amount)
+            .append("description", description)
+            .toString();
+    }
+}
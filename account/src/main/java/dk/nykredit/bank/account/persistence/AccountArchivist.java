@@ -1,95 +1,320 @@
 package dk.nykredit.bank.account.persistence;
 
+import java.math.BigDecimal;
 import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceException;
 import javax.persistence.TypedQuery;
 
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+
+import dk.nykredit.api.capabilities.Cursor;
 import dk.nykredit.api.capabilities.Element;
 import dk.nykredit.api.capabilities.Interval;
+import dk.nykredit.api.capabilities.Select;
 import dk.nykredit.api.capabilities.Sort;
 import dk.nykredit.bank.account.model.Account;
+import dk.nykredit.bank.account.model.AccountOverview;
+import dk.nykredit.bank.account.model.ConsumerOffset;
+import dk.nykredit.bank.account.model.DeadLetter;
 import dk.nykredit.bank.account.model.Event;
+import dk.nykredit.bank.account.model.EventOverview;
+import dk.nykredit.bank.account.model.EventSequencer;
+import dk.nykredit.bank.account.model.EventSnapshot;
+import dk.nykredit.bank.account.model.Lease;
+import dk.nykredit.bank.account.model.MonthPartition;
+import dk.nykredit.bank.account.model.OutboxMessage;
 import dk.nykredit.bank.account.model.ReconciledTransaction;
+import dk.nykredit.bank.account.model.Subscription;
 import dk.nykredit.bank.account.model.Transaction;
+import dk.nykredit.bank.account.model.TransactionOverview;
 import dk.nykredit.nic.core.logging.LogDuration;
+import dk.nykredit.nic.persistence.jpa.AbstractAuditable;
+import dk.nykredit.time.CurrentTime;
 
 /**
  * Handles archiving (persistence) tasks for the account domain model.
+ * <p>
+ * The lookup and list methods support a transaction but do not require one, a read coming in without a transaction
+ * is done without enlisting the datasource in a transaction and without a commit at the end. The list queries are
+ * furthermore read-only and never flush the persistence context before they are executed.
+ * <p>
+ * The list queries and the reads of an account with its transactions are routed to the read replica unless they take
+ * part in a transaction or read what has recently been written, see {@link ReplicaRouting}. The lookups by natural
+ * id are resolved from the second level cache of the primary and are thus not routed to the replica.
+ * <p>
+ * The events are stored in the event table unless the {@link EventLog} is enabled, in which case the event methods
+ * append to and read from the log instead.
  */
 @Stateless
 @TransactionAttribute(TransactionAttributeType.REQUIRED)
 public class AccountArchivist {
-    private static final int TX_DEFAULTSIZE = 5;
-    private static final int TX_MAXSIZE = 500;
+    private static final int TX_MAXSIZE = Element.MAX_ELEMENTS;
+    private static final int SCROLL_FETCHSIZE = 100;
+    private static final int BATCH_SIZE = 50;
+    private static final String LOAD_GRAPH = "javax.persistence.loadgraph";
+    private static final String ACCOUNT_OVERVIEW = "select new " + AccountOverview.class.getName()
+            + "(a.regNo, a.accountNo, a.name, a.balance, a.transactionCount, a.lastTransactionTime) from Account a";
+    private static final String TRANSACTION_OVERVIEW = "select new " + TransactionOverview.class.getName()
+            + "(a.regNo, a.accountNo, t.id, t.amount, t.description, t.lastModifiedTime) from Transaction t join t.account a";
+    private static final String NOT_RECONCILED = "t not in (select rt.transaction from ReconciledTransaction rt where rt.account=:account)";
+    private static final String OUTBOX = "select m from OutboxMessage m order by m.time, m.tId";
+    private static final String OUTBOX_PENDING = "select count(m) from OutboxMessage m where m.category=:category";
+    private static final String ACCOUNT_LOCK = "select a from Account a where a.regNo=:regNo and a.accountNo=:accountNo";
+    private static final String SNAPSHOT = "select s from EventSnapshot s where s.category=:category";
+    private static final String LAST_SEQUENCE = "select max(e.sequence) from Event e where e.category=:category";
+    private static final String PRUNABLE_EVENTS = "select e.tId, e.sequence from Event e where e.category=:category"
+            + " and e.sequence<=:sequence and e.time<:before order by e.sequence";
+    private static final String COMMITTED_WATERMARK = "select min(o.watermark) from ConsumerOffset o"
+            + " where o.category=:category or o.category=:all";
+    private static final String PRUNED_SEQUENCE = "select max(s.prunedSequence) from EventSnapshot s";
+    private static final String PRUNE_EVENTS = "delete from Event e where e.tId in :events";
+    private static final String CONSUMER_OFFSETS = "select o from ConsumerOffset o order by o.consumer, o.category";
+    private static final String CONSUMER_OFFSETS_OF = "select o from ConsumerOffset o where o.consumer=:consumer order by o.category";
+    private static final String CONSUMER_OFFSET = "select o from ConsumerOffset o where o.consumer=:consumer and o.category=:category";
+    private static final String COMMIT_OFFSET = "update ConsumerOffset o set o.watermark=:watermark, o.time=:time, o.lastModifiedTime=:time"
+            + " where o.consumer=:consumer and o.category=:category and o.watermark=:previous";
+    private static final String LEASE = "select l from Lease l where l.name=:name";
+    private static final String LEASES = "select l from Lease l where l.name like :prefix and l.expires>:now order by l.name";
+    private static final String ACQUIRE_LEASE = "update Lease l set l.owner=:owner, l.expires=:expires, l.lastModifiedTime=:now"
+            + " where l.name=:name and (l.owner=:owner or l.expires<:now)";
+    private static final String RELEASE_LEASE = "update Lease l set l.expires=:now, l.lastModifiedTime=:now"
+            + " where l.name=:name and l.owner=:owner";
+    private static final String REMOVE_CONSUMER_OFFSETS = "delete from ConsumerOffset o where o.consumer=:consumer";
+    private static final String SUBSCRIPTIONS = "select s from Subscription s order by s.name";
+    private static final String SUBSCRIPTION = "select s from Subscription s where s.name=:name";
+    private static final String DEAD_LETTERS = "select d from DeadLetter d where d.subscription=:subscription order by d.firstSequence";
+    private static final String LAST_FEED_SEQUENCE = "select max(e.sequence) from Event e";
+    private static final String EVENTS_AFTER = "select count(e) from Event e where e.sequence>:after";
+    private static final String CATEGORY_EVENTS_AFTER = "select count(e) from Event e where e.category=:category and e.sequence>:after";
+    private static final String EVENT_OVERVIEW = "select new " + EventOverview.class.getName()
+            + "(e.id, e.sequence, e.time, e.category, e.origin) from Event e";
+    private static final AttributeRegistry ACCOUNT_ATTRIBUTES = new AttributeRegistry("a")
+            .attribute("regNo", "regNo")
+            .attribute("accountNo", "accountNo")
+            .attribute("name", "name")
+            .attribute("balance", "balance", BigDecimal::new)
+            .sortableAttribute("transactionCount", "transactionCount")
+            .sortableAttribute("lastTransactionTime", "lastTransactionTime");
+    private static final AttributeRegistry TRANSACTION_ATTRIBUTES = new AttributeRegistry("t")
+            .attribute("id", "id")
+            .attribute("amount", "amount", BigDecimal::new);
+    private static final AttributeRegistry EVENT_ATTRIBUTES = new AttributeRegistry("e")
+            .attribute("sequence", "sequence", Long::valueOf)
+            .sortableAttribute("time", "time")
+            .attribute("category", "category");
     @PersistenceContext(unitName = "accountPersistenceUnit")
     private EntityManager em;
+    @PersistenceContext(unitName = "accountReplicaPersistenceUnit")
+    private EntityManager replica;
+    @EJB
+    private ReplicaRouting routing;
+    @EJB
+    private TransactionArchive archive;
+    @EJB
+    private EventNotifier notifier;
+    @EJB
+    private EventLog log;
+    @Resource
+    private SessionContext context;
+
+    /**
+     * @return an archivist reading and writing accounts through the given primary and replica without a container
+     */
+    static AccountArchivist of(EntityManager em, EntityManager replica, ReplicaRouting routing) {
+        AccountArchivist archivist = new AccountArchivist();
+        archivist.em = em;
+        archivist.replica = replica;
+        archivist.routing = routing;
+        return archivist;
+    }
+
+    /**
+     * @return an archivist reading and writing transactions through the given database and archive without a container
+     */
+    static AccountArchivist of(EntityManager em, ReplicaRouting routing, TransactionArchive archive) {
+        AccountArchivist archivist = of(em, em, routing);
+        archivist.archive = archive;
+        return archivist;
+    }
 
     @LogDuration(limit = 50)
-    public List<Account> listAccounts() {
-        TypedQuery<Account> q = em.createQuery("select a from Account a", Account.class);
-        return q.getResultList();
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<AccountOverview> listAccounts() {
+        return listAccounts(Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * Lists accounts as read-only projections holding the attributes of the account overview.
+     *
+     * @param selectAs attribute values to select by, supports regNo, accountNo, name and balance
+     * @param sortAs   attributes to sort by, supports regNo, accountNo, name, balance, transactionCount and
+     *                 lastTransactionTime, default is regNo and accountNo
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<AccountOverview> listAccounts(List<Select> selectAs, List<Sort> sortAs) {
+        return accountsQuery(selectAs, sortAs).getResultList();
+    }
+
+    /**
+     * Delivers the accounts one at a time to the consumer as they are read from a forward only cursor, the accounts are
+     * read as projections that never enter the persistence context which keeps the memory used constant regardless of
+     * the number of accounts.
+     *
+     * @param selectAs attribute values to select by, supports regNo, accountNo, name and balance
+     * @param sortAs   attributes to sort by, supports regNo, accountNo, name, balance, transactionCount and
+     *                 lastTransactionTime, default is regNo and accountNo
+     * @param consumer receives the accounts in order
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void streamAccounts(List<Select> selectAs, List<Sort> sortAs, Consumer<AccountOverview> consumer) {
+        scroll(accountsQuery(selectAs, sortAs), AccountOverview.class, consumer);
+    }
+
+    private TypedQuery<AccountOverview> accountsQuery(List<Select> selectAs, List<Sort> sortAs) {
+        TypedQuery<AccountOverview> q = query(reader(ReplicaRouting.ALL), QueryPlan.ACCOUNTS, !selectAs.isEmpty() || !sortAs.isEmpty(),
+                () -> accountsJpql(selectAs, sortAs), AccountOverview.class);
+        ACCOUNT_ATTRIBUTES.bind(q, selectAs);
+        return q;
+    }
+
+    static String accountsJpql(List<Select> selectAs, List<Sort> sortAs) {
+        StringBuilder qs = new StringBuilder(ACCOUNT_OVERVIEW);
+        String selection = ACCOUNT_ATTRIBUTES.where(selectAs);
+        if (!selection.isEmpty()) {
+            qs.append(" where ").append(selection);
+        }
+        qs.append(ACCOUNT_ATTRIBUTES.orderBy(sortAs, "regNo", "accountNo"));
+        return qs.toString();
     }
 
     /**
-     * Find account by its primary key. Note this will throw {@link NoResultException} which will roll back the
-     * transaction if the account is not found - if this is a problem consider using {@link #findAccount(String, String)}.
+     * Find account by its natural id. Note this will throw {@link NoResultException} if the account is not found - if
+     * this is a problem consider using {@link #findAccount(String, String)}.
      */
     @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public Account getAccount(String regNo, String accountNo) {
-        TypedQuery<Account> q = em.createQuery("select a from Account a where a.regNo=:regNo and a.accountNo=:accountNo", Account.class);
-        q.setParameter("regNo", regNo);
-        q.setParameter("accountNo", accountNo);
-        return q.getSingleResult();
+        return findAccount(regNo, accountNo)
+                .orElseThrow(() -> new NoResultException("No account " + regNo + "-" + accountNo));
     }
 
+    /**
+     * Find account by its natural id, which is resolved from the second level cache when the account has been read
+     * before.
+     */
     @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public Optional<Account> findAccount(String regNo, String accountNo) {
-        try {
-            return Optional.of(getAccount(regNo, accountNo));
-        } catch (NoResultException e) {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(session().byNaturalId(Account.class)
+                .using("regNo", regNo)
+                .using("accountNo", accountNo)
+                .load());
     }
 
+    /**
+     * Find account by its natural id together with its transactions which are read in the same query. Note this will
+     * throw {@link NoResultException} if the account is not found.
+     */
     @LogDuration(limit = 50)
-    public void save(Account account) {
-        em.persist(account);
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Account getAccountWithTransactions(String regNo, String accountNo) {
+        return getAccount(regNo, accountNo, Account.WITH_TRANSACTIONS);
     }
 
+    /**
+     * Find account by its natural id together with its reconciled transactions and the transactions these reconcile,
+     * which are all read in the same query. Note this will throw {@link NoResultException} if the account is not found.
+     */
     @LogDuration(limit = 50)
-    public Transaction getTransaction(String regNo, String accountNo, String id) {
-        TypedQuery<Transaction> q = em.createQuery("select t from Transaction t " +
-                "where t.account.regNo=:regNo and t.account.accountNo=:accountNo and t.id=:id", Transaction.class);
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Account getAccountWithReconciledTransactions(String regNo, String accountNo) {
+        return getAccount(regNo, accountNo, Account.WITH_RECONCILED_TRANSACTIONS);
+    }
+
+    private Account getAccount(String regNo, String accountNo, String graph) {
+        EntityManager reader = reader(key(regNo, accountNo));
+        TypedQuery<Account> q = readOnly(reader.createNamedQuery(QueryPlan.ACCOUNT.queryName(), Account.class));
         q.setParameter("regNo", regNo);
         q.setParameter("accountNo", accountNo);
-        q.setParameter("id", id);
+        q.setHint(LOAD_GRAPH, reader.getEntityGraph(graph));
         return q.getSingleResult();
     }
 
     @LogDuration(limit = 50)
+    public void save(Account account) {
+        em.persist(account);
+        routing.written(key(account), ReplicaRouting.ALL);
+    }
+
+    /**
+     * Find transaction by its natural id. Note this will throw {@link NoResultException} if the transaction is not
+     * found, consider using {@link #findTransaction(String, String, String)} if this is a problem.
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Transaction getTransaction(String regNo, String accountNo, String id) {
+        Transaction transaction = findTransaction(regNo, accountNo, id);
+        if (null == transaction) {
+            throw new NoResultException("No transaction " + id + " on account " + regNo + "-" + accountNo);
+        }
+        return transaction;
+    }
+
+    /**
+     * Find transaction by its natural id, which is resolved from the second level cache when the transaction has been
+     * read before.
+     *
+     * @return the transaction or null if the transaction is not found
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public Transaction findTransaction(String regNo, String accountNo, String id) {
-        TypedQuery<Transaction> q = em.createQuery("select t from Transaction t " +
-                "where t.account.regNo=:regNo and t.account.accountNo=:accountNo and t.id=:id", Transaction.class);
-        q.setParameter("regNo", regNo);
-        q.setParameter("accountNo", accountNo);
-        q.setParameter("id", id);
-        return q.getResultList().get(0);
+        return findAccount(regNo, accountNo)
+                .map(account -> session().byNaturalId(Transaction.class)
+                        .using("account", account)
+                        .using("id", id)
+                        .load())
+                .orElse(null);
     }
 
     @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public ReconciledTransaction getReconciledTransaction(String regNo, String accountNo, String id) {
-        TypedQuery<ReconciledTransaction> q = em.createQuery("select rt from ReconciledTransaction rt " +
-                "where rt.account.regNo=:regNo and rt.account.accountNo=:accountNo and rt.id=:id", ReconciledTransaction.class);
+        TypedQuery<ReconciledTransaction> q = readOnly(reader(key(regNo, accountNo))
+                .createNamedQuery(QueryPlan.RECONCILED_TRANSACTION.queryName(), ReconciledTransaction.class));
         q.setParameter("regNo", regNo);
         q.setParameter("accountNo", accountNo);
         q.setParameter("id", id);
@@ -99,6 +324,43 @@ public class AccountArchivist {
     @LogDuration(limit = 50)
     public void save(ReconciledTransaction rt) {
         em.persist(rt);
+        routing.written(key(rt.getTransaction().getAccount()));
+    }
+
+    /**
+     * Persists the entities in batches of the JDBC batch size of the persistence unit, the inserts of a batch are sent
+     * to the database in a few round trips ordered by entity. The persistence context is cleared after each full
+     * batch, which keeps the memory used constant but also means that the entities persisted in an earlier batch are
+     * detached when this returns.
+     */
+    @LogDuration(limit = 50)
+    public void saveAll(Collection<? extends AbstractAuditable> entities) {
+        int count = 0;
+        List<Event> logged = new ArrayList<>();
+        for (AbstractAuditable entity : entities) {
+            if (entity instanceof Event && log.isEnabled()) {
+                logged.add((Event) entity);
+                continue;
+            }
+            em.persist(entity);
+            if (entity instanceof Account) {
+                routing.written(key(entity), ReplicaRouting.ALL);
+            } else {
+                routing.written(key(entity));
+            }
+            if (entity instanceof Event) {
+                notifier.stored(((Event) entity).getCategory());
+            }
+            count++;
+            if (count % BATCH_SIZE == 0 && count < entities.size()) {
+                em.flush();
+                em.clear();
+            }
+        }
+        if (!logged.isEmpty()) {
+            log.append(logged);
+            logged.forEach(event -> notifier.stored(event.getCategory()));
+        }
     }
 
     /**
@@ -106,101 +368,959 @@ public class AccountArchivist {
      *
      * @param elementSet the number of element that is wished returned
      * @param withIn     the interval which the returned items needs to stay within
-     * @param sortAs     attribute to sort by, default is time and supports sorting by amount
+     * @param sortAs     attributes to sort by, default is time and supports sorting by id and amount
      */
-    public List<Transaction> getTransactions(String regNo, String accountNo, Optional<Element> elementSet, Optional<Interval> withIn,
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<TransactionOverview> getTransactions(String regNo, String accountNo, Optional<Element> elementSet, Optional<Interval> withIn,
             List<Sort> sortAs) {
-        StringBuilder qs = new StringBuilder("select t from Transaction t where t.account.regNo=:regNo and t.account.accountNo=:accountNo");
-        if (withIn.isPresent()) {
-            qs.append(" and t.lastModifiedTime>:startsAt and t.lastModifiedTime<:endsAt");
-        }
-        sortAs.stream()
-                .filter(sort -> "amount".equals(sort.getAttribute()))
-                .findAny()
-                .ifPresent(sort -> qs.append(" order by t.").append(sort.getAttribute()).append(" ").append(sort.getDirection()));
-        TypedQuery<Transaction> q = em.createQuery(qs.toString(), Transaction.class);
+        return getTransactions(regNo, accountNo, Collections.emptyList(), elementSet, withIn, sortAs, Optional.empty());
+    }
+
+    /**
+     * getting a set of transactions filtered according to the APi capabilities
+     *
+     * The transactions are stored in monthly partitions and a query within an interval only reads the partitions that
+     * overlap the interval, which means that the time spent reading e.g. the latest two weeks does not grow with the
+     * history of the account.
+     *
+     * Transactions older than the retention period are moved to the {@link TransactionArchive}, an interval reaching
+     * back beyond the retention period reads the archived transactions within the interval as well and merges these
+     * with the transactions read from the table.
+     *
+     * The transactions are by default ordered by their time and semantic id, which allows a cursor to seek to its
+     * position in the index for the account and read the page from there instead of reading and skipping every
+     * transaction in front of the page. If a specific sorting is requested the cursor is not used.
+     *
+     * @param selectAs   attribute values to select by, supports id and amount
+     * @param elementSet the number of element that is wished returned, used as page size if a cursor is given
+     * @param withIn     the interval which the returned items needs to stay within
+     * @param sortAs     attributes to sort by, default is time and supports sorting by id and amount
+     * @param at         the position to seek to before reading the page
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<TransactionOverview> getTransactions(String regNo, String accountNo, List<Select> selectAs, Optional<Element> elementSet,
+            Optional<Interval> withIn, List<Sort> sortAs, Optional<Cursor> at) {
+        Optional<Cursor> cursor = sortAs.isEmpty() ? at : Optional.empty();
+        boolean seek = cursor.isPresent();
+        boolean backwards = seek && !cursor.get().isAfter();
+        TypedQuery<TransactionOverview> q = query(reader(key(regNo, accountNo)), QueryPlan.transactions(withIn.isPresent(), seek, backwards),
+                !selectAs.isEmpty() || !sortAs.isEmpty(),
+                () -> transactionsJpql(withIn.isPresent(), selectAs, sortAs, seek, backwards), TransactionOverview.class);
         q.setParameter("regNo", regNo);
         q.setParameter("accountNo", accountNo);
         if (withIn.isPresent()) {
+            q.setParameter("fromPartition", MonthPartition.of(withIn.get().getStart()));
+            q.setParameter("toPartition", MonthPartition.of(withIn.get().getEnd()));
             Timestamp ts = Timestamp.from(withIn.get().getStart().toInstant());
             q.setParameter("startsAt", ts);
             Timestamp te = Timestamp.from(withIn.get().getEnd().toInstant());
             q.setParameter("endsAt", te);
         }
-        List<Transaction> txs = q.setMaxResults(TX_MAXSIZE).getResultList();
-        if ((TX_DEFAULTSIZE < txs.size() && (elementSet.isPresent()))) {
-            return reduceElements(elementSet.get(), txs);
+        TRANSACTION_ATTRIBUTES.bind(q, selectAs);
+        int offset = 0;
+        if (cursor.isPresent()) {
+            q.setParameter("seekTime", Timestamp.from(cursor.get().getTime()));
+            q.setParameter("seekId", cursor.get().getId());
+        } else if (elementSet.isPresent()) {
+            offset = elementSet.get().getStart() - 1;
+        }
+        int size = elementSet.map(Element::size).orElse(TX_MAXSIZE);
+        boolean archived = withIn.isPresent() && MonthPartition.of(withIn.get().getStart()) < archive.horizon();
+        List<TransactionOverview> txs;
+        if (archived) {
+            List<TransactionOverview> hot = q.setMaxResults(offset + size).getResultList();
+            txs = merge(hot, archived(regNo, accountNo, selectAs, withIn.get(), cursor), sortAs, backwards, offset, size);
+        } else {
+            q.setFirstResult(offset);
+            txs = q.setMaxResults(size).getResultList();
+        }
+        if (backwards) {
+            List<TransactionOverview> reversed = new ArrayList<>(txs);
+            Collections.reverse(reversed);
+            return reversed;
         }
         return txs;
+    }
 
+    /**
+     * Reads the archived transactions within the interval that match the selection and are beyond the cursor.
+     */
+    private List<TransactionOverview> archived(String regNo, String accountNo, List<Select> selectAs, Interval withIn,
+            Optional<Cursor> cursor) {
+        Instant start = withIn.getStart().toInstant();
+        Instant end = withIn.getEnd().toInstant();
+        Predicate<TransactionOverview> filter = TRANSACTION_ATTRIBUTES.filter(selectAs, AccountArchivist::valueOf)
+                .and(tx -> tx.getLastModifiedTime().toInstant().isAfter(start) && tx.getLastModifiedTime().toInstant().isBefore(end));
+        if (cursor.isPresent()) {
+            TransactionOverview seek = new TransactionOverview(regNo, accountNo, cursor.get().getId(), null, null,
+                    Timestamp.from(cursor.get().getTime()));
+            Comparator<TransactionOverview> order = TRANSACTION_ATTRIBUTES.comparator(Collections.emptyList(),
+                    AccountArchivist::valueOf, "lastModifiedTime", "id");
+            filter = filter.and(tx -> cursor.get().isAfter() ? order.compare(tx, seek) > 0 : order.compare(tx, seek) < 0);
+        }
+        return archive.read(regNo, accountNo, MonthPartition.of(withIn.getStart()), MonthPartition.of(withIn.getEnd())).stream()
+                .filter(filter)
+                .collect(Collectors.toList());
     }
 
     /**
-     * this merely shows that the persistence does not have to support the complete API Capability set
-     * sometimes the use of these capabilities will cause the query to be designed in order to deliver results
-     * in a good and efficient way to the users of the API.
+     * Merges the transactions read from the transaction table with the archived transactions in the order of the
+     * query. A transaction that is found in the table as well as in the archive, e.g., because it was read while being
+     * archived, is taken from the table.
      */
-    private List<Transaction> reduceElements(Element elementSet, List<Transaction> txs) {
-        int elements = elementSet.getEnd() - elementSet.getStart() + 1;
-        List<Transaction> txr = new ArrayList<>(elements);
-        int no = 0;
-        for (Transaction tx : txs) {
-            no++;
-            if ((no >= elementSet.getStart()) && (no <= elementSet.getEnd())) {
-                txr.add(tx);
-            }
+    private static List<TransactionOverview> merge(List<TransactionOverview> hot, List<TransactionOverview> archived,
+            List<Sort> sortAs, boolean backwards, int offset, int size) {
+        Comparator<TransactionOverview> order = TRANSACTION_ATTRIBUTES.comparator(sortAs, AccountArchivist::valueOf,
+                "lastModifiedTime", "id");
+        Map<String, TransactionOverview> merged = new LinkedHashMap<>();
+        archived.forEach(tx -> merged.put(tx.getId(), tx));
+        hot.forEach(tx -> merged.put(tx.getId(), tx));
+        return merged.values().stream()
+                .sorted(backwards ? order.reversed() : order)
+                .skip(offset)
+                .limit(size)
+                .collect(Collectors.toList());
+    }
+
+    private static Comparable<?> valueOf(TransactionOverview tx, String attribute) {
+        switch (attribute) {
+            case "id":
+                return tx.getId();
+            case "amount":
+                return tx.getAmount();
+            case "lastModifiedTime":
+                return tx.getLastModifiedTime();
+            default:
+                throw new IllegalArgumentException("Unknown transaction attribute " + attribute);
         }
-        return txr;
+    }
 
+    /**
+     * Moves the transactions of the account stored before the given month to the archive, see
+     * {@link TransactionArchive}. Reconciled transactions are kept in the transaction table as the reconciliation
+     * refers to them. The transactions are appended to the archive before they are deleted from the table, which means
+     * that a transaction is never lost but may be archived twice, should the deletion be rolled back, in which case
+     * the archive reads it only once.
+     *
+     * @return the number of transactions archived
+     */
+    @LogDuration(limit = 1000)
+    public int archiveTransactions(String regNo, String accountNo, int beforeMonth) {
+        Account account = getAccount(regNo, accountNo);
+        TypedQuery<TransactionOverview> q = em.createQuery(TRANSACTION_OVERVIEW
+                + " where t.account=:account and t.partitionMonth<:beforeMonth and " + NOT_RECONCILED
+                + " order by t.lastModifiedTime, t.id", TransactionOverview.class);
+        q.setParameter("account", account);
+        q.setParameter("beforeMonth", beforeMonth);
+        Map<Integer, List<TransactionOverview>> months = q.getResultList().stream()
+                .collect(Collectors.groupingBy(tx -> MonthPartition.of(tx.getLastModifiedTime().toInstant()),
+                        TreeMap::new, Collectors.toList()));
+        if (months.isEmpty()) {
+            return 0;
+        }
+        months.forEach((month, txs) -> archive.append(regNo, accountNo, month, txs));
+        int archived = em.createQuery("delete from Transaction t where t.account=:account and t.partitionMonth<:beforeMonth and "
+                + NOT_RECONCILED)
+                .setParameter("account", account)
+                .setParameter("beforeMonth", beforeMonth)
+                .executeUpdate();
+        routing.written(key(account));
+        return archived;
     }
 
-    public List<Event> findEvents(Optional<Interval> withIn) {
-        StringBuilder qs = new StringBuilder("select e from Event e");
-        if (withIn.isPresent()) {
-            qs.append(" and t.lastModifiedTime>:startsAt and t.lastModifiedTime<:endsAt");
+    static String transactionsJpql(boolean within, List<Select> selectAs, List<Sort> sortAs, boolean seek, boolean backwards) {
+        StringBuilder qs = new StringBuilder(TRANSACTION_OVERVIEW).append(" where a.regNo=:regNo and a.accountNo=:accountNo");
+        if (within) {
+            qs.append(" and t.partitionMonth between :fromPartition and :toPartition")
+                    .append(" and t.lastModifiedTime>:startsAt and t.lastModifiedTime<:endsAt");
+        }
+        String selection = TRANSACTION_ATTRIBUTES.where(selectAs);
+        if (!selection.isEmpty()) {
+            qs.append(" and ").append(selection);
+        }
+        if (seek) {
+            String op = backwards ? "<" : ">";
+            qs.append(" and (t.lastModifiedTime").append(op).append(":seekTime")
+                    .append(" or (t.lastModifiedTime=:seekTime and t.id").append(op).append(":seekId))");
+        }
+        if (backwards) {
+            qs.append(" order by t.lastModifiedTime desc, t.id desc");
+        } else {
+            qs.append(TRANSACTION_ATTRIBUTES.orderBy(sortAs, "lastModifiedTime", "id"));
+        }
+        return qs.toString();
+    }
+
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<EventOverview> findEvents(Optional<Interval> withIn) {
+        return findEvents(withIn, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * @param withIn   the interval which the time of the returned events needs to stay within
+     * @param selectAs attribute values to select by, supports sequence and category
+     * @param sortAs   attributes to sort by, supports sequence, time and category, default is sequence
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<EventOverview> findEvents(Optional<Interval> withIn, List<Select> selectAs, List<Sort> sortAs) {
+        if (log.isEnabled()) {
+            return logged(Optional.empty(), withIn, selectAs, sortAs);
+        }
+        return eventsQuery(withIn, selectAs, sortAs).getResultList();
+    }
+
+    /**
+     * Delivers the events one at a time to the consumer as they are read from a forward only cursor, the events are
+     * read as projections that never enter the persistence context which keeps the memory used constant regardless of
+     * the number of events.
+     *
+     * @param withIn   the interval which the time of the delivered events needs to stay within
+     * @param selectAs attribute values to select by, supports sequence and category
+     * @param sortAs   attributes to sort by, supports sequence, time and category, default is sequence
+     * @param consumer receives the events in order
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void streamEvents(Optional<Interval> withIn, List<Select> selectAs, List<Sort> sortAs, Consumer<EventOverview> consumer) {
+        if (log.isEnabled()) {
+            logged(Optional.empty(), withIn, selectAs, sortAs).forEach(consumer);
+            return;
         }
-        TypedQuery<Event> q = em.createQuery(qs.toString(), Event.class);
+        scroll(eventsQuery(withIn, selectAs, sortAs), EventOverview.class, consumer);
+    }
+
+    private TypedQuery<EventOverview> eventsQuery(Optional<Interval> withIn, List<Select> selectAs, List<Sort> sortAs) {
+        TypedQuery<EventOverview> q = query(reader(ReplicaRouting.ALL), withIn.isPresent() ? QueryPlan.EVENTS_WITHIN : QueryPlan.EVENTS,
+                !selectAs.isEmpty() || !sortAs.isEmpty(),
+                () -> eventsJpql(withIn.isPresent(), selectAs, sortAs), EventOverview.class);
         if (withIn.isPresent()) {
             Timestamp ts = Timestamp.from(withIn.get().getStart().toInstant());
             q.setParameter("startsAt", ts);
             Timestamp te = Timestamp.from(withIn.get().getEnd().toInstant());
             q.setParameter("endsAt", te);
         }
-        return q.getResultList();
+        EVENT_ATTRIBUTES.bind(q, selectAs);
+        return q;
     }
 
-    public List<Event> getEventsForCategory(String category, Optional<Interval> withIn) {
-        StringBuilder qs = new StringBuilder("select e from Event e where e.category=:category");
-        if (withIn.isPresent()) {
-            qs.append(" and t.lastModifiedTime>:startsAt and t.lastModifiedTime<:endsAt");
+    static String eventsJpql(boolean within, List<Select> selectAs, List<Sort> sortAs) {
+        List<String> predicates = new ArrayList<>();
+        if (within) {
+            predicates.add("e.time>:startsAt and e.time<:endsAt");
+        }
+        String selection = EVENT_ATTRIBUTES.where(selectAs);
+        if (!selection.isEmpty()) {
+            predicates.add(selection);
+        }
+        StringBuilder qs = new StringBuilder(EVENT_OVERVIEW);
+        if (!predicates.isEmpty()) {
+            qs.append(" where ").append(String.join(" and ", predicates));
         }
-        TypedQuery<Event> q = em.createQuery(qs.toString(), Event.class);
+        qs.append(EVENT_ATTRIBUTES.orderBy(sortAs, "sequence"));
+        return qs.toString();
+    }
+
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<EventOverview> getEventsForCategory(String category, Optional<Interval> withIn) {
+        return getEventsForCategory(category, withIn, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * @param withIn   the interval which the time of the returned events needs to stay within
+     * @param selectAs attribute values to select by, supports sequence
+     * @param sortAs   attributes to sort by, supports sequence and time, default is sequence
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<EventOverview> getEventsForCategory(String category, Optional<Interval> withIn, List<Select> selectAs, List<Sort> sortAs) {
+        if (log.isEnabled()) {
+            return logged(Optional.of(category), withIn, selectAs, sortAs);
+        }
+        return categoryEventsQuery(category, withIn, selectAs, sortAs).getResultList();
+    }
+
+    /**
+     * Delivers the events of a category one at a time to the consumer as they are read from a forward only cursor.
+     *
+     * @param withIn   the interval which the time of the delivered events needs to stay within
+     * @param selectAs attribute values to select by, supports sequence
+     * @param sortAs   attributes to sort by, supports sequence and time, default is sequence
+     * @param consumer receives the events in order
+     * @see #streamEvents(Optional, List, List, Consumer)
+     */
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void streamEventsForCategory(String category, Optional<Interval> withIn, List<Select> selectAs, List<Sort> sortAs,
+            Consumer<EventOverview> consumer) {
+        if (log.isEnabled()) {
+            logged(Optional.of(category), withIn, selectAs, sortAs).forEach(consumer);
+            return;
+        }
+        scroll(categoryEventsQuery(category, withIn, selectAs, sortAs), EventOverview.class, consumer);
+    }
+
+    private TypedQuery<EventOverview> categoryEventsQuery(String category, Optional<Interval> withIn, List<Select> selectAs,
+            List<Sort> sortAs) {
+        TypedQuery<EventOverview> q = query(reader(category), withIn.isPresent() ? QueryPlan.CATEGORY_EVENTS_WITHIN : QueryPlan.CATEGORY_EVENTS,
+                !selectAs.isEmpty() || !sortAs.isEmpty(),
+                () -> categoryEventsJpql(withIn.isPresent(), selectAs, sortAs), EventOverview.class);
         q.setParameter("category", category);
         if (withIn.isPresent()) {
             Interval intv = withIn.get();
             q.setParameter("startsAt", Timestamp.from(intv.getStart().toInstant()));
             q.setParameter("endsAt", Timestamp.from(intv.getEnd().toInstant()));
         }
-        return q.getResultList();
+        EVENT_ATTRIBUTES.bind(q, selectAs);
+        return q;
     }
 
-    public Event getEvent(String category, String id) {
-        TypedQuery<Event> q = em.createQuery("select e from Event e where e.category=:category and e.id=:sid", Event.class);
+    static String categoryEventsJpql(boolean within, List<Select> selectAs, List<Sort> sortAs) {
+        StringBuilder qs = new StringBuilder(EVENT_OVERVIEW).append(" where e.category=:category");
+        if (within) {
+            qs.append(" and e.time>:startsAt and e.time<:endsAt");
+        }
+        String selection = EVENT_ATTRIBUTES.where(selectAs);
+        if (!selection.isEmpty()) {
+            qs.append(" and ").append(selection);
+        }
+        qs.append(EVENT_ATTRIBUTES.orderBy(sortAs, "sequence"));
+        return qs.toString();
+    }
+
+    /**
+     * Reads the page of the event feed following the given watermark, which is the sequence of the last event the
+     * consumer has read. The page is read from the index on the sequence, which means that the time spent reading a
+     * page depends on the size of the page and not on the number of events in the feed. Note that an event stored
+     * with the same sequence as the watermark, or a lower one, after the consumer has read past it is not read.
+     *
+     * @param after the sequence of the last event read by the consumer, 0 to read from the start of the feed
+     * @param limit the maximum number of events to read
+     * @return the events following the watermark ordered by their sequence
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<EventOverview> getEventsAfter(long after, int limit) {
+        if (log.isEnabled()) {
+            return log.read(after, limit);
+        }
+        TypedQuery<EventOverview> q = readOnly(feedReader()
+                .createNamedQuery(QueryPlan.EVENTS_AFTER.queryName(), EventOverview.class));
+        q.setParameter("after", after);
+        return q.setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Reads the page of the event feed of a category following the given watermark from the index on the category and
+     * sequence.
+     *
+     * @see #getEventsAfter(long, int)
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<EventOverview> getEventsForCategoryAfter(String category, long after, int limit) {
+        if (log.isEnabled()) {
+            return log.read(category, after, limit);
+        }
+        TypedQuery<EventOverview> q = readOnly(feedReader()
+                .createNamedQuery(QueryPlan.CATEGORY_EVENTS_AFTER.queryName(), EventOverview.class));
         q.setParameter("category", category);
-        q.setParameter("sid", id);
-        return q.getResultList().get(0);
+        q.setParameter("after", after);
+        return q.setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Reads the events of the log, or of the category in the log, within the interval that match the selection in the
+     * order given by the sorting. The events of a category within an interval are resolved from the category index of
+     * the log and only those events are read, otherwise the log is scanned. The events are read in the order of the
+     * sequence, which means that they are only sorted when another order is asked for.
+     */
+    private List<EventOverview> logged(Optional<String> category, Optional<Interval> withIn, List<Select> selectAs,
+            List<Sort> sortAs) {
+        Predicate<EventOverview> selected = EVENT_ATTRIBUTES.filter(selectAs, AccountArchivist::valueOfEvent);
+        List<EventOverview> events = new ArrayList<>();
+        if (withIn.isPresent()) {
+            Instant start = withIn.get().getStart().toInstant();
+            Instant end = withIn.get().getEnd().toInstant();
+            if (category.isPresent()) {
+                log.read(category.get(), start, end).stream().filter(selected).forEach(events::add);
+            } else {
+                Predicate<EventOverview> within = selected.and(event -> event.getTime().isAfter(start) && event.getTime().isBefore(end));
+                log.scan(category, event -> !within.test(event) || events.add(event));
+            }
+        } else {
+            log.scan(category, event -> !selected.test(event) || events.add(event));
+        }
+        if (!sortAs.isEmpty()) {
+            events.sort(EVENT_ATTRIBUTES.comparator(sortAs, AccountArchivist::valueOfEvent, "sequence"));
+        }
+        return events;
+    }
+
+    private static Comparable<?> valueOfEvent(EventOverview event, String attribute) {
+        switch (attribute) {
+            case "sequence":
+                return event.getSequence();
+            case "time":
+                return event.getTime();
+            case "category":
+                return event.getCategory();
+            default:
+                throw new IllegalArgumentException("Unknown event attribute " + attribute);
+        }
+    }
+
+    static String eventsAfterJpql(boolean category) {
+        return EVENT_OVERVIEW + (category ? " where e.category=:category and" : " where") + " e.sequence>:after order by e.sequence";
+    }
+
+    /**
+     * Creates the query from the query plan registered for its default shape, a query with a custom selection or
+     * sorting is built and parsed for the request.
+     */
+    private static <T> TypedQuery<T> query(EntityManager reader, QueryPlan plan, boolean custom, Supplier<String> jpql,
+            Class<T> type) {
+        return readOnly(custom ? reader.createQuery(jpql.get(), type) : reader.createNamedQuery(plan.queryName(), type));
+    }
+
+    /**
+     * Marks the query as read-only, which means that no snapshots are kept for the entities read, and sets the flush
+     * mode to manual, which means that the persistence context is not flushed before the query is executed.
+     */
+    private static <T> TypedQuery<T> readOnly(TypedQuery<T> query) {
+        query.setHint(QueryHints.READ_ONLY, true);
+        query.setHint(QueryHints.FLUSH_MODE, FlushMode.MANUAL);
+        return query;
+    }
+
+    /**
+     * @return the entity manager to read the data having the given key with
+     */
+    private EntityManager reader(String key) {
+        return routing.readFromPrimary(key) ? em : replica;
+    }
+
+    /**
+     * The feed is read after the watermark of the consumer, the events that have yet to reach the replica are read
+     * once they have, and the feed is thus read from the replica unless the read takes part in a transaction.
+     */
+    private EntityManager feedReader() {
+        return routing.readFromPrimary() ? em : replica;
+    }
+
+    private static String key(String regNo, String accountNo) {
+        return regNo + "-" + accountNo;
+    }
+
+    private static String key(Account account) {
+        return key(account.getRegNo(), account.getAccountNo());
     }
 
-    public void save(Event newTX) {
+    private static String key(AbstractAuditable entity) {
+        if (entity instanceof Account) {
+            return key((Account) entity);
+        }
+        if (entity instanceof Transaction) {
+            return key(((Transaction) entity).getAccount());
+        }
+        if (entity instanceof ReconciledTransaction) {
+            return key(((ReconciledTransaction) entity).getTransaction().getAccount());
+        }
+        if (entity instanceof Event) {
+            return ((Event) entity).getCategory();
+        }
+        if (entity instanceof OutboxMessage) {
+            return ((OutboxMessage) entity).getCategory();
+        }
+        return ReplicaRouting.ALL;
+    }
+
+    private Session session() {
+        return em.unwrap(Session.class);
+    }
+
+    private <T> void scroll(TypedQuery<T> query, Class<T> type, Consumer<T> consumer) {
+        org.hibernate.Query q = query.unwrap(org.hibernate.Query.class)
+                .setFetchSize(SCROLL_FETCHSIZE);
+        ScrollableResults results = q.scroll(ScrollMode.FORWARD_ONLY);
         try {
+            while (results.next()) {
+                consumer.accept(type.cast(results.get(0)));
+            }
+        } finally {
+            results.close();
+        }
+    }
+
+    /**
+     * Relays the oldest messages of the outbox, each message is published to the event feed unless an event having its
+     * dedupe key is in the feed already, and the event as stored is then handed to the sink and the message removed
+     * from the outbox. The messages are locked while they are relayed, which keeps other nodes from relaying them at
+     * the same time, and the last sequence in the feed is observed once they are locked, see
+     * {@link EventSequencer#observe(long)}, which sequences the events after the events relayed by other nodes even
+     * when the clocks of the nodes differ. Should the sink fail or the transaction be rolled back, the messages stay in
+     * the outbox and are relayed again later.
+     *
+     * @param limit the maximum number of messages to relay
+     * @param sink  receives the events published
+     * @return the number of messages relayed
+     */
+    @LogDuration(limit = 50)
+    public int relayOutbox(int limit, Consumer<Event> sink) {
+        List<OutboxMessage> messages = em.createQuery(OUTBOX, OutboxMessage.class)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setMaxResults(limit)
+                .getResultList();
+        if (!messages.isEmpty()) {
+            // the events are sequenced after the last event stored by any node
+            EventSequencer.observe(getLastSequence(Optional.empty()));
+        }
+        for (OutboxMessage message : messages) {
+            Event event = findEvent(message.getCategory(), message.getDedupeKey());
+            if (null == event) {
+                event = save(message.toEvent());
+            }
+            sink.accept(event);
+            em.remove(message);
+        }
+        return messages.size();
+    }
+
+    /**
+     * Find event by its natural id, which is resolved from the second level cache when the event has been read
+     * before. Note this will throw {@link NoResultException} if the event is not found.
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Event getEvent(String category, String id) {
+        Event event = findEvent(category, id);
+        if (null == event) {
+            throw new NoResultException("No event " + id + " in category " + category);
+        }
+        return event;
+    }
+
+    private Event findEvent(String category, String id) {
+        if (log.isEnabled()) {
+            return log.find(category, id).orElse(null);
+        }
+        return session().byNaturalId(Event.class)
+                .using("category", category)
+                .using("id", id)
+                .load();
+    }
+
+    /**
+     * Find the snapshot of the category, see {@link EventSnapshot}. The snapshot is read from the primary as it is
+     * replaced when the category is compacted. Note this will throw {@link NoResultException} if the category has no
+     * snapshot.
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public EventSnapshot getSnapshot(String category) {
+        return findSnapshot(category)
+                .orElseThrow(() -> new NoResultException("No snapshot of category " + category));
+    }
+
+    /**
+     * Takes a snapshot of the account summarising the events of its category up to the last sequence of the category.
+     * The account is locked while the snapshot is taken, which keeps transactions from being added to it in the
+     * meantime, and no snapshot is taken while the outbox holds messages of the category, as the account would then
+     * reflect changes that are not yet in the feed.
+     *
+     * @return true if a snapshot was stored, false if the account is unknown, has messages in the outbox or has no
+     * events following its snapshot
+     */
+    @LogDuration(limit = 50)
+    public boolean snapshot(String regNo, String accountNo) {
+        List<Account> accounts = em.createQuery(ACCOUNT_LOCK, Account.class)
+                .setParameter("regNo", regNo)
+                .setParameter("accountNo", accountNo)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        String category = Event.getCategory(accountNo, regNo);
+        if (accounts.isEmpty() || em.createQuery(OUTBOX_PENDING, Long.class)
+                .setParameter("category", category)
+                .getSingleResult() > 0) {
+            return false;
+        }
+        long sequence = lastSequence(category);
+        Optional<EventSnapshot> snapshot = findSnapshot(category);
+        if (sequence == 0L || snapshot.map(s -> s.getSequence() >= sequence).orElse(false)) {
+            return false;
+        }
+        if (snapshot.isPresent()) {
+            snapshot.get().update(sequence, accounts.get(0));
+        } else {
+            em.persist(new EventSnapshot(category, sequence, accounts.get(0)));
+        }
+        return true;
+    }
+
+    /**
+     * Removes a batch of the events of the category that are covered by its snapshot, have been handled by every
+     * subscriber that has committed an offset for the category or for the complete feed, see {@link ConsumerOffset},
+     * and were stored before the given time, which leaves the subscribers following the feed without committing
+     * offsets the time until then to read the events. The last sequence pruned is recorded in the snapshot, see
+     * {@link #getPrunedSequence(Optional)}. The events are removed by a bulk delete, which evicts the events from the
+     * second level cache. The event log is append-only and events are thus not pruned when it is enabled.
+     *
+     * @param limit the maximum number of events to remove
+     * @return the number of events removed
+     */
+    @LogDuration(limit = 50)
+    public int pruneEvents(String category, Instant before, int limit) {
+        Optional<EventSnapshot> snapshot = findSnapshot(category);
+        if (log.isEnabled() || !snapshot.isPresent()) {
+            return 0;
+        }
+        Long committed = em.createQuery(COMMITTED_WATERMARK, Long.class)
+                .setParameter("category", category)
+                .setParameter("all", ConsumerOffset.ALL)
+                .getSingleResult();
+        long sequence = null == committed ? snapshot.get().getSequence() : Math.min(committed, snapshot.get().getSequence());
+        List<Object[]> events = em.createQuery(PRUNABLE_EVENTS, Object[].class)
+                .setParameter("category", category)
+                .setParameter("sequence", sequence)
+                .setParameter("before", Timestamp.from(before))
+                .setMaxResults(limit)
+                .getResultList();
+        if (events.isEmpty()) {
+            return 0;
+        }
+        snapshot.get().pruned((Long) events.get(events.size() - 1)[1]);
+        return em.createQuery(PRUNE_EVENTS)
+                .setParameter("events", events.stream().map(event -> event[0]).collect(Collectors.toList()))
+                .executeUpdate();
+    }
+
+    /**
+     * @return the last sequence pruned from the category or from the complete feed, or 0 if no events have been
+     * pruned, a subscriber reading the feed from a watermark below it has missed events
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public long getPrunedSequence(Optional<String> category) {
+        if (category.isPresent()) {
+            return findSnapshot(category.get()).map(EventSnapshot::getPrunedSequence).orElse(0L);
+        }
+        Long sequence = em.createQuery(PRUNED_SEQUENCE, Long.class).getSingleResult();
+        return null == sequence ? 0L : sequence;
+    }
+
+    /**
+     * List the committed offsets of the subscribers of the feed, see {@link ConsumerOffset}, optionally limited to the
+     * offsets of a single subscriber. The offsets are read from the primary as they change whenever a subscriber
+     * commits its progress.
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<ConsumerOffset> getConsumerOffsets(Optional<String> consumer) {
+        if (consumer.isPresent()) {
+            return em.createQuery(CONSUMER_OFFSETS_OF, ConsumerOffset.class)
+                    .setParameter("consumer", consumer.get())
+                    .getResultList();
+        }
+        return em.createQuery(CONSUMER_OFFSETS, ConsumerOffset.class).getResultList();
+    }
+
+    /**
+     * Find the offset the subscriber has committed for the category. Note this will throw {@link NoResultException}
+     * if the subscriber has not committed an offset for the category.
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public ConsumerOffset getConsumerOffset(String consumer, String category) {
+        return findConsumerOffset(consumer, category)
+                .orElseThrow(() -> new NoResultException("No offset of " + consumer + " for category " + category));
+    }
+
+    /**
+     * Commits the watermark of the subscriber for the category if the committed watermark is still the previous
+     * watermark, i.e., the watermark the subscriber read before handling the events following it. The watermark is
+     * compared and replaced by a single conditional update, which leaves it to the database to decide which of two
+     * concurrent commits of the same offset wins. A subscriber committing its first offset for the category gives 0 as
+     * the previous watermark, the offset is then inserted in a transaction of its own, see
+     * {@link #create(AbstractAuditable)}, and a concurrent first commit winning the insert is a failed commit as well.
+     *
+     * @return true if the watermark was committed, false if the committed watermark was not the previous watermark
+     */
+    @LogDuration(limit = 50)
+    public boolean commitConsumerOffset(String consumer, String category, long previous, long watermark) {
+        int updated = em.createQuery(COMMIT_OFFSET)
+                .setParameter("watermark", watermark)
+                .setParameter("time", Timestamp.from(CurrentTime.now()))
+                .setParameter("consumer", consumer)
+                .setParameter("category", category)
+                .setParameter("previous", previous)
+                .executeUpdate();
+        if (updated == 1) {
+            return true;
+        }
+        if (previous != 0L) {
+            return false;
+        }
+        return createUnlessPresent(new ConsumerOffset(consumer, category, watermark),
+                () -> findConsumerOffset(consumer, category).isPresent());
+    }
+
+    /**
+     * Inserts the entity in a transaction of its own, which leaves the transaction of the caller intact if the insert
+     * violates a unique constraint, e.g., when a concurrent unit of work has inserted the same entity.
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void create(AbstractAuditable entity) {
+        em.persist(entity);
+        em.flush();
+    }
+
+    /**
+     * Acquires or renews the named lease for the owner, see {@link Lease}. The lease is acquired if it is unknown, held
+     * by the owner or expired, which is decided by a single conditional update, or by a single insert when the lease
+     * is unknown, and two owners acquiring the same lease concurrently can thus not both succeed.
+     *
+     * @param duration the time the lease is held unless it is renewed
+     * @return true if the owner holds the lease, false if it is held by another owner
+     */
+    @LogDuration(limit = 50)
+    public boolean acquireLease(String name, String owner, Duration duration) {
+        Instant now = CurrentTime.now();
+        int updated = em.createQuery(ACQUIRE_LEASE)
+                .setParameter("owner", owner)
+                .setParameter("expires", Timestamp.from(now.plus(duration)))
+                .setParameter("now", Timestamp.from(now))
+                .setParameter("name", name)
+                .executeUpdate();
+        if (updated == 1) {
+            return true;
+        }
+        return createUnlessPresent(new Lease(name, owner, now.plus(duration)), () -> findLease(name).isPresent());
+    }
+
+    /**
+     * List the leases that have not expired among the leases having a name starting with the prefix.
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<Lease> getLeases(String prefix) {
+        return em.createQuery(LEASES, Lease.class)
+                .setParameter("prefix", prefix + "%")
+                .setParameter("now", Timestamp.from(CurrentTime.now()))
+                .getResultList();
+    }
+
+    /**
+     * Releases the named lease if it is held by the owner, which lets another owner acquire it at once.
+     */
+    @LogDuration(limit = 50)
+    public void releaseLease(String name, String owner) {
+        em.createQuery(RELEASE_LEASE)
+                .setParameter("now", Timestamp.from(CurrentTime.now()))
+                .setParameter("name", name)
+                .setParameter("owner", owner)
+                .executeUpdate();
+    }
+
+    /**
+     * Counts the events following the watermark in the category or in the complete feed, i.e., the number of events
+     * a subscriber at the watermark is behind.
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public long getLag(Optional<String> category, long watermark) {
+        if (log.isEnabled()) {
+            return log.count(category, watermark);
+        }
+        TypedQuery<Long> query = category
+                .map(c -> em.createQuery(CATEGORY_EVENTS_AFTER, Long.class).setParameter("category", c))
+                .orElseGet(() -> em.createQuery(EVENTS_AFTER, Long.class));
+        return query.setParameter("after", watermark).getSingleResult();
+    }
+
+    /**
+     * List the subscriptions having the events pushed to them, see {@link Subscription}.
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<Subscription> getSubscriptions() {
+        return em.createQuery(SUBSCRIPTIONS, Subscription.class).getResultList();
+    }
+
+    /**
+     * Find the subscription by its name. Note this will throw {@link NoResultException} if the subscription is not
+     * found, consider using {@link #findSubscription(String)} if this is a problem.
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Subscription getSubscription(String name) {
+        return findSubscription(name)
+                .orElseThrow(() -> new NoResultException("No subscription named " + name));
+    }
+
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public Optional<Subscription> findSubscription(String name) {
+        return em.createQuery(SUBSCRIPTION, Subscription.class)
+                .setParameter("name", name)
+                .getResultList().stream()
+                .findFirst();
+    }
+
+    @LogDuration(limit = 50)
+    public void save(Subscription subscription) {
+        em.persist(subscription);
+    }
+
+    /**
+     * Removes the subscription together with its offset, which stops the events from being pushed to it and lets the
+     * name be registered again. The dead letters of the subscription are kept.
+     *
+     * @return true if the subscription was removed, false if it is unknown
+     */
+    @LogDuration(limit = 50)
+    public boolean removeSubscription(String name) {
+        Optional<Subscription> subscription = findSubscription(name);
+        subscription.ifPresent(s -> {
+            em.remove(s);
+            em.createQuery(REMOVE_CONSUMER_OFFSETS)
+                    .setParameter("consumer", name)
+                    .executeUpdate();
+        });
+        return subscription.isPresent();
+    }
+
+    /**
+     * List the batches given up when pushing the events to the subscription, see {@link DeadLetter}.
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public List<DeadLetter> getDeadLetters(String subscription) {
+        return em.createQuery(DEAD_LETTERS, DeadLetter.class)
+                .setParameter("subscription", subscription)
+                .getResultList();
+    }
+
+    /**
+     * Records the batch given up and commits the offset of the subscription past it, see
+     * {@link #commitConsumerOffset(String, String, long, long)}, in the same transaction.
+     *
+     * @return true if the batch was recorded, false if another offset has been committed for the subscription
+     */
+    @LogDuration(limit = 50)
+    public boolean deadLetter(DeadLetter letter, long previous) {
+        if (!commitConsumerOffset(letter.getSubscription(), letter.getCategory(), previous, letter.getLastSequence())) {
+            return false;
+        }
+        em.persist(letter);
+        return true;
+    }
+
+    /**
+     * @return the last sequence of the category or of the complete feed, or 0 if there are no events
+     */
+    @LogDuration(limit = 50)
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public long getLastSequence(Optional<String> category) {
+        if (category.isPresent()) {
+            return lastSequence(category.get());
+        }
+        if (log.isEnabled()) {
+            return log.last();
+        }
+        Long sequence = em.createQuery(LAST_FEED_SEQUENCE, Long.class).getSingleResult();
+        return observed(sequence);
+    }
+
+    private Optional<ConsumerOffset> findConsumerOffset(String consumer, String category) {
+        return em.createQuery(CONSUMER_OFFSET, ConsumerOffset.class)
+                .setParameter("consumer", consumer)
+                .setParameter("category", category)
+                .getResultList().stream()
+                .findFirst();
+    }
+
+    private Optional<Lease> findLease(String name) {
+        return em.createQuery(LEASE, Lease.class)
+                .setParameter("name", name)
+                .getResultList().stream()
+                .findFirst();
+    }
+
+    /**
+     * Inserts the entity unless it is present, and tells whether it was inserted. An insert violating a unique
+     * constraint because a concurrent unit of work inserted the same entity is thus reported as not inserted, whereas
+     * any other failure is thrown.
+     */
+    private boolean createUnlessPresent(AbstractAuditable entity, BooleanSupplier present) {
+        if (present.getAsBoolean()) {
+            return false;
+        }
+        try {
+            self().create(entity);
+            return true;
+        } catch (EJBException | PersistenceException e) {
+            if (present.getAsBoolean()) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return the archivist as called through the container, which applies the transaction attributes of its methods
+     */
+    private AccountArchivist self() {
+        return null == context ? this : context.getBusinessObject(AccountArchivist.class);
+    }
+
+    private Optional<EventSnapshot> findSnapshot(String category) {
+        return em.createQuery(SNAPSHOT, EventSnapshot.class)
+                .setParameter("category", category)
+                .getResultList().stream()
+                .findFirst();
+    }
+
+    private long lastSequence(String category) {
+        if (log.isEnabled()) {
+            return log.last(category);
+        }
+        Long sequence = em.createQuery(LAST_SEQUENCE, Long.class)
+                .setParameter("category", category)
+                .getSingleResult();
+        return observed(sequence);
+    }
+
+    /**
+     * Records a sequence read from the database, which may have been generated by another node, and keeps the
+     * sequences generated by this node from here on above it.
+     */
+    private static long observed(Long sequence) {
+        if (null == sequence) {
+            return 0L;
+        }
+        EventSequencer.observe(sequence);
+        return sequence;
+    }
+
+    /**
+     * Stores the event directly in the feed, i.e., appends it to the event log when that is enabled or else persists
+     * it in the event table, and signals the subscribers of its category, see {@link EventNotifier}. The event is
+     * published whether or not a change it signals is committed. This is the last step of relaying the outbox, see
+     * {@link #relayOutbox(int, Consumer)}, a change must instead save an {@link OutboxMessage} along with itself, which
+     * publishes the event if and only if the change is committed.
+     *
+     * @return the event as stored, which in the event log may have been given a later sequence, see {@link EventLog}
+     */
+    public Event save(Event newTX) {
+        Event stored = newTX;
+        if (log.isEnabled()) {
+            stored = log.append(Collections.singletonList(newTX)).get(0);
+        } else {
             em.persist(newTX);
-        } catch (PersistenceException pe) {
-            // in the example there is no check for collision in sequence, the check for time and sequence uniqueness.
-            // This check must be done in a real life example in order to have choice for that.
-            // The sequence is imho less attractive as a chronological order for the events.
-            // The sequence is that is dependent on central persistence and thus is not very cloud capable
-            // and is going to pose a challenge (taking it to the NP level) in a true distributed setup.
+            routing.written(key(newTX));
         }
+        notifier.stored(newTX.getCategory());
+        return stored;
     }
 
 }
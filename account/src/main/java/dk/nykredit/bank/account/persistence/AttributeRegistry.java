@@ -0,0 +1,188 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import javax.persistence.Query;
+
+import dk.nykredit.api.capabilities.Direction;
+import dk.nykredit.api.capabilities.Select;
+import dk.nykredit.api.capabilities.Sort;
+
+/**
+ * Registry of the attributes of a resource that the API capabilities may refer to.
+ *
+ * The attributes used in the API capabilities are named as in the representation of the resource, the registry
+ * maps these onto the attributes of the model. Only the registered attributes can be used, which keeps the
+ * consumers from sorting or selecting by attributes that are not backed by an index and keeps input from the
+ * consumers out of the query strings, as only the registered model attributes end up in these and the selected
+ * values are bound as parameters.
+ */
+final class AttributeRegistry {
+    private static final String NOTHING = "1=0";
+
+    private final String alias;
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+    private final Map<String, Function<String, Object>> converters = new HashMap<>();
+
+    AttributeRegistry(String alias) {
+        this.alias = alias;
+    }
+
+    /**
+     * Registers an attribute of the representation and the model attribute that it maps onto.
+     */
+    AttributeRegistry attribute(String attribute, String modelAttribute) {
+        return attribute(attribute, modelAttribute, value -> value);
+    }
+
+    /**
+     * Registers an attribute of the representation and the model attribute that it maps onto, selected values are
+     * converted to the type of the model attribute by the given converter.
+     */
+    AttributeRegistry attribute(String attribute, String modelAttribute, Function<String, Object> converter) {
+        attributes.put(attribute, modelAttribute);
+        converters.put(attribute, converter);
+        return this;
+    }
+
+    /**
+     * Registers an attribute of the representation that may only be sorted by and the model attribute that it maps
+     * onto.
+     */
+    AttributeRegistry sortableAttribute(String attribute, String modelAttribute) {
+        attributes.put(attribute, modelAttribute);
+        return this;
+    }
+
+    /**
+     * @return the sortings that refer to registered attributes
+     */
+    List<Sort> sortable(List<Sort> sortAs) {
+        return sortAs.stream()
+                .filter(sort -> attributes.containsKey(sort.getAttribute()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Compiles the sortings into an order by clause. Sortings of attributes that are not registered are ignored.
+     *
+     * @param sortAs the sortings requested by the consumer in order of precedence
+     * @param tieBreakers model attributes that are appended in ascending order to make the order total
+     * @return an order by clause including a leading space, empty if there is nothing to order by
+     */
+    String orderBy(List<Sort> sortAs, String... tieBreakers) {
+        Map<String, Direction> order = order(sortAs, tieBreakers);
+        if (order.isEmpty()) {
+            return "";
+        }
+        return order.entrySet().stream()
+                .map(entry -> alias + "." + entry.getKey() + " " + entry.getValue())
+                .collect(Collectors.joining(", ", " order by ", ""));
+    }
+
+    /**
+     * Compiles the sortings into a comparator ordering objects that are not read by a query the same way as the order
+     * by clause compiled by {@link #orderBy(List, String...)} orders the result of a query.
+     *
+     * @param valueOf delivers the value of a model attribute of an object
+     */
+    <T> Comparator<T> comparator(List<Sort> sortAs, BiFunction<T, String, Comparable<?>> valueOf, String... tieBreakers) {
+        Comparator<T> comparator = (a, b) -> 0;
+        for (Map.Entry<String, Direction> entry : order(sortAs, tieBreakers).entrySet()) {
+            Comparator<T> attribute = (a, b) -> compare(valueOf.apply(a, entry.getKey()), valueOf.apply(b, entry.getKey()));
+            comparator = comparator.thenComparing(entry.getValue() == Direction.DESC ? attribute.reversed() : attribute);
+        }
+        return comparator;
+    }
+
+    private Map<String, Direction> order(List<Sort> sortAs, String... tieBreakers) {
+        Map<String, Direction> order = new LinkedHashMap<>();
+        sortable(sortAs).forEach(sort -> order.putIfAbsent(attributes.get(sort.getAttribute()), sort.getDirection()));
+        Arrays.stream(tieBreakers).forEach(attribute -> order.putIfAbsent(attribute, Direction.ASC));
+        return order;
+    }
+
+    /**
+     * Compiles the selections into predicates. Values selected for the same attribute are combined into a single
+     * <code>in</code> predicate and predicates for different attributes must all be satisfied. Selections of
+     * attributes that are not registered as selectable are ignored, whereas a selection of values that cannot be
+     * converted to the type of the model attribute selects nothing.
+     *
+     * @param selectAs the selections requested by the consumer
+     * @return the predicates without any leading <code>where</code> or <code>and</code>, empty if nothing is selected
+     */
+    String where(List<Select> selectAs) {
+        return selections(selectAs).entrySet().stream()
+                .map(entry -> entry.getValue().isEmpty()
+                        ? NOTHING
+                        : alias + "." + attributes.get(entry.getKey()) + " in :" + parameter(entry.getKey()))
+                .collect(Collectors.joining(" and "));
+    }
+
+    /**
+     * Binds the values of the selections to the parameters of the predicates compiled by {@link #where(List)}.
+     */
+    void bind(Query query, List<Select> selectAs) {
+        selections(selectAs).entrySet().stream()
+                .filter(entry -> !entry.getValue().isEmpty())
+                .forEach(entry -> query.setParameter(parameter(entry.getKey()), entry.getValue()));
+    }
+
+    /**
+     * Compiles the selections into a predicate matching objects that are not read by a query the same way as the
+     * predicates compiled by {@link #where(List)} match the rows read by a query.
+     *
+     * @param valueOf delivers the value of a model attribute of an object
+     */
+    <T> Predicate<T> filter(List<Select> selectAs, BiFunction<T, String, Comparable<?>> valueOf) {
+        Predicate<T> filter = candidate -> true;
+        for (Map.Entry<String, List<Object>> entry : selections(selectAs).entrySet()) {
+            String modelAttribute = attributes.get(entry.getKey());
+            filter = filter.and(candidate -> entry.getValue().stream()
+                    .anyMatch(value -> compare(valueOf.apply(candidate, modelAttribute), (Comparable<?>) value) == 0));
+        }
+        return filter;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Comparable a, Comparable b) {
+        if (a == null || b == null) {
+            return a == b ? 0 : a == null ? -1 : 1;
+        }
+        return a.compareTo(b);
+    }
+
+    private Map<String, List<Object>> selections(List<Select> selectAs) {
+        Map<String, List<Object>> selections = new LinkedHashMap<>();
+        selectAs.stream()
+                .filter(select -> converters.containsKey(select.getAttribute()))
+                .forEach(select -> {
+                    List<Object> values = selections.computeIfAbsent(select.getAttribute(), attribute -> new ArrayList<>());
+                    convert(select).ifPresent(values::add);
+                });
+        return selections;
+    }
+
+    private Optional<Object> convert(Select select) {
+        try {
+            return Optional.ofNullable(converters.get(select.getAttribute()).apply(select.getValue()));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static String parameter(String attribute) {
+        return "select_" + attribute;
+    }
+}
@@ -0,0 +1,122 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory index of the events of each category held as a concurrent skip-list from the sequence of an event to its
+ * position in the store, as a concurrent skip-list from the time and sequence of an event to its position, and as a
+ * map from the natural id of an event to its position.
+ * <p>
+ * The feed of a category, the events of a category within an interval and an event of a category by its natural id
+ * are resolved to positions from the index without reading the events, which are then read by their position. The
+ * feed and the interval are both read by seeking to their start in the skip-list ordered accordingly. The index may
+ * be read while it is added to and a reader sees the events added before it started.
+ */
+final class CategoryIndex {
+    private final ConcurrentMap<String, ConcurrentSkipListMap<Long, Long>> categories = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentSkipListMap<Moment, Long>> times = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ConcurrentMap<String, Long>> ids = new ConcurrentHashMap<>();
+
+    void add(String category, long sequence, String id, long position, long time) {
+        ids.computeIfAbsent(category, c -> new ConcurrentHashMap<>()).put(id, position);
+        times.computeIfAbsent(category, c -> new ConcurrentSkipListMap<>()).put(new Moment(time, sequence), position);
+        categories.computeIfAbsent(category, c -> new ConcurrentSkipListMap<>()).put(sequence, position);
+    }
+
+    /**
+     * @return the position of the event of the category having the natural id
+     */
+    Optional<Long> position(String category, String id) {
+        ConcurrentMap<String, Long> events = ids.get(category);
+        return null == events ? Optional.empty() : Optional.ofNullable(events.get(id));
+    }
+
+    /**
+     * @return the positions of the events of the category following the watermark ordered by their sequence
+     */
+    List<Long> after(String category, long after, int limit) {
+        ConcurrentSkipListMap<Long, Long> events = categories.get(category);
+        if (null == events) {
+            return Collections.emptyList();
+        }
+        return events.tailMap(after, false).values().stream()
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the positions of the events of the category having a time after the start and before the end ordered
+     * by their sequence
+     */
+    List<Long> within(String category, Instant start, Instant end) {
+        ConcurrentSkipListMap<Moment, Long> events = times.get(category);
+        if (null == events) {
+            return Collections.emptyList();
+        }
+        Moment from = new Moment(start.toEpochMilli(), Long.MAX_VALUE);
+        Moment to = new Moment(end.toEpochMilli(), Long.MIN_VALUE);
+        if (from.compareTo(to) >= 0) {
+            return Collections.emptyList();
+        }
+        return events.subMap(from, false, to, false).entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getKey().sequence))
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the last sequence of the category, or 0 if the category has no events
+     */
+    long last(String category) {
+        ConcurrentSkipListMap<Long, Long> events = categories.get(category);
+        return null == events || events.isEmpty() ? 0L : events.lastKey();
+    }
+
+    /**
+     * @return the number of events of the category following the watermark
+     */
+    long count(String category, long after) {
+        ConcurrentSkipListMap<Long, Long> events = categories.get(category);
+        return null == events ? 0L : events.tailMap(after, false).size();
+    }
+
+    /**
+     * @return the positions of all events of the category ordered by their sequence
+     */
+    List<Long> all(String category) {
+        ConcurrentSkipListMap<Long, Long> events = categories.get(category);
+        if (null == events) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(events.values());
+    }
+
+    /**
+     * The time of an event followed by its sequence, which orders the events having the same time.
+     */
+    private static final class Moment implements Comparable<Moment> {
+        private final long time;
+        private final long sequence;
+
+        private Moment(long time, long sequence) {
+            this.time = time;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Moment other) {
+            int order = Long.compare(time, other.time);
+            return 0 != order ? order : Long.compare(sequence, other.sequence);
+        }
+    }
+}
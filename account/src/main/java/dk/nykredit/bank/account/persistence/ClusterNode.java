@@ -0,0 +1,98 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.nykredit.bank.account.model.EventSequencer;
+import dk.nykredit.bank.account.model.Lease;
+
+/**
+ * Registers this instance of the service as the node generating the event sequence numbers for its node number, see
+ * {@link EventSequencer}. The node number is held as a {@link Lease} that is renewed every 10 seconds, and starting
+ * an instance given a node number held by another running instance fails, as the two would otherwise generate the
+ * same sequence numbers. The lease of a node that stops without releasing it expires after a minute. The node is
+ * registered in the {@link TransactionArchive} as well, which tells whether the archive is shared by the nodes.
+ * <p>
+ * The jobs that must only run on one node at a time acquire a lease of their own, see {@link #lead(String, Duration)}.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ClusterNode {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterNode.class);
+    static final Duration NODE_LEASE = Duration.ofMinutes(1);
+    private static final String NODE_PREFIX = "node-";
+
+    @EJB
+    private AccountArchivist archivist;
+
+    @EJB
+    private TransactionArchive archive;
+
+    private final String owner = UUID.randomUUID().toString();
+
+    @PostConstruct
+    public void register() {
+        if (!archivist.acquireLease(nodeLease(), owner, NODE_LEASE)) {
+            throw new IllegalStateException("Node " + EventSequencer.node() + " is in use by another instance, "
+                    + "set the system property account.event.node to a node number not used by other instances");
+        }
+        archive.register(nodeLease(), owner);
+        LOGGER.info("Registered as node {}", EventSequencer.node());
+    }
+
+    @Schedule(hour = "*", minute = "*", second = "*/10", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void renew() {
+        try {
+            if (!archivist.acquireLease(nodeLease(), owner, NODE_LEASE)) {
+                LOGGER.error("Node {} has been taken over by another instance, the instances generate colliding event "
+                        + "sequence numbers", EventSequencer.node());
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not renew the registration of node {}", EventSequencer.node(), e);
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        archivist.releaseLease(nodeLease(), owner);
+    }
+
+    /**
+     * Acquires or renews the lease of a job that must run on a single node at a time, the job is run by the instance
+     * holding the lease and is taken over by another instance once the lease expires without being renewed.
+     *
+     * @param duration the time the lease is held unless it is renewed, which must exceed the time between two runs
+     * @return true if this instance holds the lease and is to run the job
+     */
+    public boolean lead(String job, Duration duration) {
+        return archivist.acquireLease("job-" + job, owner, duration);
+    }
+
+    /**
+     * @return the registrations of the running nodes
+     */
+    public List<Lease> nodes() {
+        return archivist.getLeases(NODE_PREFIX);
+    }
+
+    private static String nodeLease() {
+        return NODE_PREFIX + EventSequencer.node();
+    }
+}
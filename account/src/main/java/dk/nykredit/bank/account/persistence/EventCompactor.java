@@ -0,0 +1,72 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.nykredit.bank.account.model.Event;
+import dk.nykredit.time.CurrentTime;
+
+/**
+ * Compacts the event categories of the accounts every night by taking a snapshot of each account, see
+ * {@link dk.nykredit.bank.account.model.EventSnapshot}, and then pruning the events covered by the snapshot that are
+ * below the offsets committed by the subscribers and older than the retention period given by the environment entry
+ * <code>eventRetentionDays</code>, which is 30 days by default, see {@link AccountArchivist#pruneEvents}. The events
+ * are pruned in batches of {@value #BATCH_SIZE} each removed in a transaction of its own, which keeps the transactions
+ * short, and a failure to compact one account does not stop the others from being compacted. The accounts are
+ * compacted as they are read and by a single node holding the lease of the compactor, see
+ * {@link ClusterNode#lead(String, Duration)}.
+ */
+@Singleton
+public class EventCompactor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventCompactor.class);
+    private static final int BATCH_SIZE = 500;
+    private static final int DEFAULT_RETENTION_DAYS = 30;
+    static final Duration COMPACTOR_LEASE = Duration.ofHours(12);
+
+    @EJB
+    private AccountArchivist archivist;
+
+    @EJB
+    private ClusterNode cluster;
+
+    @Resource(name = "eventRetentionDays")
+    private Integer retentionDays = DEFAULT_RETENTION_DAYS;
+
+    @Schedule(hour = "4", minute = "0", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void compact() {
+        if (!cluster.lead("event-compactor", COMPACTOR_LEASE)) {
+            return;
+        }
+        Instant before = CurrentTime.now().minus(Duration.ofDays(retentionDays));
+        int[] snapshots = {0};
+        int[] pruned = {0};
+        archivist.streamAccounts(Collections.emptyList(), Collections.emptyList(), account -> {
+            try {
+                if (archivist.snapshot(account.getRegNo(), account.getAccountNo())) {
+                    snapshots[0]++;
+                }
+                String category = Event.getCategory(account.getAccountNo(), account.getRegNo());
+                int batch;
+                do {
+                    batch = archivist.pruneEvents(category, before, BATCH_SIZE);
+                    pruned[0] += batch;
+                } while (batch == BATCH_SIZE);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not compact events of account {}-{}", account.getRegNo(), account.getAccountNo(), e);
+            }
+        });
+        LOGGER.info("Took {} snapshots and pruned {} events stored before {}", snapshots[0], pruned[0], before);
+    }
+}
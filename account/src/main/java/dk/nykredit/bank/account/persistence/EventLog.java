@@ -0,0 +1,551 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+
+import dk.nykredit.bank.account.model.Event;
+import dk.nykredit.bank.account.model.EventOverview;
+import dk.nykredit.bank.account.model.EventSequencer;
+
+/**
+ * Append-only log of events kept in memory-mapped segment files, which may be used as the store of the event feed
+ * instead of the event table.
+ * <p>
+ * A segment is a file of a fixed size, which is mapped into memory when the log is opened and named by the sequence
+ * of its first event. Events are appended to the last segment as records holding their length, a checksum and their
+ * sequence followed by the event, and a new segment is started once the last one is full. An append is forced to disk
+ * before it returns, but it is not part of the transaction of the caller and is thus not undone if the transaction is
+ * rolled back, events should therefore be stored through the outbox, which recognizes an event that has been
+ * appended already by its natural id.
+ * <p>
+ * The events are kept in the order they are appended and an event appended with a sequence that is not above the
+ * last sequence in the log is given the sequence following it, which means that a subscriber never misses an event
+ * appended after it has read past its sequence. The log keeps a sparse index holding the position of every
+ * {@value #INDEX_INTERVAL}th event by its sequence and a {@link CategoryIndex} holding the position and time of every
+ * event of a category, the feed is thus read by scanning the segments from the nearest indexed position whereas the
+ * feed of a category and the events of a category within an interval are read from the positions found in the index.
+ * <p>
+ * The indexes are rebuilt when the log is opened by scanning the segments. The scan of a segment stops at the first
+ * record that is incomplete or does not match its checksum, which is where an append was cut short by a crash, and
+ * the rest of the segment is cleared before the next append.
+ * <p>
+ * The log is used when the environment entry <code>eventLogEnabled</code> is true and is placed in the directory
+ * given by the environment entry <code>eventLogDirectory</code>. The log is local to the node and has a single writer,
+ * it is therefore not a drop-in replacement of the event table in a deployment of several nodes: the environment entry
+ * <code>eventLogNode</code> must give the node number, see {@link EventSequencer#node()}, of the one node keeping the
+ * log, and starting the log on any other node fails. A deployment using the log thus runs as that single node.
+ */
+@Singleton
+public class EventLog {
+    private static final String DEFAULT_DIRECTORY = "event-log";
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int INDEX_INTERVAL = 64;
+    private static final int HEADER_SIZE = 16;
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    @Resource(name = "eventLogEnabled")
+    private Boolean enabled = false;
+
+    @Resource(name = "eventLogDirectory")
+    private String directory = DEFAULT_DIRECTORY;
+
+    @Resource(name = "eventLogSegmentSize")
+    private Integer segmentSize = DEFAULT_SEGMENT_SIZE;
+
+    @Resource(name = "eventLogNode")
+    private Integer node;
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final Positions index = new Positions();
+    private final CategoryIndex categories = new CategoryIndex();
+    private long last;
+    private long count;
+
+    public EventLog() {
+        // Required by EJB
+    }
+
+    EventLog(String directory, int segmentSize) {
+        this.enabled = true;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.node = EventSequencer.node();
+        open();
+    }
+
+    /**
+     * Maps the segments of the log and rebuilds the indexes from the events in the segments.
+     */
+    @PostConstruct
+    void open() {
+        if (!enabled) {
+            return;
+        }
+        if (null == node || node != EventSequencer.node()) {
+            throw new IllegalStateException("The event log is kept by the single node given by eventLogNode (" + node
+                    + ") and cannot be opened on node " + EventSequencer.node());
+        }
+        Path log = Paths.get(directory);
+        try {
+            Files.createDirectories(log);
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(log, "*" + SEGMENT_SUFFIX)) {
+                stream.forEach(files::add);
+            }
+            Collections.sort(files);
+            for (Path file : files) {
+                Segment segment = new Segment(file, segmentSize);
+                segments.add(segment);
+                recover(segments.size() - 1, segment);
+            }
+            if (!segments.isEmpty()) {
+                clear(segments.get(segments.size() - 1));
+            }
+        } catch (IOException e) {
+            close();
+            throw new UncheckedIOException("Could not open event log in " + directory, e);
+        }
+        EventSequencer.observe(last);
+    }
+
+    @PreDestroy
+    @Lock(LockType.WRITE)
+    public void close() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    /**
+     * @return true if the event feed is stored in the log
+     */
+    @Lock(LockType.READ)
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the last sequence in the log, or 0 if the log is empty
+     */
+    @Lock(LockType.READ)
+    public long last() {
+        return last;
+    }
+
+    /**
+     * @return the last sequence of the category in the log, or 0 if the category has no events
+     */
+    @Lock(LockType.READ)
+    public long last(String category) {
+        return categories.last(category);
+    }
+
+    /**
+     * Counts the events following the given watermark, which for the complete log is the records from the nearest
+     * indexed position up to the watermark subtracted from the number of records and for a category is the size of
+     * the tail of the category following the watermark.
+     *
+     * @return the number of events following the watermark in the category or in the complete log
+     */
+    @Lock(LockType.READ)
+    public long count(Optional<String> category, long after) {
+        if (category.isPresent()) {
+            return categories.count(category.get(), after);
+        }
+        if (after >= last) {
+            return 0L;
+        }
+        long[] preceding = {index.ordinal(after)};
+        scan(index.floor(after), record -> {
+            if (record.sequence <= after) {
+                preceding[0]++;
+                return true;
+            }
+            return false;
+        });
+        return count - preceding[0];
+    }
+
+    /**
+     * Appends the events in the order given and forces them to disk.
+     *
+     * @return the events as stored in the log, i.e., having the sequence they were given in the log
+     */
+    @Lock(LockType.WRITE)
+    public List<Event> append(Collection<Event> events) {
+        List<Event> stored = new ArrayList<>(events.size());
+        if (events.isEmpty()) {
+            return stored;
+        }
+        try {
+            Segment segment = null;
+            for (Event event : events) {
+                long sequence = Math.max(event.getSequence(), last + 1);
+                byte[] record = record(sequence, event);
+                segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+                if (null == segment || segment.end + record.length > segment.capacity) {
+                    if (null != segment) {
+                        segment.buffer.force();
+                    }
+                    segment = roll(sequence, record.length);
+                }
+                int position = segment.end;
+                ByteBuffer buffer = segment.buffer.duplicate();
+                buffer.position(position);
+                buffer.put(record);
+                segment.end += record.length;
+                indexed(segments.size() - 1, position, sequence, event.getId(), event.getCategory(), event.getTime().toEpochMilli());
+                stored.add(new Event(event.getId(), sequence, event.getOrigin(), event.getTime(), event.getInformation(),
+                        event.getCategory()));
+            }
+            segment.buffer.force();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append events to event log in " + directory, e);
+        }
+        EventSequencer.observe(last);
+        return stored;
+    }
+
+    /**
+     * Reads the events following the given watermark by scanning the segments from the nearest indexed position.
+     *
+     * @return the events following the watermark ordered by their sequence
+     */
+    @Lock(LockType.READ)
+    public List<EventOverview> read(long after, int limit) {
+        List<EventOverview> events = new ArrayList<>();
+        if (after >= last) {
+            return events;
+        }
+        scan(index.floor(after), record -> {
+            if (record.sequence > after) {
+                events.add(record.overview());
+            }
+            return events.size() < limit;
+        });
+        return events;
+    }
+
+    /**
+     * Reads the events of the category following the given watermark from the positions of the category.
+     *
+     * @return the events of the category following the watermark ordered by their sequence
+     */
+    @Lock(LockType.READ)
+    public List<EventOverview> read(String category, long after, int limit) {
+        return overviews(categories.after(category, after, limit));
+    }
+
+    /**
+     * Reads the events of the category having a time after the start and before the end from the positions of the
+     * category.
+     *
+     * @return the events of the category within the interval ordered by their sequence
+     */
+    @Lock(LockType.READ)
+    public List<EventOverview> read(String category, Instant start, Instant end) {
+        return overviews(categories.within(category, start, end));
+    }
+
+    /**
+     * Delivers every event of the log, or of the category if one is given, to the visitor in the order of their
+     * sequence until the visitor returns false.
+     */
+    @Lock(LockType.READ)
+    public void scan(Optional<String> category, Predicate<EventOverview> visitor) {
+        if (category.isPresent()) {
+            for (long position : categories.all(category.get())) {
+                if (!visitor.test(read(position).overview())) {
+                    return;
+                }
+            }
+        } else {
+            scan(0L, record -> visitor.test(record.overview()));
+        }
+    }
+
+    /**
+     * Finds the event by its natural id from the position of the event in the index of the category.
+     */
+    @Lock(LockType.READ)
+    public Optional<Event> find(String category, String id) {
+        return categories.position(category, id).map(position -> read(position).event());
+    }
+
+    /**
+     * Scans the segment from the start and indexes the records until the first record that is incomplete or does not
+     * match its checksum.
+     */
+    private void recover(int segmentNo, Segment segment) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int position = 0;
+        Record record;
+        while ((record = decode(buffer, position)) != null) {
+            indexed(segmentNo, position, record.sequence, record.id, record.category, record.time);
+            position += HEADER_SIZE + buffer.getInt(position);
+        }
+        segment.end = position;
+    }
+
+    /**
+     * Clears the segment following its last complete record, which removes what is left of an append that was cut
+     * short. Only the last segment is cleared as a segment is forced to disk before the next one is started.
+     */
+    private static void clear(Segment segment) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int position = segment.end;
+        byte[] zeros = new byte[Math.min(segment.capacity - position, 64 * 1024)];
+        buffer.position(position);
+        while (buffer.hasRemaining()) {
+            buffer.put(zeros, 0, Math.min(zeros.length, buffer.remaining()));
+        }
+        segment.buffer.force();
+    }
+
+    private Segment roll(long sequence, int size) throws IOException {
+        Path file = Paths.get(directory, String.format("%020d", sequence) + SEGMENT_SUFFIX);
+        Segment segment = new Segment(file, Math.max(segmentSize, size));
+        segments.add(segment);
+        return segment;
+    }
+
+    private void indexed(int segmentNo, int offset, long sequence, String id, String category, long time) {
+        long position = position(segmentNo, offset);
+        if (count % INDEX_INTERVAL == 0 || offset == 0) {
+            index.add(sequence, position, count);
+        }
+        categories.add(category, sequence, id, position, time);
+        last = sequence;
+        count++;
+    }
+
+    /**
+     * Visits the records from the given position onwards until the visitor returns false.
+     */
+    private void scan(long from, Predicate<Record> visitor) {
+        for (int s = segment(from); s < segments.size(); s++) {
+            Segment segment = segments.get(s);
+            ByteBuffer buffer = segment.buffer.duplicate();
+            int position = s == segment(from) ? offset(from) : 0;
+            while (position < segment.end) {
+                Record record = decode(buffer, position);
+                if (!visitor.test(record)) {
+                    return;
+                }
+                position += HEADER_SIZE + buffer.getInt(position);
+            }
+        }
+    }
+
+    private List<EventOverview> overviews(List<Long> positions) {
+        List<EventOverview> events = new ArrayList<>(positions.size());
+        for (long position : positions) {
+            events.add(read(position).overview());
+        }
+        return events;
+    }
+
+    private Record read(long position) {
+        return decode(segments.get(segment(position)).buffer.duplicate(), offset(position));
+    }
+
+    /**
+     * @return the record at the position, or null if the record is incomplete or does not match its checksum
+     */
+    private static Record decode(ByteBuffer buffer, int position) {
+        if (position + HEADER_SIZE > buffer.capacity()) {
+            return null;
+        }
+        int length = buffer.getInt(position);
+        if (length <= 0 || position + HEADER_SIZE + length > buffer.capacity()) {
+            return null;
+        }
+        int checksum = buffer.getInt(position + 4);
+        long sequence = buffer.getLong(position + 8);
+        byte[] payload = new byte[length];
+        buffer.position(position + HEADER_SIZE);
+        buffer.get(payload);
+        if (checksum != checksum(sequence, payload)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return new Record(sequence, in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readLong());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static byte[] record(long sequence, Event event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(event.getId());
+            out.writeUTF(event.getCategory());
+            out.writeUTF(event.getOrigin().toString());
+            out.writeUTF(event.getInformation());
+            out.writeLong(event.getTime().toEpochMilli());
+        }
+        byte[] payload = bytes.toByteArray();
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        record.putInt(payload.length);
+        record.putInt(checksum(sequence, payload));
+        record.putLong(sequence);
+        record.put(payload);
+        return record.array();
+    }
+
+    private static int checksum(long sequence, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(8).putLong(sequence).array());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static long position(int segmentNo, int offset) {
+        return ((long) segmentNo << 32) | offset;
+    }
+
+    private static int segment(long position) {
+        return (int) (position >>> 32);
+    }
+
+    private static int offset(long position) {
+        return (int) position;
+    }
+
+    /**
+     * A segment file mapped into memory, the end is the offset following the last complete record.
+     */
+    private static final class Segment {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int capacity;
+        private int end;
+
+        private Segment(Path file, int size) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            capacity = (int) Math.max(size, channel.size());
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+
+        private void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not close event log segment", e);
+            }
+        }
+    }
+
+    /**
+     * Positions in the log ordered by the sequence of the event at the position.
+     */
+    private static final class Positions {
+        private long[] sequences = new long[16];
+        private long[] positions = new long[16];
+        private long[] ordinals = new long[16];
+        private int size;
+
+        private void add(long sequence, long position, long ordinal) {
+            if (size == sequences.length) {
+                sequences = Arrays.copyOf(sequences, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            sequences[size] = sequence;
+            positions[size] = position;
+            ordinals[size] = ordinal;
+            size++;
+        }
+
+        /**
+         * @return the index of the first position having a sequence above the given sequence
+         */
+        private int higher(long sequence) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (sequences[middle] <= sequence) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return the last position having a sequence not above the given sequence, or the start of the log
+         */
+        private long floor(long sequence) {
+            int i = higher(sequence) - 1;
+            return i < 0 ? 0L : positions[i];
+        }
+
+        /**
+         * @return the number of records preceding the last position having a sequence not above the given sequence
+         */
+        private long ordinal(long sequence) {
+            int i = higher(sequence) - 1;
+            return i < 0 ? 0L : ordinals[i];
+        }
+    }
+
+    private static final class Record {
+        private final long sequence;
+        private final String id;
+        private final String category;
+        private final String origin;
+        private final String information;
+        private final long time;
+
+        private Record(long sequence, String id, String category, String origin, String information, long time) {
+            this.sequence = sequence;
+            this.id = id;
+            this.category = category;
+            this.origin = origin;
+            this.information = information;
+            this.time = time;
+        }
+
+        private EventOverview overview() {
+            return new EventOverview(id, sequence, new Date(time), category, origin);
+        }
+
+        private Event event() {
+            return new Event(id, sequence, URI.create(origin), Instant.ofEpochMilli(time), information, category);
+        }
+    }
+}
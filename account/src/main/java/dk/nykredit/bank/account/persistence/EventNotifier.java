@@ -0,0 +1,158 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Resource;
+import javax.ejb.Asynchronous;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+/**
+ * Signals the subscribers waiting for new events when events are stored.
+ * <p>
+ * A subscriber asks for a signal before it reads the events following its watermark and waits for the signal only if
+ * there were no new events, which means that an event stored while the subscriber reads is never missed. The signal
+ * is a future that completes once an event of the category, or any event, is stored and waiting for it does not
+ * hold a thread unless the subscriber chooses to block on it. An event stored in a transaction is signalled once the
+ * transaction is committed, as it cannot be read by the subscribers before then.
+ * <p>
+ * Note that the signals are sent to the subscribers waiting on the node that stores the event, a subscriber waiting
+ * on another node will see the event when its wait times out.
+ * <p>
+ * A subscriber streaming the events holds a thread of the container for as long as the stream lasts, the number of
+ * concurrent streams is therefore capped by <code>maxEventStreams</code>, see {@link #openStream()}.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class EventNotifier {
+    static final String ALL = "*";
+    private static final int DEFAULT_MAX_STREAMS = 50;
+
+    @Resource
+    private TransactionSynchronizationRegistry registry;
+
+    @Resource(name = "maxEventStreams")
+    private Integer maxStreams = DEFAULT_MAX_STREAMS;
+
+    private final AtomicInteger streams = new AtomicInteger();
+
+    private final Map<String, Queue<CompletableFuture<Void>>> waiting = new ConcurrentHashMap<>();
+
+    public EventNotifier() {
+        // Required by EJB
+    }
+
+    EventNotifier(int maxStreams) {
+        this.maxStreams = maxStreams;
+    }
+
+    /**
+     * @return a signal that completes when the next event is stored
+     */
+    public CompletableFuture<Void> next() {
+        return next(ALL);
+    }
+
+    /**
+     * @return a signal that completes when the next event of the category is stored
+     */
+    public CompletableFuture<Void> next(String category) {
+        CompletableFuture<Void> signal = new CompletableFuture<>();
+        waiting.compute(category, (c, signals) -> {
+            Queue<CompletableFuture<Void>> queue = null == signals ? new ConcurrentLinkedQueue<>() : signals;
+            queue.add(signal);
+            return queue;
+        });
+        return signal;
+    }
+
+    /**
+     * Records that an event of the category is stored, the subscribers are signalled when the current transaction,
+     * if any, is committed.
+     */
+    public void stored(String category) {
+        if (null != registry && registry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            registry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    // nothing to do before the commit
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        signal(category);
+                    }
+                }
+            });
+        } else {
+            signal(category);
+        }
+    }
+
+    /**
+     * Opens a stream of events unless the maximum number of concurrent streams are open, a stream that is opened must
+     * be closed, see {@link #closeStream()}.
+     *
+     * @return true if the stream was opened
+     */
+    public boolean openStream() {
+        if (streams.incrementAndGet() > maxStreams) {
+            streams.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Closes a stream opened by {@link #openStream()}.
+     */
+    public void closeStream() {
+        streams.decrementAndGet();
+    }
+
+    /**
+     * Runs the continuation of a subscriber that has been signalled asynchronously, which keeps the subscriber from
+     * reading the new events on the thread that stored them.
+     */
+    @Asynchronous
+    public void dispatch(Runnable continuation) {
+        continuation.run();
+    }
+
+    void signal(String category) {
+        signal(waiting.get(category));
+        signal(waiting.get(ALL));
+    }
+
+    private static void signal(Queue<CompletableFuture<Void>> signals) {
+        if (null == signals) {
+            return;
+        }
+        CompletableFuture<Void> signal;
+        while ((signal = signals.poll()) != null) {
+            signal.complete(null);
+        }
+    }
+
+    /**
+     * Removes the signals that the subscribers have stopped waiting for.
+     */
+    @Schedule(hour = "*", minute = "*", persistent = false)
+    public void expire() {
+        waiting.keySet().forEach(category -> waiting.computeIfPresent(category, (c, signals) -> {
+            signals.removeIf(CompletableFuture::isDone);
+            return signals.isEmpty() ? null : signals;
+        }));
+    }
+}
@@ -0,0 +1,19 @@
+package dk.nykredit.bank.account.persistence;
+
+import dk.nykredit.bank.account.model.Event;
+
+/**
+ * Receives the events relayed from the outbox, see {@link OutboxRelay}. A sink is plugged in by deploying a CDI bean
+ * implementing this interface.
+ * <p>
+ * The events are delivered at least once, i.e., an event is delivered again if the relay fails before the event is
+ * removed from the outbox. The id of the event is its dedupe key and a sink that must not act twice on the same event
+ * is expected to remember the ids it has received.
+ */
+public interface EventSink {
+
+    /**
+     * Publishes the event, an exception thrown by the sink causes the batch of events to be relayed again later.
+     */
+    void publish(Event event);
+}
@@ -0,0 +1,76 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.nykredit.bank.account.model.Event;
+
+/**
+ * Relays the messages of the outbox to the event feed and the event sinks every second, which keeps the publishing
+ * of events out of the transactions that store them. The outbox is relayed in batches that are each published and
+ * removed from the outbox in a transaction of their own, a batch that fails is relayed again at the next run.
+ * <p>
+ * The outbox is relayed by a single node at a time, which holds the lease of the relay, see
+ * {@link ClusterNode#lead(String, java.time.Duration)}. The events are thus appended to the feed by a single writer and
+ * another node takes over the relay if the node relaying the outbox stops.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class OutboxRelay {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OutboxRelay.class);
+    static final int BATCH_SIZE = 100;
+    static final Duration RELAY_LEASE = Duration.ofSeconds(30);
+
+    @EJB
+    private AccountArchivist archivist;
+
+    @EJB
+    private ClusterNode cluster;
+
+    @Inject
+    @Any
+    private Instance<EventSink> sinks;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    @Schedule(hour = "*", minute = "*", second = "*", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void relay() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (!cluster.lead("outbox-relay", RELAY_LEASE)) {
+                return;
+            }
+            int relayed;
+            do {
+                relayed = archivist.relayOutbox(BATCH_SIZE, this::publish);
+            } while (relayed == BATCH_SIZE);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not relay the outbox, the messages are relayed at the next run", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private void publish(Event event) {
+        for (EventSink sink : sinks) {
+            sink.publish(event);
+        }
+    }
+}
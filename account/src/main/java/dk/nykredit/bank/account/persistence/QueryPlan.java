@@ -0,0 +1,62 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.util.Collections;
+
+/**
+ * The queries of the archivist in the shapes that are used without a custom selection or sorting. Each query plan is
+ * registered as a named query at deployment, see {@link QueryPlanRegistry}, which means that the query is parsed and
+ * validated once instead of being built and looked up for every request.
+ */
+enum QueryPlan {
+    ACCOUNT("select a from Account a where a.regNo=:regNo and a.accountNo=:accountNo"),
+    ACCOUNTS(AccountArchivist.accountsJpql(Collections.emptyList(), Collections.emptyList())),
+    RECONCILED_TRANSACTION("select rt from ReconciledTransaction rt "
+            + "where rt.account.regNo=:regNo and rt.account.accountNo=:accountNo and rt.id=:id"),
+    TRANSACTIONS(transactionsJpql(false, false, false)),
+    TRANSACTIONS_AFTER(transactionsJpql(false, true, false)),
+    TRANSACTIONS_BEFORE(transactionsJpql(false, true, true)),
+    TRANSACTIONS_WITHIN(transactionsJpql(true, false, false)),
+    TRANSACTIONS_WITHIN_AFTER(transactionsJpql(true, true, false)),
+    TRANSACTIONS_WITHIN_BEFORE(transactionsJpql(true, true, true)),
+    EVENTS(AccountArchivist.eventsJpql(false, Collections.emptyList(), Collections.emptyList())),
+    EVENTS_WITHIN(AccountArchivist.eventsJpql(true, Collections.emptyList(), Collections.emptyList())),
+    CATEGORY_EVENTS(AccountArchivist.categoryEventsJpql(false, Collections.emptyList(), Collections.emptyList())),
+    CATEGORY_EVENTS_WITHIN(AccountArchivist.categoryEventsJpql(true, Collections.emptyList(), Collections.emptyList())),
+    EVENTS_AFTER(AccountArchivist.eventsAfterJpql(false)),
+    CATEGORY_EVENTS_AFTER(AccountArchivist.eventsAfterJpql(true));
+
+    private final String jpql;
+    private final String queryName;
+
+    QueryPlan(String jpql) {
+        this.jpql = jpql;
+        this.queryName = "account." + name();
+    }
+
+    String jpql() {
+        return jpql;
+    }
+
+    String queryName() {
+        return queryName;
+    }
+
+    /**
+     * @param within    whether the transactions are within an interval
+     * @param seek      whether the transactions are read from a cursor
+     * @param backwards whether the transactions are read backwards from the cursor
+     */
+    static QueryPlan transactions(boolean within, boolean seek, boolean backwards) {
+        if (!seek) {
+            return within ? TRANSACTIONS_WITHIN : TRANSACTIONS;
+        }
+        if (backwards) {
+            return within ? TRANSACTIONS_WITHIN_BEFORE : TRANSACTIONS_BEFORE;
+        }
+        return within ? TRANSACTIONS_WITHIN_AFTER : TRANSACTIONS_AFTER;
+    }
+
+    private static String transactionsJpql(boolean within, boolean seek, boolean backwards) {
+        return AccountArchivist.transactionsJpql(within, Collections.emptyList(), Collections.emptyList(), seek, backwards);
+    }
+}
@@ -0,0 +1,55 @@
+package dk.nykredit.bank.account.persistence;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registers the query plans of the archivist as named queries when the application is deployed. The queries are
+ * parsed as they are registered, which means that a broken query fails the deployment instead of the first request
+ * that uses it. The query plans are registered for the primary as well as the read replica.
+ */
+@Singleton
+@Startup
+public class QueryPlanRegistry {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryPlanRegistry.class);
+
+    @PersistenceUnit(unitName = "accountPersistenceUnit")
+    private EntityManagerFactory emf;
+
+    @PersistenceUnit(unitName = "accountReplicaPersistenceUnit")
+    private EntityManagerFactory replica;
+
+    public QueryPlanRegistry() {
+        // Required by EJB
+    }
+
+    QueryPlanRegistry(EntityManagerFactory emf, EntityManagerFactory replica) {
+        this.emf = emf;
+        this.replica = replica;
+    }
+
+    @PostConstruct
+    public void register() {
+        register(emf);
+        register(replica);
+        LOGGER.info("Registered {} query plans", QueryPlan.values().length);
+    }
+
+    private static void register(EntityManagerFactory factory) {
+        EntityManager em = factory.createEntityManager();
+        try {
+            for (QueryPlan plan : QueryPlan.values()) {
+                factory.addNamedQuery(plan.queryName(), em.createQuery(plan.jpql()));
+            }
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import dk.nykredit.time.CurrentTime;
+
+/**
+ * Decides whether a read goes to the read replica or to the primary database.
+ * <p>
+ * A read goes to the primary if it takes part in a transaction, as what is read may be written in the same
+ * transaction, or if what is read has been written within the staleness bound, which is the time the replica is
+ * allowed to lag behind the primary. Everything else is read from the replica. The staleness bound is given in
+ * milliseconds by the environment entry <code>replicaStalenessBound</code> and is 2 seconds by default.
+ * <p>
+ * The writes are tracked by the key of what is written, i.e., the account or the event category. A write that changes
+ * what is listed across keys, i.e., creating or renaming an account, is tracked by {@link #ALL} as well, whereas e.g.
+ * adding a transaction to an account leaves the reads across keys on the replica. The event feed is read after the
+ * watermark of the consumer, which catches up with the replica, and is read from the replica unless the read takes
+ * part in a transaction, see {@link #readFromPrimary()}.
+ * <p>
+ * A write is recorded once its transaction is committed, as the replica cannot lag behind it before then, which keeps
+ * a long transaction from using up the staleness bound. Note that the writes are tracked by the node that handles
+ * them, a read handled by another node within the staleness bound may thus read from the replica.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ReplicaRouting {
+    static final String ALL = "*";
+    private static final long DEFAULT_STALENESS_BOUND = 2000L;
+
+    @Resource(name = "replicaStalenessBound")
+    private Long stalenessBound = DEFAULT_STALENESS_BOUND;
+
+    @Resource
+    private TransactionSynchronizationRegistry registry;
+
+    private final Map<String, Instant> writes = new ConcurrentHashMap<>();
+
+    public ReplicaRouting() {
+        // Required by EJB
+    }
+
+    ReplicaRouting(long stalenessBound) {
+        this.stalenessBound = stalenessBound;
+    }
+
+    ReplicaRouting(long stalenessBound, TransactionSynchronizationRegistry registry) {
+        this(stalenessBound);
+        this.registry = registry;
+    }
+
+    /**
+     * Records that the data having the given keys is written, the write is recorded when the current transaction, if
+     * any, is committed.
+     */
+    public void written(String... keys) {
+        if (null != registry && registry.getTransactionStatus() == Status.STATUS_ACTIVE) {
+            registry.registerInterposedSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() {
+                    // nothing to do before the commit
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == Status.STATUS_COMMITTED) {
+                        record(keys);
+                    }
+                }
+            });
+        } else {
+            record(keys);
+        }
+    }
+
+    /**
+     * @return true if the read takes part in a transaction and must be read from the primary database
+     */
+    public boolean readFromPrimary() {
+        return null != registry && registry.getTransactionStatus() == Status.STATUS_ACTIVE;
+    }
+
+    /**
+     * @return true if the data having the given key must be read from the primary database
+     */
+    public boolean readFromPrimary(String key) {
+        if (readFromPrimary()) {
+            return true;
+        }
+        Instant written = writes.get(key);
+        return null != written && !isStale(written);
+    }
+
+    private void record(String... keys) {
+        Instant now = CurrentTime.now();
+        for (String key : keys) {
+            writes.put(key, now);
+        }
+    }
+
+    @Schedule(hour = "*", minute = "*", persistent = false)
+    public void expire() {
+        writes.values().removeIf(this::isStale);
+    }
+
+    private boolean isStale(Instant written) {
+        return !written.plusMillis(stalenessBound).isAfter(CurrentTime.now());
+    }
+}
@@ -0,0 +1,257 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Resource;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+
+import dk.nykredit.bank.account.model.Lease;
+import dk.nykredit.bank.account.model.MonthPartition;
+import dk.nykredit.bank.account.model.TransactionOverview;
+import dk.nykredit.time.CurrentTime;
+
+/**
+ * Cold storage of the transactions that are older than the retention period of the transaction table.
+ * <p>
+ * The archived transactions of an account are stored in a directory per account holding a segment file per month.
+ * A segment is append-only and every append adds a gzip member holding the transactions appended, the members of a
+ * segment are read as one gzip stream. The directory furthermore holds an index with the length and number of
+ * transactions of each segment, the index is rewritten atomically once an append has been forced to disk and a read
+ * never goes beyond the length in the index. A segment is truncated to the length in the index before it is appended
+ * to, which means that an append that was cut short is never read and is overwritten by the next append.
+ * <p>
+ * The archive is placed in the directory given by the environment entry <code>transactionArchiveDirectory</code> and
+ * keeps transactions that are older than the number of months given by the environment entry
+ * <code>transactionRetentionMonths</code>, which is 24 months by default.
+ * <p>
+ * The transactions are archived by one node, whereas the archived transactions are read by any node, and the
+ * directory must therefore be shared storage mounted by every node. Each node registers itself in the directory when
+ * it starts, see {@link #register(String, String)}, and the transactions are only archived once the directory holds
+ * the registrations of all running nodes, see {@link #isSharedBy(Collection)}, which keeps a directory local to a node
+ * from receiving transactions the other nodes cannot read.
+ */
+@Singleton
+public class TransactionArchive {
+    private static final String DEFAULT_DIRECTORY = "transaction-archive";
+    private static final int DEFAULT_RETENTION_MONTHS = 24;
+    private static final String INDEX = "index";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String NODES = ".nodes";
+
+    @Resource(name = "transactionArchiveDirectory")
+    private String directory = DEFAULT_DIRECTORY;
+
+    @Resource(name = "transactionRetentionMonths")
+    private Integer retentionMonths = DEFAULT_RETENTION_MONTHS;
+
+    public TransactionArchive() {
+        // Required by EJB
+    }
+
+    TransactionArchive(String directory, int retentionMonths) {
+        this.directory = directory;
+        this.retentionMonths = retentionMonths;
+    }
+
+    /**
+     * @return the month partition of the oldest transactions kept in the transaction table, older transactions are
+     * moved to the archive
+     */
+    @Lock(LockType.READ)
+    public int horizon() {
+        return MonthPartition.of(CurrentTime.now().atZone(ZoneOffset.UTC).minusMonths(retentionMonths));
+    }
+
+    /**
+     * Registers the node in the archive directory as the owner of its node lease, see {@link Lease}.
+     */
+    @Lock(LockType.WRITE)
+    public void register(String node, String owner) {
+        Path nodes = Paths.get(directory, NODES);
+        try {
+            Files.createDirectories(nodes);
+            Path temporary = nodes.resolve(node + ".tmp");
+            Files.write(temporary, owner.getBytes(StandardCharsets.UTF_8));
+            Files.move(temporary, nodes.resolve(node), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not register node " + node + " in transaction archive " + directory, e);
+        }
+    }
+
+    /**
+     * @return true if every one of the nodes is registered in the archive directory by its current owner, which is the
+     * case if the directory is shared by the nodes
+     */
+    @Lock(LockType.READ)
+    public boolean isSharedBy(Collection<Lease> nodes) {
+        for (Lease node : nodes) {
+            Path registration = Paths.get(directory, NODES, node.getName());
+            try {
+                if (!Files.exists(registration)
+                        || !node.getOwner().equals(new String(Files.readAllBytes(registration), StandardCharsets.UTF_8))) {
+                    return false;
+                }
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends the transactions to the segment of the given month.
+     */
+    @Lock(LockType.WRITE)
+    public void append(String regNo, String accountNo, int month, List<TransactionOverview> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        Path account = account(regNo, accountNo);
+        try {
+            Files.createDirectories(account);
+            Map<Integer, long[]> index = index(account);
+            long[] segment = index.getOrDefault(month, new long[]{0L, 0L});
+            byte[] member = compress(transactions);
+            try (FileChannel channel = FileChannel.open(account.resolve(month + SEGMENT_SUFFIX),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                channel.truncate(segment[0]);
+                channel.position(segment[0]);
+                ByteBuffer buffer = ByteBuffer.wrap(member);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            index.put(month, new long[]{segment[0] + member.length, segment[1] + transactions.size()});
+            writeIndex(account, index);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not archive transactions of account " + regNo + "-" + accountNo, e);
+        }
+    }
+
+    /**
+     * Reads the archived transactions of the months from and including the first month to and including the last
+     * month. A transaction that has been appended more than once, e.g., because the archiving transaction was rolled
+     * back after the append, is only read once.
+     *
+     * @return the transactions in the order they were archived
+     */
+    @Lock(LockType.READ)
+    public List<TransactionOverview> read(String regNo, String accountNo, int fromMonth, int toMonth) {
+        Path account = account(regNo, accountNo);
+        if (!Files.isDirectory(account)) {
+            return Collections.emptyList();
+        }
+        try {
+            Map<String, TransactionOverview> transactions = new LinkedHashMap<>();
+            for (Map.Entry<Integer, long[]> segment : index(account).entrySet()) {
+                if (segment.getKey() >= fromMonth && segment.getKey() <= toMonth) {
+                    read(regNo, accountNo, account.resolve(segment.getKey() + SEGMENT_SUFFIX), segment.getValue())
+                            .forEach(transaction -> transactions.putIfAbsent(transaction.getId(), transaction));
+                }
+            }
+            return new ArrayList<>(transactions.values());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read archived transactions of account " + regNo + "-" + accountNo, e);
+        }
+    }
+
+    private Path account(String regNo, String accountNo) {
+        return Paths.get(directory, regNo + "-" + accountNo);
+    }
+
+    private static List<TransactionOverview> read(String regNo, String accountNo, Path segment, long[] indexed) throws IOException {
+        byte[] bytes = new byte[(int) indexed[0]];
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Segment " + segment + " is shorter than its index");
+                }
+            }
+        }
+        List<TransactionOverview> transactions = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(bytes)))) {
+            for (long i = 0; i < indexed[1]; i++) {
+                String id = in.readUTF();
+                BigDecimal amount = new BigDecimal(in.readUTF());
+                String description = in.readUTF();
+                Timestamp time = new Timestamp(in.readLong());
+                time.setNanos(in.readInt());
+                transactions.add(new TransactionOverview(regNo, accountNo, id, amount, description, time));
+            }
+        }
+        return transactions;
+    }
+
+    private static byte[] compress(List<TransactionOverview> transactions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            for (TransactionOverview transaction : transactions) {
+                Timestamp time = transaction.getLastModifiedTime();
+                out.writeUTF(transaction.getId());
+                out.writeUTF(transaction.getAmount().toPlainString());
+                out.writeUTF(transaction.getDescription());
+                out.writeLong(time.getTime());
+                out.writeInt(time.getNanos());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the length and number of transactions of each segment by month
+     */
+    private static Map<Integer, long[]> index(Path account) throws IOException {
+        Map<Integer, long[]> index = new TreeMap<>();
+        Path file = account.resolve(INDEX);
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] entry = line.trim().split(" ");
+                if (entry.length == 3) {
+                    index.put(Integer.valueOf(entry[0]), new long[]{Long.parseLong(entry[1]), Long.parseLong(entry[2])});
+                }
+            }
+        }
+        return index;
+    }
+
+    private static void writeIndex(Path account, Map<Integer, long[]> index) throws IOException {
+        List<String> lines = new ArrayList<>();
+        index.forEach((month, segment) -> lines.add(month + " " + segment[0] + " " + segment[1]));
+        Path temporary = account.resolve(INDEX + ".tmp");
+        Files.write(temporary, lines, StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, account.resolve(INDEX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
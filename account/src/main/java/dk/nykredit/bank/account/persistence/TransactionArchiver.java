@@ -0,0 +1,66 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dk.nykredit.bank.account.model.Lease;
+
+/**
+ * Moves the transactions that are older than the retention period from the transaction table to the
+ * {@link TransactionArchive} every night. The transactions of each account are archived in a transaction of their
+ * own as the account is read, which keeps the transactions short and means that a failure to archive one account does
+ * not stop the others from being archived.
+ * <p>
+ * The transactions are archived by a single node holding the lease of the archiver, see
+ * {@link ClusterNode#lead(String, Duration)}, and only if the archive directory is shared by the running nodes, see
+ * {@link TransactionArchive#isSharedBy(java.util.Collection)}.
+ */
+@Singleton
+public class TransactionArchiver {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionArchiver.class);
+    static final Duration ARCHIVER_LEASE = Duration.ofHours(12);
+
+    @EJB
+    private AccountArchivist archivist;
+
+    @EJB
+    private TransactionArchive archive;
+
+    @EJB
+    private ClusterNode cluster;
+
+    @Schedule(hour = "3", minute = "0", persistent = false)
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void archive() {
+        if (!cluster.lead("transaction-archiver", ARCHIVER_LEASE)) {
+            return;
+        }
+        List<Lease> nodes = cluster.nodes();
+        if (!archive.isSharedBy(nodes)) {
+            LOGGER.error("The transaction archive directory is not shared by the nodes {}, no transactions are archived",
+                    nodes.stream().map(Lease::getName).collect(Collectors.toList()));
+            return;
+        }
+        int beforeMonth = archive.horizon();
+        int[] archived = {0};
+        archivist.streamAccounts(Collections.emptyList(), Collections.emptyList(), account -> {
+            try {
+                archived[0] += archivist.archiveTransactions(account.getRegNo(), account.getAccountNo(), beforeMonth);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not archive transactions of account {}-{}", account.getRegNo(), account.getAccountNo(), e);
+            }
+        });
+        LOGGER.info("Archived {} transactions stored before {}", archived[0], beforeMonth);
+    }
+}
@@ -36,6 +36,7 @@ public class EntityResponseBuilder<E, R> {
     private String name;
     private String version;
     private Integer maxAge;
+    private String tag;
 
     /**
      * mediatypes for servers with support for content-type parameters
@@ -86,13 +87,23 @@ public class EntityResponseBuilder<E, R> {
         return this;
     }
 
+    /**
+     * Sets a strong entity tag identifying the representation, which is used instead of the hash code of the entity.
+     * The tag must change whenever the representation changes and should be stable across nodes for a representation
+     * that is cached for long.
+     */
+    public EntityResponseBuilder<E, R> tag(String tag) {
+        this.tag = tag;
+        return this;
+    }
+
     /**
      * Build a response given a concrete request. If the request contain an <code>if-modified-since</code> or
      * <code>if-none-match</code> header this will be checked against the entity given to the builder returning
      * a response with status not modified if appropriate.
      */
     public Response build(Request req) {
-        EntityTag eTag = new EntityTag(Integer.toString(entity.hashCode()));
+        EntityTag eTag = new EntityTag(tag != null ? tag : Integer.toString(entity.hashCode()));
         Date lastModified = entity instanceof AbstractAuditable ? ((AbstractAuditable) entity).getLastModifiedTime() : Date.from(Instant.now());
         Response.ResponseBuilder notModifiedBuilder = req.evaluatePreconditions(lastModified, eTag);
         if (notModifiedBuilder != null) {
@@ -0,0 +1,78 @@
+package dk.nykredit.nic.rs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.nykredit.jackson.dataformat.hal.HALLink;
+import dk.nykredit.jackson.dataformat.hal.HALMapper;
+
+/**
+ * Writes a HAL collection incrementally to the response as the elements are delivered from a source, which
+ * means that the memory used does not grow with the size of the collection and that the first bytes of the
+ * response are sent before the last element has been read.
+ *
+ * The written collection has the same form as a collection representation having a <code>self</code> link
+ * and the elements embedded under the given name, e.g.
+ * <code>{"_links":{"self":{"href":"..."}},"_embedded":{"events":[{...},{...}]}}</code>.
+ *
+ * @param <E> Entity type delivered by the source
+ * @param <R> Representation type written for each entity
+ */
+public class HALCollectionOutput<E, R> implements StreamingOutput {
+    private static final ObjectMapper MAPPER = NykreditJsonProvider.configure(new HALMapper())
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final HALLink self;
+    private final String name;
+    private final Consumer<Consumer<E>> source;
+    private final Function<E, R> mapper;
+
+    /**
+     * @param self   link to the collection
+     * @param name   the name the elements are embedded by
+     * @param source delivers each of the entities in the collection to the consumer it is given
+     * @param mapper maps an entity to its representation
+     */
+    public HALCollectionOutput(HALLink self, String name, Consumer<Consumer<E>> source, Function<E, R> mapper) {
+        this.self = self;
+        this.name = name;
+        this.source = source;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        JsonGenerator generator = MAPPER.getFactory().createGenerator(output);
+        generator.writeStartObject();
+        generator.writeObjectFieldStart("_links");
+        generator.writeObjectField("self", self);
+        generator.writeEndObject();
+        generator.writeObjectFieldStart("_embedded");
+        generator.writeArrayFieldStart(name);
+        generator.flush();
+        try {
+            source.accept(entity -> write(generator, mapper.apply(entity)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.writeEndObject();
+        generator.close();
+    }
+
+    private static void write(JsonGenerator generator, Object representation) {
+        try {
+            generator.writeObject(representation);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -30,12 +30,19 @@ public class NykreditJsonProvider extends JacksonJsonProvider {
     }
 
     public NykreditJsonProvider(ObjectMapper mapper) {
+        setMapper(configure(mapper));
+    }
+
+    /**
+     * Configures the given mapper the way the provider does, for writers that serialize outside the provider.
+     */
+    public static ObjectMapper configure(ObjectMapper mapper) {
         mapper.registerModule(new JavaTimeModule());
         mapper.registerModule(new Jdk8Module());
         mapper.setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
         mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
         mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         mapper.disable(DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE);
-        setMapper(mapper);
+        return mapper;
     }
 }
\ No newline at end of file
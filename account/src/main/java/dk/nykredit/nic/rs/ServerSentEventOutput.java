@@ -0,0 +1,108 @@
+package dk.nykredit.nic.rs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dk.nykredit.jackson.dataformat.hal.HALMapper;
+
+/**
+ * Writes a stream of server-sent events to the response, see the <code>text/event-stream</code> format of the
+ * HTML specification. The stream starts after the given watermark and every element read from the source is written
+ * as an event having the watermark of the element as its id and the representation of the element as its data, which
+ * allows a consumer that reconnects to continue from the <code>Last-Event-ID</code> it has received.
+ *
+ * The source is read whenever the signal completes, a comment is written if nothing has been signalled for the
+ * heartbeat interval, which keeps intermediaries from closing the connection and detects consumers that have gone
+ * away. The stream ends after the given duration, after which the consumer reconnects. Note that the stream holds the
+ * thread writing it for as long as it lasts.
+ *
+ * @param <E> Entity type delivered by the source
+ * @param <R> Representation type written for each entity
+ */
+public class ServerSentEventOutput<E, R> implements StreamingOutput {
+    private static final ObjectMapper MAPPER = NykreditJsonProvider.configure(new HALMapper())
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final Duration HEARTBEAT = Duration.ofSeconds(15);
+
+    private final long watermark;
+    private final LongFunction<List<E>> source;
+    private final ToLongFunction<E> id;
+    private final Function<E, R> mapper;
+    private final Supplier<Future<?>> signal;
+    private final Duration duration;
+
+    /**
+     * @param watermark the watermark to start the stream after
+     * @param source    reads the elements following a watermark
+     * @param id        the watermark of an element
+     * @param mapper    maps an entity to its representation
+     * @param signal    delivers a signal that completes when new elements may follow, it is asked for before the
+     *                  source is read
+     * @param duration  the time the stream lasts
+     */
+    public ServerSentEventOutput(long watermark, LongFunction<List<E>> source, ToLongFunction<E> id, Function<E, R> mapper,
+                                 Supplier<Future<?>> signal, Duration duration) {
+        this.watermark = watermark;
+        this.source = source;
+        this.id = id;
+        this.mapper = mapper;
+        this.signal = signal;
+        this.duration = duration;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+        long deadline = System.nanoTime() + duration.toNanos();
+        long after = watermark;
+        while (System.nanoTime() < deadline) {
+            Future<?> next = signal.get();
+            List<E> elements = source.apply(after);
+            for (E element : elements) {
+                after = id.applyAsLong(element);
+                writer.write("id: " + after + "\n");
+                writer.write("data: " + MAPPER.writeValueAsString(mapper.apply(element)) + "\n\n");
+            }
+            writer.flush();
+            if (elements.isEmpty() && !await(next, Math.min(HEARTBEAT.toNanos(), deadline - System.nanoTime()))) {
+                writer.write(": heartbeat\n\n");
+                writer.flush();
+            }
+            next.cancel(false);
+        }
+    }
+
+    /**
+     * @return true if the signal completed within the timeout
+     */
+    private static boolean await(Future<?> signal, long timeout) throws IOException {
+        try {
+            signal.get(Math.max(0, timeout), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for events", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed while waiting for events", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,24 @@
+-- Adds the summary of the transactions to the accounts, i.e., the balance, the number of transactions and the time of
+-- the latest transaction, and computes it for the existing accounts from their transactions.
+--
+-- Run the migration before deploying the version of the service that maintains the summary, the schema update done
+-- by the service cannot add the columns that must not be null to a table that holds accounts. The migration must run
+-- before any transactions are archived, see TransactionArchiver, as the summary is computed from the transactions
+-- held in BANK_TRANSACTION. The time of the latest transaction is taken as the time the transaction was last
+-- modified, which is the time it was added unless it has been updated since.
+--
+-- On DB2 the table must be reorganized after the columns are added, i.e., CALL SYSPROC.ADMIN_CMD('REORG TABLE
+-- BANK_ACCOUNT') before the update.
+
+ALTER TABLE BANK_ACCOUNT ADD COLUMN BALANCE DECIMAL(17,2) DEFAULT 0 NOT NULL;
+ALTER TABLE BANK_ACCOUNT ADD COLUMN TX_COUNT BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE BANK_ACCOUNT ADD COLUMN LAST_TX_TS TIMESTAMP;
+
+UPDATE BANK_ACCOUNT a SET
+    BALANCE = (SELECT COALESCE(SUM(t.AMOUNT), 0) FROM BANK_TRANSACTION t WHERE t.FK_ACCOUNT_TID = a.TID),
+    TX_COUNT = (SELECT COUNT(*) FROM BANK_TRANSACTION t WHERE t.FK_ACCOUNT_TID = a.TID),
+    LAST_TX_TS = (SELECT MAX(t.LAST_MODIFIED_TS) FROM BANK_TRANSACTION t WHERE t.FK_ACCOUNT_TID = a.TID);
+
+CREATE INDEX IDX_BANK_ACCOUNT_BALANCE ON BANK_ACCOUNT (BALANCE, REG_NO, ACCOUNT_NO);
+CREATE INDEX IDX_BANK_ACCOUNT_TX_COUNT ON BANK_ACCOUNT (TX_COUNT, REG_NO, ACCOUNT_NO);
+CREATE INDEX IDX_BANK_ACCOUNT_LAST_TX_TS ON BANK_ACCOUNT (LAST_TX_TS, REG_NO, ACCOUNT_NO);
@@ -0,0 +1,30 @@
+-- Adds the month partition key to the transactions, see MonthPartition, and computes it for the existing transactions
+-- from the time they were stored.
+--
+-- Run the migration before deploying the version of the service that assigns the partition key, the schema update
+-- done by the service cannot add a column that must not be null to a table that holds transactions. The key is the
+-- year and month of LAST_MODIFIED_TS written as yyyymm, which is the month in UTC given that the database stores the
+-- timestamps in UTC. The index leading with the account and the partition key lets an interval query read only the
+-- months that overlap the interval.
+--
+-- On DB2 the table must be reorganized after the column is added and after it is made not null, i.e.,
+-- CALL SYSPROC.ADMIN_CMD('REORG TABLE BANK_TRANSACTION') following the ALTER TABLE statements.
+--
+-- On DB2 the table is range partitioned on the key by moving it online to a partitioned table, which must be done
+-- once the key is populated, e.g., for the months from January 2016 to December 2026:
+--
+--   CALL SYSPROC.ADMIN_MOVE_TABLE(CURRENT SCHEMA, 'BANK_TRANSACTION', '', '', '', '', '',
+--       'PARTITION BY RANGE (PARTITION_MONTH) (STARTING 201601 ENDING 201612 EVERY 1, ...,
+--        STARTING 202601 ENDING 202612 EVERY 1)', '', '', 'MOVE');
+--
+-- and a partition is added ahead of each new year by ALTER TABLE BANK_TRANSACTION ADD PARTITION STARTING 202701
+-- ENDING 202701, and so on for every month of the year. Without the partitioning the index below still confines an
+-- interval query to the months it overlaps.
+
+ALTER TABLE BANK_TRANSACTION ADD COLUMN PARTITION_MONTH INTEGER;
+
+UPDATE BANK_TRANSACTION SET PARTITION_MONTH = YEAR(LAST_MODIFIED_TS) * 100 + MONTH(LAST_MODIFIED_TS);
+
+ALTER TABLE BANK_TRANSACTION ALTER COLUMN PARTITION_MONTH SET NOT NULL;
+
+CREATE INDEX IDX_BANK_TRANSACTION_PARTITION ON BANK_TRANSACTION (FK_ACCOUNT_TID, PARTITION_MONTH, LAST_MODIFIED_TS, SID);
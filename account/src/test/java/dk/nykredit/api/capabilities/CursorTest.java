@@ -0,0 +1,41 @@
+package dk.nykredit.api.capabilities;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CursorTest {
+
+    @Test
+    public void testNoCursor() {
+        assertEquals(Optional.empty(), Cursor.getCursor(null));
+        assertEquals(Optional.empty(), Cursor.getCursor(""));
+    }
+
+    @Test
+    public void testNonValidInput() {
+        assertEquals(Optional.empty(), Cursor.getCursor("not a token"));
+        assertEquals(Optional.empty(), Cursor.getCursor("YWJj"));
+        assertEquals(Optional.empty(), Cursor.getCursor("%27%20or%201=1"));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Instant time = Instant.ofEpochSecond(1476449846L, 123000000);
+        Optional<Cursor> cursor = Cursor.getCursor(Cursor.after(time, "e0a1c7f2-5d1b-4b2b-9c0b-3b1c3a1f5e9a").getToken());
+        assertTrue(cursor.isPresent());
+        assertTrue(cursor.get().isAfter());
+        assertEquals(time, cursor.get().getTime());
+        assertEquals("e0a1c7f2-5d1b-4b2b-9c0b-3b1c3a1f5e9a", cursor.get().getId());
+
+        cursor = Cursor.getCursor(Cursor.before(time, "human-readable-sid").getToken());
+        assertTrue(cursor.isPresent());
+        assertFalse(cursor.get().isAfter());
+        assertEquals("human-readable-sid", cursor.get().getId());
+    }
+}
@@ -3,22 +3,34 @@ package dk.nykredit.bank.account.exposure.rs;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
 import java.net.URI;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import dk.nykredit.bank.account.exposure.rs.model.AccountRepresentation;
 import dk.nykredit.bank.account.exposure.rs.model.AccountUpdateRepresentation;
 import dk.nykredit.bank.account.exposure.rs.model.AccountsRepresentation;
 import dk.nykredit.bank.account.model.Account;
+import dk.nykredit.bank.account.model.AccountOverview;
 import dk.nykredit.bank.account.persistence.AccountArchivist;
 import dk.nykredit.nic.test.rs.UriBuilderFactory;
 import org.junit.Test;
@@ -43,16 +55,47 @@ public class AccountServiceExposureTest {
         UriInfo ui = mock(UriInfo.class);
         when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
 
-        when(archivist.listAccounts())
-            .thenReturn(Arrays.asList(new Account("5479", "1", "Checking account"), new Account("5479", "2", "Savings account")));
+        when(archivist.listAccounts(Collections.emptyList(), Collections.emptyList()))
+            .thenReturn(Arrays.asList(new AccountOverview("5479", "1", "Checking account", BigDecimal.ZERO, 0, null),
+                new AccountOverview("5479", "2", "Savings account", BigDecimal.ZERO, 0, null)));
 
-        Response response = service.list(ui, request);
+        Response response = service.list("", "", ui, request);
         AccountsRepresentation accounts = (AccountsRepresentation) response.getEntity();
 
         assertEquals(2, accounts.getAccounts().size());
         assertEquals("http://mock/accounts", accounts.getSelf().getHref());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExport() throws Exception {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+
+        doAnswer(invocation -> {
+            Consumer<AccountOverview> consumer = invocation.getArgument(2);
+            consumer.accept(new AccountOverview("5479", "1", "Checking account", BigDecimal.ZERO, 0, null));
+            consumer.accept(new AccountOverview("5479", "2", "Savings account", new BigDecimal("1234.42"), 2,
+                new Date(1476449846000L)));
+            return null;
+        }).when(archivist).streamAccounts(eq(Collections.emptyList()), eq(Collections.emptyList()), any(Consumer.class));
+
+        Response response = service.exportServiceGeneration1Version1("", "", ui);
+        assertEquals("accountexport", response.getMediaType().getParameters().get("concept"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+        JsonNode json = new ObjectMapper().readTree(output.toByteArray());
+
+        assertEquals("http://mock/accounts", json.at("/_links/self/href").asText());
+        assertEquals(2, json.at("/_embedded/accounts").size());
+        assertEquals("2", json.at("/_embedded/accounts/1/accountNo").asText());
+        assertEquals("1234.42", json.at("/_embedded/accounts/1/balance").asText());
+        assertEquals(2, json.at("/_embedded/accounts/1/transactionCount").asInt());
+        assertEquals("2016-10-14T12:57:26Z", json.at("/_embedded/accounts/1/lastTransactionTime").asText());
+        assertEquals("http://mock/accounts/5479-2", json.at("/_embedded/accounts/1/_links/self/href").asText());
+    }
+
     @Test
     public void testGet() {
         Request request = mock(Request.class);
@@ -60,7 +103,7 @@ public class AccountServiceExposureTest {
         UriInfo ui = mock(UriInfo.class);
         when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
 
-        when(archivist.getAccount("5479", "1234")).thenReturn(new Account("5479", "1234", "Savings account"));
+        when(archivist.getAccountWithTransactions("5479", "1234")).thenReturn(new Account("5479", "1234", "Savings account"));
 
         AccountRepresentation account = (AccountRepresentation) service.get("5479", "1234", ui, request).getEntity();
 
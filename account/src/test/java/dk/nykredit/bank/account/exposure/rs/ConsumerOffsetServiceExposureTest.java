@@ -0,0 +1,112 @@
+package dk.nykredit.bank.account.exposure.rs;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+import dk.nykredit.bank.account.exposure.rs.model.ConsumerOffsetRepresentation;
+import dk.nykredit.bank.account.exposure.rs.model.ConsumerOffsetUpdateRepresentation;
+import dk.nykredit.bank.account.exposure.rs.model.ConsumerOffsetsRepresentation;
+import dk.nykredit.bank.account.model.ConsumerOffset;
+import dk.nykredit.bank.account.persistence.AccountArchivist;
+import dk.nykredit.nic.test.rs.UriBuilderFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class ConsumerOffsetServiceExposureTest {
+
+    @Mock
+    AccountArchivist archivist;
+
+    @InjectMocks
+    ConsumerOffsetServiceExposure service;
+
+    @Test
+    public void testGetLinksToFollowingPage() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        Request request = mock(Request.class);
+        when(archivist.getConsumerOffset("statements", "5479-123456"))
+                .thenReturn(new ConsumerOffset("statements", "5479-123456", 42L));
+        when(archivist.getLag(Optional.of("5479-123456"), 42L)).thenReturn(3L);
+
+        ConsumerOffsetRepresentation offset = (ConsumerOffsetRepresentation) service.get("statements", "5479-123456", ui, request)
+                .getEntity();
+
+        assertEquals("42", offset.getWatermark());
+        assertEquals("3", offset.getLag());
+        assertEquals("http://mock/account-events-consumers/statements/5479-123456", offset.getSelf().getHref());
+        assertEquals("http://mock/account-events/5479-123456/pages/42", offset.getNext().getHref());
+    }
+
+    @Test
+    public void testListOrderedByLag() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        Request request = mock(Request.class);
+        when(archivist.getConsumerOffsets(Optional.empty())).thenReturn(Arrays.asList(
+                new ConsumerOffset("ledger", ConsumerOffset.ALL, 90L),
+                new ConsumerOffset("statements", "5479-123456", 42L)));
+        when(archivist.getLag(Optional.empty(), 90L)).thenReturn(10L);
+        when(archivist.getLag(Optional.of("5479-123456"), 42L)).thenReturn(200L);
+
+        ConsumerOffsetsRepresentation offsets = (ConsumerOffsetsRepresentation) service.list(ui, request).getEntity();
+
+        List<ConsumerOffsetRepresentation> ordered = offsets.getOffsets().stream().collect(Collectors.toList());
+        assertEquals(Arrays.asList("statements", "ledger"),
+                ordered.stream().map(ConsumerOffsetRepresentation::getConsumer).collect(Collectors.toList()));
+        assertEquals("http://mock/account-events/pages/90", ordered.get(1).getNext().getHref());
+        assertEquals("http://mock/account-events-consumers", offsets.getSelf().getHref());
+    }
+
+    @Test
+    public void testCommit() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        Request request = mock(Request.class);
+        ConsumerOffsetUpdateRepresentation update = mock(ConsumerOffsetUpdateRepresentation.class);
+        when(update.getWatermark()).thenReturn("50");
+        when(update.getPrevious()).thenReturn("42");
+        when(archivist.commitConsumerOffset("statements", "5479-123456", 42L, 50L)).thenReturn(true);
+        when(archivist.getConsumerOffset("statements", "5479-123456"))
+                .thenReturn(new ConsumerOffset("statements", "5479-123456", 50L));
+
+        Response response = service.commit("statements", "5479-123456", update, ui, request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("50", ((ConsumerOffsetRepresentation) response.getEntity()).getWatermark());
+        verify(archivist).commitConsumerOffset("statements", "5479-123456", 42L, 50L);
+    }
+
+    @Test
+    public void testCommitConflict() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        Request request = mock(Request.class);
+        ConsumerOffsetUpdateRepresentation update = mock(ConsumerOffsetUpdateRepresentation.class);
+        when(update.getWatermark()).thenReturn("50");
+        when(archivist.commitConsumerOffset("statements", "5479-123456", 0L, 50L)).thenReturn(false);
+        when(archivist.getConsumerOffset("statements", "5479-123456"))
+                .thenReturn(new ConsumerOffset("statements", "5479-123456", 45L));
+
+        Response response = service.commit("statements", "5479-123456", update, ui, request);
+
+        assertEquals(409, response.getStatus());
+        assertEquals("45", ((ConsumerOffsetRepresentation) response.getEntity()).getWatermark());
+    }
+}
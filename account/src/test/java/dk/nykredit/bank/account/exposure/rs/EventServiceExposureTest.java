@@ -1,27 +1,58 @@
 package dk.nykredit.bank.account.exposure.rs;
 
 
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import dk.nykredit.bank.account.exposure.rs.model.EventRepresentation;
+import dk.nykredit.bank.account.exposure.rs.model.EventSnapshotRepresentation;
 import dk.nykredit.bank.account.exposure.rs.model.EventsRepresentation;
+import dk.nykredit.bank.account.model.Account;
 import dk.nykredit.bank.account.model.Event;
+import dk.nykredit.bank.account.model.EventOverview;
+import dk.nykredit.bank.account.model.EventSnapshot;
 import dk.nykredit.bank.account.persistence.AccountArchivist;
+import dk.nykredit.bank.account.persistence.EventNotifier;
 import dk.nykredit.nic.test.rs.UriBuilderFactory;
 import dk.nykredit.time.CurrentTime;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.Silent.class)
@@ -30,6 +61,9 @@ public class EventServiceExposureTest {
     @Mock
     AccountArchivist archivist;
 
+    @Mock
+    EventNotifier notifier;
+
     @InjectMocks
     EventServiceExposure service;
 
@@ -46,18 +80,17 @@ public class EventServiceExposureTest {
         when(event.getOrigin()).thenReturn(new URI("/account-events/5479-123456/eventSID"));
         when(event.getSequence()).thenReturn(1234567L);
 
-        List<Event> eventList = new ArrayList<>(3);
-        eventList.add(new Event(new URI("accounts/default/eventSID"),
-                "default", CurrentTime.now()));
-        eventList.add(new Event(new URI("accounts/5479-123456/cards"),
-                "5479-123456-other", CurrentTime.now()));
-        eventList.add(new Event(new URI("accounts/5479-123456/transactions/mockedTxSID"),
-                "5479-123456", CurrentTime.nowAsZonedDateTime().minusDays(1).toInstant()));
+        List<EventOverview> eventList = new ArrayList<>(3);
+        eventList.add(new EventOverview("eventSID1", 1L, now(), "default", "accounts/default/eventSID"));
+        eventList.add(new EventOverview("eventSID2", 2L, now(), "5479-123456-other", "accounts/5479-123456/cards"));
+        eventList.add(new EventOverview("eventSID3", 3L,
+                new Timestamp(CurrentTime.nowAsZonedDateTime().minusDays(1).toInstant().toEpochMilli()),
+                "5479-123456", "accounts/5479-123456/transactions/mockedTxSID"));
 
-        when(archivist.findEvents(Optional.empty()))
+        when(archivist.findEvents(Optional.empty(), Collections.emptyList(), Collections.emptyList()))
                 .thenReturn(eventList);
 
-        Response response = service.listAll("", ui, request);
+        Response response = service.listAll("", "", "", null, null, ui, request);
         EventsRepresentation events = (EventsRepresentation) response.getEntity();
 
         assertEquals(3, events.getEvents().size());
@@ -100,17 +133,132 @@ public class EventServiceExposureTest {
         when(event.getOrigin()).thenReturn(new URI("account-events/5479-123456/eventSID"));
         when(event.getSequence()).thenReturn(1234567L);
 
-        when(archivist.getEventsForCategory(Event.getCategory("5479", "123456"), Optional.empty()))
-                .thenReturn(Collections.singletonList(new Event(new URI("account-events/5479-1234567/eventSID"),
-                        "5479-123456", CurrentTime.now())));
+        when(archivist.getEventsForCategory(Event.getCategory("5479", "123456"), Optional.empty(), Collections.emptyList(),
+                Collections.emptyList()))
+                .thenReturn(Collections.singletonList(new EventOverview("eventSID", 1L, now(), "5479-123456",
+                        "account-events/5479-1234567/eventSID")));
 
-        Response response = service.getByCategory("5479-123456", "", ui, request);
+        Response response = service.getByCategory("5479-123456", "", "", "", null, null, ui, request);
         EventsRepresentation events = (EventsRepresentation) response.getEntity();
 
         assertEquals(1, events.getEvents().size());
         assertEquals("http://mock/account-events", events.getSelf().getHref());
     }
 
+    @Test
+    public void testFollowFeedFromWatermark() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        when(ui.getRequestUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock/account-events?after=41&limit=2")));
+        Request request = mock(Request.class);
+
+        when(archivist.getEventsAfter(41L, 2)).thenReturn(Arrays.asList(
+                new EventOverview("eventSID1", 42L, now(), "default", "accounts/default/eventSID1"),
+                new EventOverview("eventSID2", 43L, now(), "default", "accounts/default/eventSID2")));
+
+        Response response = service.listAll(null, null, null, "41", "2", ui, request);
+        EventsRepresentation events = (EventsRepresentation) response.getEntity();
+
+        assertEquals(2, events.getEvents().size());
+        assertEquals("http://mock/account-events?limit=2&after=43", events.getNext().getHref());
+        verify(archivist, never()).findEvents(any(), any(), any());
+    }
+
+    @Test
+    public void testFollowCategoryFeedWithoutNewEvents() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        when(ui.getRequestUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock/account-events/5479-123456?after=7")));
+        Request request = mock(Request.class);
+
+        when(archivist.getEventsForCategoryAfter("5479-123456", 7L, 100)).thenReturn(Collections.emptyList());
+
+        Response response = service.getByCategory("5479-123456", null, null, null, "7", null, ui, request);
+        EventsRepresentation events = (EventsRepresentation) response.getEntity();
+
+        assertEquals(0, events.getEvents().size());
+        assertEquals("http://mock/account-events/5479-123456?after=7", events.getNext().getHref());
+    }
+
+    @Test
+    public void testPollRespondsWithNewEvents() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        when(ui.getRequestUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock/account-events?after=41")));
+        CompletableFuture<Void> signal = new CompletableFuture<>();
+        when(notifier.next()).thenReturn(signal);
+        when(archivist.getEventsAfter(41L, 100)).thenReturn(Collections.singletonList(
+                new EventOverview("eventSID1", 42L, now(), "default", "accounts/default/eventSID1")));
+        AsyncResponse response = mock(AsyncResponse.class);
+
+        service.pollAllSG1V1("41", null, null, ui, mock(Request.class), response);
+
+        ArgumentCaptor<Response> resumed = ArgumentCaptor.forClass(Response.class);
+        verify(response).resume(resumed.capture());
+        assertEquals(1, ((EventsRepresentation) resumed.getValue().getEntity()).getEvents().size());
+        verify(response, never()).setTimeout(anyLong(), any());
+        assertTrue(signal.isCancelled());
+    }
+
+    @Test
+    public void testPollWaitsForSignal() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        when(ui.getRequestUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock/account-events/5479-123456?after=41")));
+        CompletableFuture<Void> signal = new CompletableFuture<>();
+        when(notifier.next("5479-123456")).thenReturn(signal);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(notifier).dispatch(any(Runnable.class));
+        when(archivist.getEventsForCategoryAfter("5479-123456", 41L, 100))
+                .thenReturn(Collections.emptyList())
+                .thenReturn(Collections.singletonList(new EventOverview("eventSID1", 42L, now(), "5479-123456",
+                        "accounts/5479-123456/eventSID1")));
+        AsyncResponse response = mock(AsyncResponse.class);
+
+        service.pollByCategorySG1V1("5479-123456", "41", null, "10", ui, mock(Request.class), response);
+
+        verify(response).setTimeout(10, TimeUnit.SECONDS);
+        verify(response).setTimeoutHandler(any());
+        verify(response, never()).resume(any(Response.class));
+
+        signal.complete(null);
+
+        ArgumentCaptor<Response> resumed = ArgumentCaptor.forClass(Response.class);
+        verify(response).resume(resumed.capture());
+        EventsRepresentation events = (EventsRepresentation) resumed.getValue().getEntity();
+        assertEquals(1, events.getEvents().size());
+        assertEquals("http://mock/account-events/5479-123456?after=42", events.getNext().getHref());
+        assertEquals("http://mock/account-events/5479-123456/snapshot", events.getSnapshot().getHref());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExportEventsByCategory() throws Exception {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+
+        doAnswer(invocation -> {
+            Consumer<EventOverview> consumer = invocation.getArgument(4);
+            consumer.accept(new EventOverview("eventSID1", 1L, now(), "5479-123456", "accounts/5479-123456/transactions/txSID1"));
+            consumer.accept(new EventOverview("eventSID2", 2L, now(), "5479-123456", "accounts/5479-123456/transactions/txSID2"));
+            return null;
+        }).when(archivist).streamEventsForCategory(eq("5479-123456"), eq(Optional.empty()), eq(Collections.emptyList()),
+                eq(Collections.emptyList()), any(Consumer.class));
+
+        Response response = service.exportByCategorySG1V1("5479-123456", "", "", "", ui);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(output);
+        JsonNode json = new ObjectMapper().readTree(output.toByteArray());
+
+        assertEquals("http://mock/account-events/5479-123456", json.at("/_links/self/href").asText());
+        assertEquals(2, json.at("/_embedded/events").size());
+        assertEquals("http://mock/accounts/5479-123456/transactions/txSID2",
+                json.at("/_embedded/events/1/_links/origin/href").asText());
+    }
+
     @Test
     public void testGetEvent() throws URISyntaxException {
         UriInfo ui = mock(UriInfo.class);
@@ -136,4 +284,129 @@ public class EventServiceExposureTest {
 
     }
 
+    @Test
+    public void testFullSettledPageIsImmutable() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        Request request = mock(Request.class);
+
+        long settled = sequencedAt(CurrentTime.now().minusSeconds(3600));
+        when(archivist.getEventsAfter(settled, 100)).thenReturn(fullPage(settled, now()));
+
+        Response response = service.getPage(settled, ui, request);
+        EventsRepresentation events = (EventsRepresentation) response.getEntity();
+
+        assertEquals(100, events.getEvents().size());
+        assertEquals("http://mock/account-events/pages/" + settled, events.getSelf().getHref());
+        assertEquals("http://mock/account-events/pages/" + (settled + 100), events.getNext().getHref());
+        assertEquals(365 * 24 * 60 * 60, ((CacheControl) response.getMetadata().getFirst("Cache-Control")).getMaxAge());
+        assertEquals(new EntityTag(settled + "-" + (settled + 100) + "-100"), response.getEntityTag());
+    }
+
+    @Test
+    public void testFullPageSettlesOnSequence() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        Request request = mock(Request.class);
+
+        long recent = sequencedAt(CurrentTime.now().minusSeconds(60));
+        Timestamp written = new Timestamp(CurrentTime.now().minusSeconds(3600).toEpochMilli());
+        when(archivist.getEventsAfter(recent, 100)).thenReturn(fullPage(recent, written));
+
+        Response response = service.getPage(recent, ui, request);
+
+        assertEquals(5, ((CacheControl) response.getMetadata().getFirst("Cache-Control")).getMaxAge());
+    }
+
+    @Test
+    public void testHeadPageIsCachedBriefly() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        Request request = mock(Request.class);
+
+        when(archivist.getEventsForCategoryAfter("5479-123456", 100L, 100)).thenReturn(Collections.singletonList(
+                new EventOverview("eventSID101", 101L, now(), "5479-123456", "accounts/5479-123456/eventSID101")));
+
+        Response response = service.getCategoryPage("5479-123456", 100L, ui, request);
+        EventsRepresentation events = (EventsRepresentation) response.getEntity();
+
+        assertEquals(1, events.getEvents().size());
+        assertEquals("http://mock/account-events/5479-123456/pages/100", events.getSelf().getHref());
+        assertEquals("http://mock/account-events/5479-123456/pages/101", events.getNext().getHref());
+        assertEquals("http://mock/account-events/5479-123456/snapshot", events.getSnapshot().getHref());
+        assertEquals(5, ((CacheControl) response.getMetadata().getFirst("Cache-Control")).getMaxAge());
+        assertEquals(new EntityTag("100-101-1"), response.getEntityTag());
+    }
+
+    @Test
+    public void testStreamBeyondCapIsRefused() {
+        UriInfo ui = mock(UriInfo.class);
+        when(notifier.openStream()).thenReturn(false);
+
+        try {
+            service.streamByCategory("5479-123456", null, null, ui);
+            fail("Should have thrown exception before this step");
+        } catch (WebApplicationException e) {
+            assertEquals(503, e.getResponse().getStatus());
+            assertEquals("30", e.getResponse().getHeaderString("Retry-After"));
+        }
+        verify(archivist, never()).getEventsForCategoryAfter(anyString(), anyLong(), anyInt());
+    }
+
+    @Test
+    public void testPrunedPageIsGone() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        Request request = mock(Request.class);
+        when(archivist.getPrunedSequence(Optional.of("5479-123456"))).thenReturn(150L);
+
+        try {
+            service.getCategoryPage("5479-123456", 100L, ui, request);
+            fail("Should have thrown exception before this step");
+        } catch (WebApplicationException e) {
+            assertEquals(410, e.getResponse().getStatus());
+            assertEquals(URI.create("http://mock/account-events/5479-123456/snapshot"),
+                    e.getResponse().getLink("snapshot").getUri());
+        }
+        verify(archivist, never()).getEventsForCategoryAfter(anyString(), anyLong(), anyInt());
+
+        when(archivist.getEventsForCategoryAfter("5479-123456", 150L, 100)).thenReturn(Collections.emptyList());
+        assertEquals(200, service.getCategoryPage("5479-123456", 150L, ui, request).getStatus());
+    }
+
+    @Test
+    public void testSnapshot() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        Request request = mock(Request.class);
+        Account account = new Account("5479", "123456", "Savings");
+        account.addTransaction("salary", new BigDecimal("100.00"));
+        when(archivist.getSnapshot("5479-123456")).thenReturn(new EventSnapshot("5479-123456", 42L, account));
+
+        Response response = service.getSnapshot("5479-123456", ui, request);
+        EventSnapshotRepresentation snapshot = (EventSnapshotRepresentation) response.getEntity();
+
+        assertEquals("42", snapshot.getSequence());
+        assertEquals("100.00", snapshot.getBalance());
+        assertEquals("1", snapshot.getTransactionCount());
+        assertEquals("http://mock/account-events/5479-123456/snapshot", snapshot.getSelf().getHref());
+        assertEquals("http://mock/accounts/5479-123456", snapshot.getAccount().getHref());
+        assertEquals("http://mock/account-events/5479-123456/pages/42", snapshot.getNext().getHref());
+    }
+
+    private static Timestamp now() {
+        return new Timestamp(CurrentTime.now().toEpochMilli());
+    }
+
+    private static long sequencedAt(Instant time) {
+        return time.toEpochMilli() << 20;
+    }
+
+    private static List<EventOverview> fullPage(long after, Timestamp time) {
+        List<EventOverview> page = new ArrayList<>();
+        for (long sequence = after + 1; sequence <= after + 100; sequence++) {
+            page.add(new EventOverview("eventSID" + sequence, sequence, time, "default", "accounts/default/eventSID" + sequence));
+        }
+        return page;
+    }
 }
@@ -49,7 +49,7 @@ public class ReconciledTransactionServiceExposureTest {
         ReconciledTransaction rtx = new ReconciledTransaction(true,"This is a note", tx);
         when(account.getReconciledTransactions())
                 .thenReturn(new HashSet<>(Collections.singletonList(rtx)));
-        when(archivist.getAccount("5479", "123456")).thenReturn(account);
+        when(archivist.getAccountWithReconciledTransactions("5479", "123456")).thenReturn(account);
 
         Response response = service.list("5479", "123456", ui, request);
         ReconciledTransactionsRepresentation reconciledTxs = (ReconciledTransactionsRepresentation) response.getEntity();
@@ -0,0 +1,168 @@
+package dk.nykredit.bank.account.exposure.rs;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Optional;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+
+import dk.nykredit.bank.account.exposure.rs.model.SubscriptionRepresentation;
+import dk.nykredit.bank.account.exposure.rs.model.SubscriptionUpdateRepresentation;
+import dk.nykredit.bank.account.model.ConsumerOffset;
+import dk.nykredit.bank.account.model.Subscription;
+import dk.nykredit.bank.account.persistence.AccountArchivist;
+import dk.nykredit.nic.test.rs.UriBuilderFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class SubscriptionServiceExposureTest {
+
+    @Mock
+    AccountArchivist archivist;
+
+    @InjectMocks
+    SubscriptionServiceExposure service;
+
+    @Test
+    public void testRegisterStartsAtEndOfFeed() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        when(ui.getPath()).thenReturn("account-events-subscriptions/statements");
+        Request request = mock(Request.class);
+        SubscriptionUpdateRepresentation update = mock(SubscriptionUpdateRepresentation.class);
+        when(update.getEndpoint()).thenReturn("https://statements.example.com/hook");
+        when(archivist.findSubscription("statements")).thenReturn(Optional.empty());
+        when(archivist.getLastSequence(Optional.empty())).thenReturn(42L);
+        when(archivist.commitConsumerOffset("statements", ConsumerOffset.ALL, 0L, 42L)).thenReturn(true);
+
+        Response response = service.createOrUpdate("statements", update, ui, request);
+
+        assertEquals(201, response.getStatus());
+        SubscriptionRepresentation subscription = (SubscriptionRepresentation) response.getEntity();
+        assertEquals(ConsumerOffset.ALL, subscription.getCategory());
+        assertEquals("http://mock/account-events-subscriptions/statements", subscription.getSelf().getHref());
+        assertEquals("http://mock/account-events-consumers/statements/all", subscription.getOffset().getHref());
+        assertEquals("http://mock/account-events-subscriptions/statements/dead-letters", subscription.getDeadLetters().getHref());
+        verify(archivist).commitConsumerOffset("statements", ConsumerOffset.ALL, 0L, 42L);
+        ArgumentCaptor<Subscription> saved = ArgumentCaptor.forClass(Subscription.class);
+        verify(archivist).save(saved.capture());
+        assertEquals(URI.create("https://statements.example.com/hook"), saved.getValue().getEndpoint());
+    }
+
+    @Test
+    public void testUpdateChangesEndpoint() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        Request request = mock(Request.class);
+        SubscriptionUpdateRepresentation update = mock(SubscriptionUpdateRepresentation.class);
+        when(update.getEndpoint()).thenReturn("https://statements.example.com/new-hook");
+        when(update.getCategory()).thenReturn("5479-123456");
+        Subscription existing = new Subscription("statements", "5479-123456", URI.create("https://statements.example.com/hook"));
+        when(archivist.findSubscription("statements")).thenReturn(Optional.of(existing));
+
+        Response response = service.createOrUpdate("statements", update, ui, request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(URI.create("https://statements.example.com/new-hook"), existing.getEndpoint());
+        verify(archivist, never()).commitConsumerOffset(anyString(), anyString(), anyLong(), anyLong());
+    }
+
+    @Test(expected = WebApplicationException.class)
+    public void testCategoryCannotBeChanged() {
+        UriInfo ui = mock(UriInfo.class);
+        Request request = mock(Request.class);
+        SubscriptionUpdateRepresentation update = mock(SubscriptionUpdateRepresentation.class);
+        when(update.getEndpoint()).thenReturn("https://statements.example.com/hook");
+        when(update.getCategory()).thenReturn("5479-654321");
+        when(archivist.findSubscription("statements")).thenReturn(Optional.of(
+                new Subscription("statements", "5479-123456", URI.create("https://statements.example.com/hook"))));
+
+        service.createOrUpdate("statements", update, ui, request);
+        fail("Should have thrown exception before this step");
+    }
+
+    @Test
+    public void testNameOfConsumerIsRejected() {
+        UriInfo ui = mock(UriInfo.class);
+        Request request = mock(Request.class);
+        SubscriptionUpdateRepresentation update = mock(SubscriptionUpdateRepresentation.class);
+        when(update.getEndpoint()).thenReturn("https://statements.example.com/hook");
+        when(archivist.findSubscription("ledger")).thenReturn(Optional.empty());
+        when(archivist.getConsumerOffsets(Optional.of("ledger")))
+                .thenReturn(Collections.singletonList(new ConsumerOffset("ledger", ConsumerOffset.ALL, 90L)));
+
+        try {
+            service.createOrUpdate("ledger", update, ui, request);
+            fail("Should have thrown exception before this step");
+        } catch (WebApplicationException e) {
+            assertEquals(409, e.getResponse().getStatus());
+        }
+        verify(archivist, never()).commitConsumerOffset(anyString(), anyString(), anyLong(), anyLong());
+        verify(archivist, never()).save(any(Subscription.class));
+    }
+
+    @Test
+    public void testConcurrentRegistrationIsRejected() {
+        UriInfo ui = mock(UriInfo.class);
+        Request request = mock(Request.class);
+        SubscriptionUpdateRepresentation update = mock(SubscriptionUpdateRepresentation.class);
+        when(update.getEndpoint()).thenReturn("https://statements.example.com/hook");
+        when(archivist.findSubscription("statements")).thenReturn(Optional.empty());
+        when(archivist.commitConsumerOffset(anyString(), anyString(), anyLong(), anyLong())).thenReturn(false);
+
+        try {
+            service.createOrUpdate("statements", update, ui, request);
+            fail("Should have thrown exception before this step");
+        } catch (WebApplicationException e) {
+            assertEquals(409, e.getResponse().getStatus());
+        }
+        verify(archivist, never()).save(any(Subscription.class));
+    }
+
+    @Test
+    public void testMalformedEndpointIsBadRequest() {
+        UriInfo ui = mock(UriInfo.class);
+        Request request = mock(Request.class);
+        SubscriptionUpdateRepresentation update = mock(SubscriptionUpdateRepresentation.class);
+        when(update.getEndpoint()).thenReturn("https://statements.example.com/my hook");
+        when(archivist.findSubscription("statements")).thenReturn(Optional.empty());
+
+        try {
+            service.createOrUpdate("statements", update, ui, request);
+            fail("Should have thrown exception before this step");
+        } catch (WebApplicationException e) {
+            assertEquals(400, e.getResponse().getStatus());
+        }
+        verify(archivist, never()).save(any(Subscription.class));
+    }
+
+    @Test
+    public void testRemoveUnknown() {
+        when(archivist.removeSubscription("unknown")).thenReturn(false);
+        try {
+            service.remove("unknown");
+            fail("Should have thrown exception before this step");
+        } catch (WebApplicationException e) {
+            assertEquals(404, e.getResponse().getStatus());
+        }
+        verify(archivist, never()).save(any(Subscription.class));
+    }
+}
@@ -1,22 +1,31 @@
 package dk.nykredit.bank.account.exposure.rs;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.math.BigDecimal;
 import java.net.URI;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.*;
 
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
+import dk.nykredit.api.capabilities.Cursor;
 import dk.nykredit.api.capabilities.Sort;
 import dk.nykredit.bank.account.exposure.rs.model.TransactionRepresentation;
 import dk.nykredit.bank.account.exposure.rs.model.TransactionsRepresentation;
 import dk.nykredit.bank.account.model.Account;
 import dk.nykredit.bank.account.model.Transaction;
+import dk.nykredit.bank.account.model.TransactionOverview;
 import dk.nykredit.bank.account.persistence.AccountArchivist;
 import dk.nykredit.nic.test.rs.UriBuilderFactory;
 import org.junit.Test;
@@ -41,18 +50,46 @@ public class TransactionServiceExposureTest {
 
         Request request = mock(Request.class);
 
-        Account account = mock(Account.class);
-        when(account.getRegNo()).thenReturn("5479");
-        when(account.getAccountNo()).thenReturn("123456");
         List<Sort> sort = Collections.emptyList();
-        when(archivist.getTransactions("5479", "123456", Optional.empty(), Optional.empty(), sort)).thenReturn(
-                Collections.singletonList(new Transaction(account, new BigDecimal("1234.42"), "description")));
+        when(archivist.getTransactions("5479", "123456", Collections.emptyList(), Optional.empty(), Optional.empty(), sort, Optional.empty())).thenReturn(
+                Collections.singletonList(new TransactionOverview("5479", "123456", "tx-1", new BigDecimal("1234.42"), "description",
+                        new Timestamp(1476449846000L))));
 
-        Response response = service.list("5479", "123456", "", "", "", ui, request);
+        Response response = service.list("5479", "123456", "", "", "", "", "", ui, request);
         TransactionsRepresentation transactions = (TransactionsRepresentation) response.getEntity();
 
         assertEquals(1, transactions.getTransactions().size());
         assertEquals("http://mock/accounts/5479-123456/transactions", transactions.getSelf().getHref());
+        assertNull(transactions.getNext());
+        assertNull(transactions.getPrev());
+    }
+
+    @Test
+    public void testListWithCursor() {
+        UriInfo ui = mock(UriInfo.class);
+        when(ui.getBaseUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock")));
+        when(ui.getRequestUriBuilder()).then(new UriBuilderFactory(URI.create("http://mock/accounts/5479-123456/transactions?elements=1%7C2")));
+
+        Request request = mock(Request.class);
+
+        Cursor at = Cursor.after(Instant.ofEpochMilli(1476449846000L), "tx-1");
+        when(archivist.getTransactions(eq("5479"), eq("123456"), eq(Collections.emptyList()), any(), eq(Optional.empty()), eq(Collections.emptyList()), any()))
+                .thenReturn(Arrays.asList(
+                        new TransactionOverview("5479", "123456", "tx-2", new BigDecimal("1234.42"), "description",
+                                new Timestamp(1476449847000L)),
+                        new TransactionOverview("5479", "123456", "tx-3", new BigDecimal("12.42"), "description",
+                                new Timestamp(1476449848000L))));
+
+        Response response = service.list("5479", "123456", "", "", "1|2", "", at.getToken(), ui, request);
+        TransactionsRepresentation transactions = (TransactionsRepresentation) response.getEntity();
+
+        assertEquals(2, transactions.getTransactions().size());
+        Cursor next = Cursor.getCursor(transactions.getNext().getHref().replaceAll(".*cursor=([^&]*).*", "$1")).get();
+        assertTrue(next.isAfter());
+        assertEquals("tx-3", next.getId());
+        Cursor prev = Cursor.getCursor(transactions.getPrev().getHref().replaceAll(".*cursor=([^&]*).*", "$1")).get();
+        assertFalse(prev.isAfter());
+        assertEquals("tx-2", prev.getId());
     }
 
     @Test
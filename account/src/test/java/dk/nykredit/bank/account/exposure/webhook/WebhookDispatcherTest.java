@@ -0,0 +1,224 @@
+package dk.nykredit.bank.account.exposure.webhook;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import dk.nykredit.bank.account.model.ConsumerOffset;
+import dk.nykredit.bank.account.model.DeadLetter;
+import dk.nykredit.bank.account.model.EventOverview;
+import dk.nykredit.bank.account.model.Subscription;
+import dk.nykredit.bank.account.persistence.AccountArchivist;
+import dk.nykredit.bank.account.persistence.ClusterNode;
+import dk.nykredit.bank.account.persistence.EventNotifier;
+import dk.nykredit.time.CurrentTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WebhookDispatcherTest {
+    private static final String CATEGORY = "5479-123456";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<EventOverview> feed = new CopyOnWriteArrayList<>();
+    private final List<JsonNode> received = new CopyOnWriteArrayList<>();
+    private final List<String> contentTypes = new CopyOnWriteArrayList<>();
+    private final AtomicInteger status = new AtomicInteger(200);
+    private HttpServer server;
+    private AccountArchivist archivist;
+    private EventNotifier notifier;
+    private ClusterNode cluster;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/hook", exchange -> {
+            contentTypes.add(exchange.getRequestHeaders().getFirst("Content-Type"));
+            received.add(MAPPER.readTree(read(exchange.getRequestBody())));
+            exchange.sendResponseHeaders(status.get(), -1);
+            exchange.close();
+        });
+        server.start();
+
+        archivist = mock(AccountArchivist.class);
+        notifier = mock(EventNotifier.class);
+        cluster = mock(ClusterNode.class);
+        when(cluster.lead(anyString(), any(Duration.class))).thenReturn(true);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(notifier).dispatch(any(Runnable.class));
+        URI endpoint = URI.create("http://localhost:" + server.getAddress().getPort() + "/hook");
+        when(archivist.getSubscriptions()).thenReturn(Collections.singletonList(new Subscription("statements", CATEGORY, endpoint)));
+        when(archivist.getConsumerOffsets(Optional.of("statements")))
+                .thenReturn(Collections.singletonList(new ConsumerOffset("statements", CATEGORY, 0L)));
+        when(archivist.getEventsAfter(anyLong(), anyInt()))
+                .then(invocation -> after(null, invocation.getArgument(0), invocation.getArgument(1)));
+        when(archivist.getEventsForCategoryAfter(anyString(), anyLong(), anyInt()))
+                .then(invocation -> after(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        when(archivist.commitConsumerOffset(anyString(), anyString(), anyLong(), anyLong())).thenReturn(true);
+        when(archivist.deadLetter(any(DeadLetter.class), anyLong())).thenReturn(true);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testBatchIsPushedAndCommitted() {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(archivist, notifier, cluster, 10, 10, 2, 3, 0L);
+        store(1L, CATEGORY);
+        store(2L, "other");
+        store(3L, CATEGORY);
+
+        dispatcher.dispatch();
+
+        assertEquals(1, received.size());
+        assertEquals(WebhookDispatcher.MEDIA_TYPE, contentTypes.get(0));
+        JsonNode batch = received.get(0);
+        assertEquals("statements", batch.get("subscription").asText());
+        assertEquals("3", batch.get("lastSequence").asText());
+        assertEquals(2, batch.get("_embedded").get("events").size());
+        assertEquals("event1", batch.get("_embedded").get("events").get(0).get("id").asText());
+        assertTrue(batch.get("_links").get("subscription").get("href").asText().endsWith("/account-events-subscriptions/statements"));
+        verify(archivist).commitConsumerOffset("statements", CATEGORY, 0L, 3L);
+
+        dispatcher.dispatch();
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void testFullQueueCatchesUpFromFeed() {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(archivist, notifier, cluster, 2, 2, 2, 3, 0L);
+        dispatcher.dispatch();
+        for (long sequence = 1L; sequence <= 5L; sequence++) {
+            store(sequence, CATEGORY);
+        }
+
+        dispatcher.dispatch();
+        dispatcher.dispatch();
+        dispatcher.dispatch();
+
+        assertEquals(3, received.size());
+        assertEquals("[1, 2, 3, 4, 5]", received.stream()
+                .flatMap(batch -> sequences(batch).stream())
+                .collect(Collectors.toList()).toString());
+        verify(archivist).commitConsumerOffset("statements", CATEGORY, 4L, 5L);
+    }
+
+    @Test
+    public void testFailingBatchIsRetriedAndDeadLettered() {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(archivist, notifier, cluster, 10, 10, 2, 3, 0L);
+        status.set(503);
+        store(1L, CATEGORY);
+        store(2L, CATEGORY);
+
+        dispatcher.dispatch();
+        dispatcher.dispatch();
+        verify(archivist, never()).deadLetter(any(DeadLetter.class), anyLong());
+        dispatcher.dispatch();
+
+        assertEquals(3, received.size());
+        ArgumentCaptor<DeadLetter> letter = ArgumentCaptor.forClass(DeadLetter.class);
+        verify(archivist).deadLetter(letter.capture(), eq(0L));
+        assertEquals(1L, letter.getValue().getFirstSequence());
+        assertEquals(2L, letter.getValue().getLastSequence());
+        assertEquals(3, letter.getValue().getAttempts());
+        assertEquals("Endpoint responded with status 503", letter.getValue().getReason());
+        verify(archivist, never()).commitConsumerOffset(anyString(), anyString(), anyLong(), anyLong());
+
+        status.set(200);
+        store(3L, CATEGORY);
+        dispatcher.dispatch();
+
+        assertEquals(4, received.size());
+        assertEquals(Collections.singletonList(3L), sequences(received.get(3)));
+        verify(archivist).commitConsumerOffset("statements", CATEGORY, 2L, 3L);
+    }
+
+    @Test
+    public void testRetryIsDelayed() {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(archivist, notifier, cluster, 10, 10, 2, 3, 60000L);
+        status.set(500);
+        store(1L, CATEGORY);
+
+        dispatcher.dispatch();
+        dispatcher.dispatch();
+
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void testOnlyLeaderDelivers() {
+        WebhookDispatcher dispatcher = new WebhookDispatcher(archivist, notifier, cluster, 10, 10, 2, 3, 0L);
+        when(cluster.lead(anyString(), any(Duration.class))).thenReturn(false);
+        store(1L, CATEGORY);
+
+        dispatcher.dispatch();
+
+        assertTrue(received.isEmpty());
+        verify(archivist, never()).getSubscriptions();
+
+        when(cluster.lead(anyString(), any(Duration.class))).thenReturn(true);
+        dispatcher.dispatch();
+        assertEquals(1, received.size());
+    }
+
+    private void store(long sequence, String category) {
+        feed.add(new EventOverview("event" + sequence, sequence, new Timestamp(CurrentTime.now().toEpochMilli()), category,
+                "accounts/" + category + "/event" + sequence));
+    }
+
+    private List<EventOverview> after(String category, long after, int limit) {
+        return feed.stream()
+                .filter(event -> null == category || category.equals(event.getCategory()))
+                .filter(event -> event.getSequence() > after)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private static List<Long> sequences(JsonNode batch) {
+        List<Long> sequences = new ArrayList<>();
+        batch.get("_embedded").get("events").forEach(event -> sequences.add(Long.valueOf(event.get("sequence").asText())));
+        return sequences;
+    }
+
+    private static byte[] read(InputStream input) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+}
@@ -1,6 +1,8 @@
 package dk.nykredit.bank.account.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.math.BigDecimal;
 import java.util.Set;
@@ -20,6 +22,22 @@ public class AccountTest {
         assertEquals(new BigDecimal("1234.42"), transaction.getAmount());
     }
 
+    @Test
+    public void testSummary() {
+        Account account = new Account("5479", "123456", "Savings account");
+        assertEquals(BigDecimal.ZERO, account.getBalance());
+        assertEquals(0, account.getTransactionCount());
+        assertFalse(account.getLastTransactionTime().isPresent());
+
+        Transaction transaction = account.addTransaction("description", new BigDecimal("1234.42"));
+        account.addTransaction("withdrawal", new BigDecimal("-234.40"));
+
+        assertEquals(new BigDecimal("1000.02"), account.getBalance());
+        assertEquals(2, account.getTransactionCount());
+        assertTrue(account.getLastTransactionTime().isPresent());
+        assertTrue(account.getTransactions().contains(transaction));
+    }
+
     @Test
     public void testAddTransactionAndReconcile() {
         Account account = new Account("5479", "123456", "Savings account");
@@ -0,0 +1,102 @@
+package dk.nykredit.bank.account.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class HybridLogicalClockTest {
+    private static final int NODES = 4;
+    private static final int THREADS_PER_NODE = 4;
+    private static final int SEQUENCES_PER_THREAD = 20000;
+
+    @Test
+    public void testMonotonicWithinMillisecond() {
+        HybridLogicalClock clock = new HybridLogicalClock(3, () -> 1000L);
+        long previous = clock.next();
+        for (int i = 0; i < 10000; i++) {
+            long next = clock.next();
+            assertTrue(next > previous);
+            assertEquals(3, HybridLogicalClock.node(next));
+            previous = next;
+        }
+    }
+
+    @Test
+    public void testMonotonicWhenPhysicalClockIsSetBack() {
+        AtomicLong physical = new AtomicLong(1000000L);
+        HybridLogicalClock clock = new HybridLogicalClock(0, physical::get);
+        long before = clock.next();
+        physical.set(1000L);
+        assertTrue(clock.next() > before);
+    }
+
+    @Test
+    public void testObservedSequenceIsPassed() {
+        HybridLogicalClock ahead = new HybridLogicalClock(1, () -> 2000000L);
+        HybridLogicalClock behind = new HybridLogicalClock(2, () -> 1000000L);
+        long observed = ahead.next();
+        assertTrue(behind.next() < observed);
+
+        behind.observe(observed);
+
+        assertTrue(behind.next() > observed);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNodeOutOfRange() {
+        new HybridLogicalClock(HybridLogicalClock.MAX_NODE + 1);
+    }
+
+    /**
+     * Generates sequences on several nodes sharing a jittering physical clock from several threads per node and checks
+     * that every thread sees strictly increasing sequences and that no sequence is generated twice across the nodes.
+     */
+    @Test
+    public void testUniqueAndOrderedAcrossThreadsAndNodes() throws Exception {
+        AtomicLong physical = new AtomicLong(System.currentTimeMillis());
+        ExecutorService executor = Executors.newFixedThreadPool(NODES * THREADS_PER_NODE);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int n = 0; n < NODES; n++) {
+                HybridLogicalClock clock = new HybridLogicalClock(n,
+                        () -> physical.addAndGet(ThreadLocalRandom.current().nextInt(-2, 4)));
+                for (int t = 0; t < THREADS_PER_NODE; t++) {
+                    results.add(executor.submit(generate(clock)));
+                }
+            }
+            Set<Long> sequences = new HashSet<>();
+            for (Future<long[]> result : results) {
+                long[] generated = result.get();
+                for (int i = 0; i < generated.length; i++) {
+                    assertTrue(i == 0 || generated[i] > generated[i - 1]);
+                    assertTrue(sequences.add(generated[i]));
+                }
+            }
+            assertEquals(NODES * THREADS_PER_NODE * SEQUENCES_PER_THREAD, sequences.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Callable<long[]> generate(Sequencer sequencer) {
+        return () -> {
+            long[] generated = new long[SEQUENCES_PER_THREAD];
+            for (int i = 0; i < generated.length; i++) {
+                generated[i] = sequencer.next();
+            }
+            return generated;
+        };
+    }
+}
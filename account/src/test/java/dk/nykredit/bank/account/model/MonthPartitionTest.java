@@ -0,0 +1,25 @@
+package dk.nykredit.bank.account.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+import org.junit.Test;
+
+public class MonthPartitionTest {
+
+    @Test
+    public void testPartitionOfInstant() {
+        assertEquals(201610, MonthPartition.of(Instant.parse("2016-10-14T12:57:26Z")));
+        assertEquals(201612, MonthPartition.of(Instant.parse("2016-12-31T23:59:59.999Z")));
+        assertEquals(201701, MonthPartition.of(Instant.parse("2017-01-01T00:00:00Z")));
+    }
+
+    @Test
+    public void testPartitionIsInUTC() {
+        ZonedDateTime local = ZonedDateTime.of(2017, 1, 1, 0, 30, 0, 0, ZoneId.of("Europe/Copenhagen"));
+        assertEquals(201612, MonthPartition.of(local));
+    }
+}
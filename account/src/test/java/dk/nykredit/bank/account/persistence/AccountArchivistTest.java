@@ -0,0 +1,468 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+import dk.nykredit.api.capabilities.Element;
+import dk.nykredit.api.capabilities.Interval;
+import dk.nykredit.api.capabilities.Sort;
+import dk.nykredit.bank.account.model.Account;
+import dk.nykredit.bank.account.model.AccountOverview;
+import dk.nykredit.bank.account.model.ConsumerOffset;
+import dk.nykredit.bank.account.model.Event;
+import dk.nykredit.bank.account.model.EventOverview;
+import dk.nykredit.bank.account.model.EventSequencer;
+import dk.nykredit.bank.account.model.EventSnapshot;
+import dk.nykredit.bank.account.model.Lease;
+import dk.nykredit.bank.account.model.MonthPartition;
+import dk.nykredit.bank.account.model.OutboxMessage;
+import dk.nykredit.bank.account.model.ReconciledTransaction;
+import dk.nykredit.bank.account.model.Transaction;
+import dk.nykredit.bank.account.model.TransactionOverview;
+import dk.nykredit.time.CurrentTime;
+import org.hibernate.FlushMode;
+import org.hibernate.NaturalIdLoadAccess;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class AccountArchivistTest {
+
+    @Mock
+    EntityManager em;
+
+    @Mock
+    EntityManager replica;
+
+    @Mock
+    ReplicaRouting routing;
+
+    @Mock
+    TransactionArchive archive;
+
+    @Mock
+    EventNotifier notifier;
+
+    @Mock
+    EventLog log;
+
+    @InjectMocks
+    AccountArchivist archivist;
+
+    @Test
+    public void testReadsSupportTransactions() throws Exception {
+        assertEquals(TransactionAttributeType.REQUIRED,
+                AccountArchivist.class.getAnnotation(TransactionAttribute.class).value());
+        assertEquals(TransactionAttributeType.SUPPORTS, attribute("listAccounts"));
+        assertEquals(TransactionAttributeType.SUPPORTS, attribute("findAccount", String.class, String.class));
+        assertEquals(TransactionAttributeType.SUPPORTS, attribute("getEvent", String.class, String.class));
+        assertNull(attribute("save", Account.class));
+        assertNull(attribute("save", Event.class));
+        assertNull(attribute("save", ReconciledTransaction.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testListAccountsIsReadOnly() {
+        TypedQuery<AccountOverview> q = mock(TypedQuery.class);
+        when(replica.createNamedQuery("account.ACCOUNTS", AccountOverview.class)).thenReturn(q);
+
+        archivist.listAccounts();
+
+        verify(q).setHint(QueryHints.READ_ONLY, true);
+        verify(q).setHint(QueryHints.FLUSH_MODE, FlushMode.MANUAL);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetTransactionsIsReadOnly() {
+        TypedQuery<TransactionOverview> q = mock(TypedQuery.class);
+        when(replica.createNamedQuery("account.TRANSACTIONS", TransactionOverview.class)).thenReturn(q);
+        when(q.setMaxResults(500)).thenReturn(q);
+
+        archivist.getTransactions("5479", "123456", Optional.empty(), Optional.empty(), Collections.emptyList());
+
+        verify(q).setHint(QueryHints.READ_ONLY, true);
+        verify(q).setHint(QueryHints.FLUSH_MODE, FlushMode.MANUAL);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFindEventsIsReadOnly() {
+        TypedQuery<EventOverview> q = mock(TypedQuery.class);
+        when(replica.createNamedQuery("account.EVENTS", EventOverview.class)).thenReturn(q);
+        when(replica.createNamedQuery("account.CATEGORY_EVENTS", EventOverview.class)).thenReturn(q);
+
+        archivist.findEvents(Optional.empty());
+        archivist.getEventsForCategory("5479-123456", Optional.empty());
+
+        verify(q, times(2)).setHint(QueryHints.READ_ONLY, true);
+        verify(q, times(2)).setHint(QueryHints.FLUSH_MODE, FlushMode.MANUAL);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCustomShapeIsBuilt() {
+        TypedQuery<TransactionOverview> q = mock(TypedQuery.class);
+        when(replica.createQuery(anyString(), eq(TransactionOverview.class))).thenReturn(q);
+        when(q.setMaxResults(500)).thenReturn(q);
+
+        archivist.getTransactions("5479", "123456", Optional.empty(), Optional.empty(), Sort.getSortings("amount::-"));
+
+        verify(replica).createQuery(QueryPlan.TRANSACTIONS.jpql().replace("order by t.lastModifiedTime ASC, t.id ASC",
+                "order by t.amount DESC, t.lastModifiedTime ASC, t.id ASC"), TransactionOverview.class);
+        verify(replica, never()).createNamedQuery(anyString(), eq(TransactionOverview.class));
+    }
+
+    @Test
+    public void testTransactionQueryPlans() {
+        assertEquals(QueryPlan.TRANSACTIONS, QueryPlan.transactions(false, false, true));
+        assertEquals(QueryPlan.TRANSACTIONS_WITHIN_AFTER, QueryPlan.transactions(true, true, false));
+        assertEquals(QueryPlan.TRANSACTIONS_BEFORE, QueryPlan.transactions(false, true, true));
+        assertTrue(QueryPlan.TRANSACTIONS_WITHIN.jpql().contains("t.partitionMonth between :fromPartition and :toPartition"));
+        assertTrue(QueryPlan.TRANSACTIONS_WITHIN_BEFORE.jpql().endsWith(
+                "and (t.lastModifiedTime<:seekTime or (t.lastModifiedTime=:seekTime and t.id<:seekId)) "
+                + "order by t.lastModifiedTime desc, t.id desc"));
+    }
+
+    @Test
+    public void testSaveAllInBatches() {
+        Account account = new Account("5479", "123456", "Checking account");
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            transactions.add(new Transaction(account, new BigDecimal(i), "description"));
+        }
+
+        archivist.saveAll(transactions);
+
+        verify(em, times(120)).persist(any(Transaction.class));
+        verify(em, times(2)).flush();
+        verify(em, times(2)).clear();
+        verify(routing, times(120)).written("5479-123456");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReadRecentWriteFromPrimary() {
+        TypedQuery<TransactionOverview> q = mock(TypedQuery.class);
+        when(em.createNamedQuery("account.TRANSACTIONS", TransactionOverview.class)).thenReturn(q);
+        when(q.setMaxResults(500)).thenReturn(q);
+        when(routing.readFromPrimary("5479-123456")).thenReturn(true);
+
+        archivist.getTransactions("5479", "123456", Optional.empty(), Optional.empty(), Collections.emptyList());
+
+        verify(em).createNamedQuery("account.TRANSACTIONS", TransactionOverview.class);
+        verify(replica, never()).createNamedQuery(anyString(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMergeArchivedTransactions() {
+        TypedQuery<TransactionOverview> q = mock(TypedQuery.class);
+        when(replica.createNamedQuery("account.TRANSACTIONS_WITHIN", TransactionOverview.class)).thenReturn(q);
+        when(q.setMaxResults(anyInt())).thenReturn(q);
+        Instant now = CurrentTime.now();
+        when(q.getResultList()).thenReturn(Arrays.asList(tx("3", now.minus(20, ChronoUnit.DAYS)), tx("4", now.minus(10, ChronoUnit.DAYS))));
+        when(archive.horizon()).thenReturn(MonthPartition.of(now));
+        when(archive.read(eq("5479"), eq("123456"), anyInt(), anyInt())).thenReturn(Arrays.asList(
+                tx("1", now.minus(900, ChronoUnit.DAYS)), tx("2", now.minus(600, ChronoUnit.DAYS)),
+                tx("3", now.minus(20, ChronoUnit.DAYS)), tx("0", now.minus(2000, ChronoUnit.DAYS))));
+
+        List<TransactionOverview> txs = archivist.getTransactions("5479", "123456", Element.getElement("2|4"),
+                Interval.getInterval("from::-1000d|to::now"), Collections.emptyList());
+
+        verify(q).setMaxResults(4);
+        assertEquals(Arrays.asList("2", "3", "4"), txs.stream().map(TransactionOverview::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testReconciledTransactionsAreNotArchived() {
+        Account account = new Account("5479", "123456", "Checking account");
+        Session session = mock(Session.class, RETURNS_DEEP_STUBS);
+        when(em.unwrap(Session.class)).thenReturn(session);
+        when(session.byNaturalId(Account.class).using(anyString(), any()).using(anyString(), any()).load()).thenReturn(account);
+        @SuppressWarnings("unchecked")
+        TypedQuery<TransactionOverview> q = mock(TypedQuery.class);
+        when(em.createQuery(anyString(), eq(TransactionOverview.class))).thenReturn(q);
+        when(q.getResultList()).thenReturn(Collections.singletonList(tx("1", Instant.parse("2014-01-02T10:00:00Z"))));
+        Query delete = mock(Query.class);
+        when(em.createQuery(anyString())).thenReturn(delete);
+        when(delete.setParameter(anyString(), any())).thenReturn(delete);
+        when(delete.executeUpdate()).thenReturn(1);
+
+        assertEquals(1, archivist.archiveTransactions("5479", "123456", 201501));
+
+        verify(em).createQuery(contains("t not in (select rt.transaction from ReconciledTransaction rt where rt.account=:account)"),
+                eq(TransactionOverview.class));
+        verify(em).createQuery(startsWith("delete from Transaction t where t.account=:account and t.partitionMonth<:beforeMonth and t not in"));
+        verify(archive).append(eq("5479"), eq("123456"), eq(201401), any());
+        verify(routing).written("5479-123456");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRelayOutbox() {
+        OutboxMessage published = new OutboxMessage(URI.create("accounts/5479-123456/transactions/1"), "5479-123456", "new");
+        OutboxMessage pending = new OutboxMessage(URI.create("accounts/5479-123456/transactions/2"), "5479-123456", "new");
+        TypedQuery<OutboxMessage> q = mock(TypedQuery.class);
+        when(em.createQuery(anyString(), eq(OutboxMessage.class))).thenReturn(q);
+        when(q.setLockMode(LockModeType.PESSIMISTIC_WRITE)).thenReturn(q);
+        when(q.setMaxResults(100)).thenReturn(q);
+        when(q.getResultList()).thenReturn(Arrays.asList(published, pending));
+        Session session = mock(Session.class);
+        NaturalIdLoadAccess<Event> lookup = mock(NaturalIdLoadAccess.class);
+        when(em.unwrap(Session.class)).thenReturn(session);
+        when(session.byNaturalId(Event.class)).thenReturn(lookup);
+        when(lookup.using(anyString(), any())).thenReturn(lookup);
+        Event existing = published.toEvent();
+        when(lookup.load()).thenReturn(existing).thenReturn(null);
+        long stored = EventSequencer.next() + (10L << 20);
+        TypedQuery<Long> last = mock(TypedQuery.class);
+        when(em.createQuery("select max(e.sequence) from Event e", Long.class)).thenReturn(last);
+        when(last.getSingleResult()).thenReturn(stored);
+        List<Event> relayed = new ArrayList<>();
+
+        assertEquals(2, archivist.relayOutbox(100, relayed::add));
+
+        assertEquals(existing, relayed.get(0));
+        assertEquals(pending.getDedupeKey(), relayed.get(1).getId());
+        assertTrue(relayed.get(1).getSequence() > stored);
+        verify(em, never()).persist(existing);
+        verify(em).persist(relayed.get(1));
+        verify(em).remove(published);
+        verify(em).remove(pending);
+        verify(notifier).stored("5479-123456");
+    }
+
+    @Test
+    public void testEventsAreKeptInEnabledLog() {
+        when(log.isEnabled()).thenReturn(true);
+        Event event = new Event(URI.create("accounts/5479-123456/transactions/1"), "5479-123456", "new");
+        EventOverview logged = new EventOverview(event.getId(), 42L, new Date(), "5479-123456", "accounts/5479-123456");
+        when(log.read(41L, 10)).thenReturn(Collections.singletonList(logged));
+        when(log.find("5479-123456", event.getId())).thenReturn(Optional.of(event));
+        Event stored = new Event(event.getId(), 43L, event.getOrigin(), event.getTime(), event.getInformation(), "5479-123456");
+        when(log.append(Collections.singletonList(event))).thenReturn(Collections.singletonList(stored));
+
+        assertEquals(stored, archivist.save(event));
+
+        verify(log).append(Collections.singletonList(event));
+        verify(em, never()).persist(any());
+        verify(notifier).stored("5479-123456");
+        assertEquals(Collections.singletonList(logged), archivist.getEventsAfter(41L, 10));
+        assertEquals(event, archivist.getEvent("5479-123456", event.getId()));
+        verify(em, never()).unwrap(Session.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSnapshot() {
+        Account account = new Account("5479", "123456", "Savings");
+        account.addTransaction("salary", new BigDecimal("100.00"));
+        TypedQuery<Account> accounts = mock(TypedQuery.class);
+        when(em.createQuery(startsWith("select a from Account"), eq(Account.class))).thenReturn(accounts);
+        when(accounts.setParameter(anyString(), any())).thenReturn(accounts);
+        when(accounts.setLockMode(LockModeType.PESSIMISTIC_WRITE)).thenReturn(accounts);
+        when(accounts.getResultList()).thenReturn(Collections.singletonList(account));
+        TypedQuery<Long> pending = mock(TypedQuery.class);
+        when(em.createQuery(contains("OutboxMessage"), eq(Long.class))).thenReturn(pending);
+        when(pending.setParameter(anyString(), any())).thenReturn(pending);
+        when(pending.getSingleResult()).thenReturn(1L).thenReturn(0L);
+        TypedQuery<Long> last = mock(TypedQuery.class);
+        when(em.createQuery(contains("max(e.sequence)"), eq(Long.class))).thenReturn(last);
+        when(last.setParameter(anyString(), any())).thenReturn(last);
+        when(last.getSingleResult()).thenReturn(42L);
+        TypedQuery<EventSnapshot> snapshots = mock(TypedQuery.class);
+        when(em.createQuery(contains("EventSnapshot"), eq(EventSnapshot.class))).thenReturn(snapshots);
+        when(snapshots.setParameter(anyString(), any())).thenReturn(snapshots);
+        when(snapshots.getResultList()).thenReturn(Collections.emptyList());
+
+        assertFalse(archivist.snapshot("5479", "123456"));
+        verify(em, never()).persist(any(EventSnapshot.class));
+
+        assertTrue(archivist.snapshot("5479", "123456"));
+        ArgumentCaptor<EventSnapshot> snapshot = ArgumentCaptor.forClass(EventSnapshot.class);
+        verify(em).persist(snapshot.capture());
+        assertEquals("123456-5479", snapshot.getValue().getCategory());
+        assertEquals(42L, snapshot.getValue().getSequence());
+        assertEquals(new BigDecimal("100.00"), snapshot.getValue().getBalance());
+        assertEquals(1L, snapshot.getValue().getTransactionCount());
+
+        when(snapshots.getResultList()).thenReturn(Collections.singletonList(snapshot.getValue()));
+        assertFalse(archivist.snapshot("5479", "123456"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPruneEventsCoveredBySnapshot() {
+        EventSnapshot covered = new EventSnapshot("123456-5479", 42L, new Account("5479", "123456", "Savings"));
+        TypedQuery<EventSnapshot> snapshots = mock(TypedQuery.class);
+        when(em.createQuery(contains("EventSnapshot"), eq(EventSnapshot.class))).thenReturn(snapshots);
+        when(snapshots.setParameter(anyString(), any())).thenReturn(snapshots);
+        when(snapshots.getResultList()).thenReturn(Collections.singletonList(covered));
+        TypedQuery<Long> committed = mock(TypedQuery.class);
+        when(em.createQuery(startsWith("select min(o.watermark)"), eq(Long.class))).thenReturn(committed);
+        when(committed.setParameter(anyString(), any())).thenReturn(committed);
+        when(committed.getSingleResult()).thenReturn(null, 40L);
+        TypedQuery<Object[]> prunable = mock(TypedQuery.class);
+        when(em.createQuery(startsWith("select e.tId"), eq(Object[].class))).thenReturn(prunable);
+        when(prunable.setParameter(anyString(), any())).thenReturn(prunable);
+        when(prunable.setMaxResults(2)).thenReturn(prunable);
+        when(prunable.getResultList()).thenReturn(Arrays.asList(new Object[]{"tid1", 30L}, new Object[]{"tid2", 38L}));
+        Query delete = mock(Query.class);
+        when(em.createQuery(startsWith("delete from Event"))).thenReturn(delete);
+        when(delete.setParameter(anyString(), any())).thenReturn(delete);
+        when(delete.executeUpdate()).thenReturn(2);
+        Instant before = CurrentTime.now();
+
+        assertEquals(2, archivist.pruneEvents("123456-5479", before, 2));
+
+        verify(prunable).setParameter("sequence", 42L);
+        verify(prunable).setParameter("before", Timestamp.from(before));
+        verify(delete).setParameter("events", Arrays.asList("tid1", "tid2"));
+        assertEquals(38L, covered.getPrunedSequence());
+        assertEquals(38L, archivist.getPrunedSequence(Optional.of("123456-5479")));
+
+        archivist.pruneEvents("123456-5479", before, 2);
+        verify(prunable).setParameter("sequence", 40L);
+        verify(committed, times(2)).setParameter("all", ConsumerOffset.ALL);
+    }
+
+    @Test
+    public void testCommitConsumerOffset() {
+        Query update = mock(Query.class);
+        when(em.createQuery(startsWith("update ConsumerOffset"))).thenReturn(update);
+        when(update.setParameter(anyString(), any())).thenReturn(update);
+        when(update.executeUpdate()).thenReturn(0, 0, 0, 1);
+        TypedQuery<ConsumerOffset> offsets = mock(TypedQuery.class);
+        when(em.createQuery(startsWith("select o from ConsumerOffset"), eq(ConsumerOffset.class))).thenReturn(offsets);
+        when(offsets.setParameter(anyString(), any())).thenReturn(offsets);
+        when(offsets.getResultList())
+                .thenReturn(Collections.emptyList())
+                .thenReturn(Collections.singletonList(new ConsumerOffset("statements", "123456-5479", 7L)));
+
+        assertTrue(archivist.commitConsumerOffset("statements", "123456-5479", 0L, 7L));
+        ArgumentCaptor<ConsumerOffset> offset = ArgumentCaptor.forClass(ConsumerOffset.class);
+        verify(em).persist(offset.capture());
+        assertEquals("statements", offset.getValue().getConsumer());
+        assertEquals(7L, offset.getValue().getWatermark());
+
+        assertFalse(archivist.commitConsumerOffset("statements", "123456-5479", 0L, 9L));
+        assertFalse(archivist.commitConsumerOffset("statements", "123456-5479", 5L, 9L));
+        assertTrue(archivist.commitConsumerOffset("statements", "123456-5479", 7L, 9L));
+        verify(update, times(4)).executeUpdate();
+        verify(update, times(2)).setParameter("previous", 0L);
+        verify(update).setParameter("previous", 7L);
+        verify(update, times(3)).setParameter("watermark", 9L);
+        verify(em, times(1)).persist(any(ConsumerOffset.class));
+    }
+
+    @Test
+    public void testConcurrentFirstCommitOfConsumerOffsetFails() {
+        Query update = mock(Query.class);
+        when(em.createQuery(startsWith("update ConsumerOffset"))).thenReturn(update);
+        when(update.setParameter(anyString(), any())).thenReturn(update);
+        when(update.executeUpdate()).thenReturn(0);
+        TypedQuery<ConsumerOffset> offsets = mock(TypedQuery.class);
+        when(em.createQuery(startsWith("select o from ConsumerOffset"), eq(ConsumerOffset.class))).thenReturn(offsets);
+        when(offsets.setParameter(anyString(), any())).thenReturn(offsets);
+        when(offsets.getResultList())
+                .thenReturn(Collections.emptyList())
+                .thenReturn(Collections.singletonList(new ConsumerOffset("statements", "123456-5479", 8L)));
+        doThrow(new PersistenceException("unique constraint violated")).when(em).flush();
+
+        assertFalse(archivist.commitConsumerOffset("statements", "123456-5479", 0L, 7L));
+        verify(em).persist(any(ConsumerOffset.class));
+    }
+
+    @Test(expected = PersistenceException.class)
+    public void testFailingFirstCommitOfConsumerOffset() {
+        Query update = mock(Query.class);
+        when(em.createQuery(startsWith("update ConsumerOffset"))).thenReturn(update);
+        when(update.setParameter(anyString(), any())).thenReturn(update);
+        TypedQuery<ConsumerOffset> offsets = mock(TypedQuery.class);
+        when(em.createQuery(startsWith("select o from ConsumerOffset"), eq(ConsumerOffset.class))).thenReturn(offsets);
+        when(offsets.setParameter(anyString(), any())).thenReturn(offsets);
+        when(offsets.getResultList()).thenReturn(Collections.emptyList());
+        doThrow(new PersistenceException("connection lost")).when(em).flush();
+
+        archivist.commitConsumerOffset("statements", "123456-5479", 0L, 7L);
+    }
+
+    @Test
+    public void testAcquireLease() {
+        Query update = mock(Query.class);
+        when(em.createQuery(startsWith("update Lease"))).thenReturn(update);
+        when(update.setParameter(anyString(), any())).thenReturn(update);
+        when(update.executeUpdate()).thenReturn(0, 1, 0);
+        TypedQuery<Lease> leases = mock(TypedQuery.class);
+        when(em.createQuery(startsWith("select l from Lease"), eq(Lease.class))).thenReturn(leases);
+        when(leases.setParameter(anyString(), any())).thenReturn(leases);
+        when(leases.getResultList())
+                .thenReturn(Collections.emptyList())
+                .thenReturn(Collections.singletonList(new Lease("node-1", "other", CurrentTime.now())));
+
+        assertTrue(archivist.acquireLease("node-1", "owner", Duration.ofMinutes(1)));
+        ArgumentCaptor<Lease> lease = ArgumentCaptor.forClass(Lease.class);
+        verify(em).persist(lease.capture());
+        assertEquals("owner", lease.getValue().getOwner());
+
+        assertTrue(archivist.acquireLease("node-1", "owner", Duration.ofMinutes(1)));
+        assertFalse(archivist.acquireLease("node-1", "owner", Duration.ofMinutes(1)));
+        verify(em, times(1)).persist(any(Lease.class));
+        verify(update, times(3)).setParameter("owner", "owner");
+    }
+
+    private static TransactionOverview tx(String id, Instant time) {
+        return new TransactionOverview("5479", "123456", id, BigDecimal.TEN, "description", Timestamp.from(time));
+    }
+
+    private static TransactionAttributeType attribute(String method, Class<?>... parameterTypes) throws Exception {
+        TransactionAttribute attribute = AccountArchivist.class.getMethod(method, parameterTypes)
+                .getAnnotation(TransactionAttribute.class);
+        return attribute == null ? null : attribute.value();
+    }
+}
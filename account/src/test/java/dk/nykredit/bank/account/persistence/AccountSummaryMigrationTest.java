@@ -0,0 +1,74 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import dk.nykredit.bank.account.model.Account;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class AccountSummaryMigrationTest {
+
+    @Test
+    public void testSummaryIsComputedFromTransactions() throws IOException {
+        EntityManagerFactory emf = TestDatabase.open("accountPersistenceUnit", "migration");
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Account account = new Account("5479", "1234567", "Checking account");
+            em.persist(account);
+            em.persist(account.addTransaction("salary", new BigDecimal("1200.50")));
+            em.persist(account.addTransaction("rent", new BigDecimal("-700.25")));
+            em.persist(new Account("5479", "7654321", "Savings account"));
+            em.getTransaction().commit();
+            em.clear();
+
+            em.getTransaction().begin();
+            for (String statement : Arrays.asList(
+                    "DROP INDEX IDX_BANK_ACCOUNT_BALANCE",
+                    "DROP INDEX IDX_BANK_ACCOUNT_TX_COUNT",
+                    "DROP INDEX IDX_BANK_ACCOUNT_LAST_TX_TS",
+                    "ALTER TABLE BANK_ACCOUNT DROP COLUMN BALANCE",
+                    "ALTER TABLE BANK_ACCOUNT DROP COLUMN TX_COUNT",
+                    "ALTER TABLE BANK_ACCOUNT DROP COLUMN LAST_TX_TS")) {
+                em.createNativeQuery(statement).executeUpdate();
+            }
+            for (String statement : TestDatabase.statements("/db/migration/account-summary.sql")) {
+                em.createNativeQuery(statement).executeUpdate();
+            }
+            em.getTransaction().commit();
+
+            Object[] summary = summary(em, "1234567");
+            assertEquals(0, new BigDecimal("500.25").compareTo((BigDecimal) summary[0]));
+            assertEquals(2L, ((Number) summary[1]).longValue());
+            assertEquals(em.createNativeQuery("select max(LAST_MODIFIED_TS) from BANK_TRANSACTION").getSingleResult(),
+                    summary[2]);
+
+            Object[] empty = summary(em, "7654321");
+            assertEquals(0, BigDecimal.ZERO.compareTo((BigDecimal) empty[0]));
+            assertEquals(0L, ((Number) empty[1]).longValue());
+            assertNull(empty[2]);
+
+            Account migrated = em.createQuery("select a from Account a where a.accountNo = :accountNo", Account.class)
+                    .setParameter("accountNo", "1234567")
+                    .getSingleResult();
+            assertEquals(new BigDecimal("500.25"), migrated.getBalance());
+            assertEquals(2L, migrated.getTransactionCount());
+        } finally {
+            em.close();
+            emf.close();
+        }
+    }
+
+    private static Object[] summary(EntityManager em, String accountNo) {
+        return (Object[]) em.createNativeQuery("select BALANCE, TX_COUNT, LAST_TX_TS from BANK_ACCOUNT where ACCOUNT_NO = ?")
+                .setParameter(1, accountNo)
+                .getSingleResult();
+    }
+}
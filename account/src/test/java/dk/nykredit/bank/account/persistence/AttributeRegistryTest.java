@@ -0,0 +1,88 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.persistence.Query;
+
+import dk.nykredit.api.capabilities.Select;
+import dk.nykredit.api.capabilities.Sort;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class AttributeRegistryTest {
+    private final AttributeRegistry registry = new AttributeRegistry("t")
+            .attribute("amount", "amount")
+            .attribute("lastUpdate", "lastModifiedTime");
+    private final AttributeRegistry selectable = new AttributeRegistry("t")
+            .attribute("id", "id")
+            .attribute("amount", "amount", BigDecimal::new)
+            .sortableAttribute("lastUpdate", "lastModifiedTime");
+
+    @Test
+    public void testNoSorting() {
+        assertEquals("", registry.orderBy(Collections.emptyList()));
+        assertEquals(" order by t.id ASC", registry.orderBy(Collections.emptyList(), "id"));
+    }
+
+    @Test
+    public void testMultipleAttributes() {
+        assertEquals(" order by t.amount DESC, t.lastModifiedTime ASC, t.id ASC",
+                registry.orderBy(Sort.getSortings("amount::-|lastUpdate::+"), "id"));
+        assertEquals(" order by t.lastModifiedTime DESC, t.amount ASC",
+                registry.orderBy(Sort.getSortings("lastUpdate::-|amount"), "lastModifiedTime"));
+    }
+
+    @Test
+    public void testUnregisteredAttributesAreIgnored() {
+        assertEquals(" order by t.amount ASC, t.id ASC",
+                registry.orderBy(Sort.getSortings("description|amount|tId"), "id"));
+        assertEquals(1, registry.sortable(Sort.getSortings("description|amount")).size());
+    }
+
+    @Test
+    public void testNoSelection() {
+        assertEquals("", selectable.where(Collections.emptyList()));
+        Query query = mock(Query.class);
+        selectable.bind(query, Collections.emptyList());
+        verify(query, never()).setParameter(anyString(), any());
+    }
+
+    @Test
+    public void testSelectionOfSameAttributeIsCombined() {
+        Query query = mock(Query.class);
+        assertEquals("t.id in :select_id", selectable.where(Select.getSelections("id::abc|id::def")));
+        selectable.bind(query, Select.getSelections("id::abc|id::def"));
+        verify(query).setParameter("select_id", Arrays.asList("abc", "def"));
+    }
+
+    @Test
+    public void testSelectionOfDifferentAttributes() {
+        Query query = mock(Query.class);
+        assertEquals("t.amount in :select_amount and t.id in :select_id",
+                selectable.where(Select.getSelections("amount::100|id::abc")));
+        selectable.bind(query, Select.getSelections("amount::100|id::abc"));
+        verify(query).setParameter("select_amount", Collections.singletonList(new BigDecimal("100")));
+        verify(query).setParameter("select_id", Collections.singletonList("abc"));
+    }
+
+    @Test
+    public void testUnselectableAttributesAreIgnored() {
+        assertEquals("t.id in :select_id", selectable.where(Select.getSelections("lastUpdate::123|description::x|id::abc")));
+    }
+
+    @Test
+    public void testInconvertibleSelectionSelectsNothing() {
+        Query query = mock(Query.class);
+        assertEquals("1=0", selectable.where(Select.getSelections("amount::abc")));
+        selectable.bind(query, Select.getSelections("amount::abc"));
+        verify(query, never()).setParameter(anyString(), any());
+    }
+}
@@ -0,0 +1,83 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CategoryIndexTest {
+
+    @Test
+    public void testAfterAndWithin() {
+        CategoryIndex index = new CategoryIndex();
+        index.add("5479-123456", 3L, "event3", 300L, 3000L);
+        index.add("5479-123456", 1L, "event1", 100L, 1000L);
+        index.add("5479-654321", 2L, "event2", 200L, 2000L);
+        index.add("5479-123456", 5L, "event5", 500L, 5000L);
+
+        assertEquals(Arrays.asList(100L, 300L, 500L), index.all("5479-123456"));
+        assertEquals(Arrays.asList(300L, 500L), index.after("5479-123456", 1L, 10));
+        assertEquals(Collections.singletonList(300L), index.after("5479-123456", 2L, 1));
+        assertEquals(Collections.singletonList(300L),
+                index.within("5479-123456", Instant.ofEpochMilli(1000L), Instant.ofEpochMilli(5000L)));
+        assertEquals(Optional.of(300L), index.position("5479-123456", "event3"));
+        assertFalse(index.position("5479-654321", "event3").isPresent());
+        assertTrue(index.after("5479-000000", 0L, 10).isEmpty());
+        assertTrue(index.within("5479-000000", Instant.EPOCH, Instant.now()).isEmpty());
+    }
+
+    @Test
+    public void testWithinSeeksByTimeAndOrdersBySequence() {
+        CategoryIndex index = new CategoryIndex();
+        index.add("5479-123456", 1L, "event1", 100L, 1000L);
+        index.add("5479-123456", 4L, "event4", 400L, 4000L);
+        index.add("5479-123456", 7L, "event7", 700L, 2500L);
+        index.add("5479-123456", 8L, "event8", 800L, 2500L);
+        index.add("5479-123456", 9L, "event9", 900L, 6000L);
+
+        assertEquals(Arrays.asList(400L, 700L, 800L),
+                index.within("5479-123456", Instant.ofEpochMilli(1000L), Instant.ofEpochMilli(6000L)));
+        assertEquals(Arrays.asList(700L, 800L),
+                index.within("5479-123456", Instant.ofEpochMilli(2499L), Instant.ofEpochMilli(2501L)));
+        assertTrue(index.within("5479-123456", Instant.ofEpochMilli(2500L), Instant.ofEpochMilli(2500L)).isEmpty());
+        assertTrue(index.within("5479-123456", Instant.ofEpochMilli(6000L), Instant.ofEpochMilli(1000L)).isEmpty());
+    }
+
+    @Test
+    public void testReadWhileAdding() throws Exception {
+        CategoryIndex index = new CategoryIndex();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < 4; w++) {
+                int writer = w;
+                writers.add(executor.submit(() -> {
+                    for (long sequence = writer; sequence < 40000; sequence += 4) {
+                        index.add("category", sequence, "event" + sequence, sequence * 10, sequence);
+                        List<Long> positions = index.after("category", sequence - 100, 50);
+                        for (int i = 1; i < positions.size(); i++) {
+                            assertTrue(positions.get(i) > positions.get(i - 1));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(40000, index.all("category").size());
+    }
+}
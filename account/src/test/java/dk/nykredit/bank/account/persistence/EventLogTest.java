@@ -0,0 +1,223 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import dk.nykredit.bank.account.model.Event;
+import dk.nykredit.bank.account.model.EventOverview;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventLogTest {
+    private static final int SEGMENT_SIZE = 4096;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private EventLog log;
+
+    @After
+    public void close() {
+        if (null != log) {
+            log.close();
+        }
+    }
+
+    @Test
+    public void testAppendAndRead() {
+        log = open();
+        log.append(events(1, 300));
+
+        assertTrue(segments().size() > 1);
+        List<EventOverview> page = log.read(0L, 10);
+        assertEquals(10, page.size());
+        assertEquals(Long.valueOf(1L), page.get(0).getSequence());
+
+        page = log.read(150L, 100);
+        assertEquals(100, page.size());
+        assertEquals(Long.valueOf(151L), page.get(0).getSequence());
+        assertEquals(Long.valueOf(250L), page.get(99).getSequence());
+        assertTrue(log.read(300L, 10).isEmpty());
+
+        List<EventOverview> category = log.read("odd", 100L, 5);
+        assertEquals(Arrays.asList(101L, 103L, 105L, 107L, 109L),
+                category.stream().map(EventOverview::getSequence).collect(Collectors.toList()));
+        assertTrue(log.read("none", 0L, 5).isEmpty());
+
+        Event found = log.find("even", "event42").get();
+        assertEquals(Long.valueOf(42L), found.getSequence());
+        assertEquals("info 42", found.getInformation());
+        assertEquals("accounts/event42", found.getOrigin().getPath());
+        assertFalse(log.find("odd", "event42").isPresent());
+    }
+
+    @Test
+    public void testCountFollowingWatermark() {
+        log = open();
+        log.append(events(1, 300));
+
+        assertEquals(300L, log.count(Optional.empty(), 0L));
+        assertEquals(236L, log.count(Optional.empty(), 64L));
+        assertEquals(100L, log.count(Optional.empty(), 200L));
+        assertEquals(1L, log.count(Optional.empty(), 299L));
+        assertEquals(0L, log.count(Optional.empty(), 300L));
+        assertEquals(50L, log.count(Optional.of("odd"), 200L));
+        assertEquals(0L, log.count(Optional.of("none"), 0L));
+    }
+
+    @Test
+    public void testReadCategoryWithinInterval() {
+        log = open();
+        log.append(events(1, 10));
+
+        List<EventOverview> events = log.read("even", Instant.parse("2016-01-01T10:00:03Z"), Instant.parse("2016-01-01T10:00:08Z"));
+
+        assertEquals(Arrays.asList(4L, 6L), events.stream().map(EventOverview::getSequence).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSequenceFollowsLast() {
+        log = open();
+        log.append(events(10, 10));
+        List<Event> stored = log.append(Collections.singletonList(event(5L, "late")));
+
+        assertEquals(Long.valueOf(20L), stored.get(0).getSequence());
+        assertEquals(Long.valueOf(20L), log.find("odd", "late").get().getSequence());
+        List<EventOverview> events = log.read(19L, 10);
+        assertEquals(1, events.size());
+        assertEquals("late", events.get(0).getId());
+        assertEquals(Long.valueOf(20L), events.get(0).getSequence());
+    }
+
+    @Test
+    public void testReopenRebuildsIndexes() {
+        log = open();
+        log.append(events(1, 200));
+        log.close();
+
+        log = open();
+        assertEquals(200L, log.last());
+        assertEquals(Long.valueOf(181L), log.read(180L, 1).get(0).getSequence());
+        assertEquals(Long.valueOf(182L), log.read("even", 180L, 1).get(0).getSequence());
+        List<EventOverview> all = new ArrayList<>();
+        log.scan(Optional.empty(), all::add);
+        assertEquals(200, all.size());
+    }
+
+    @Test
+    public void testTruncatedTailIsRecovered() throws Exception {
+        log = open();
+        log.append(events(1, 20));
+        log.close();
+
+        Path segment = last(segments());
+        long end = end(segment);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(end - 7);
+        }
+
+        log = open();
+        assertEquals(19L, log.last());
+        assertEquals(19, log.read(0L, 100).size());
+        assertFalse(log.find("even", "event20").isPresent());
+
+        log.append(events(20, 2));
+        List<EventOverview> events = log.read(18L, 100);
+        assertEquals(Arrays.asList(19L, 20L, 21L), events.stream().map(EventOverview::getSequence).collect(Collectors.toList()));
+        log.close();
+
+        log = open();
+        assertEquals(21L, log.last());
+        assertEquals(21, log.read(0L, 100).size());
+    }
+
+    @Test
+    public void testTornTailIsRecovered() throws Exception {
+        log = open();
+        log.append(events(1, 5));
+        log.close();
+
+        Path segment = last(segments());
+        long end = end(segment);
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(end);
+            file.writeInt(100);
+            file.writeInt(0);
+            file.writeLong(6L);
+            file.write(new byte[]{1, 2, 3});
+        }
+
+        log = open();
+        assertEquals(5L, log.last());
+        log.append(events(6, 1));
+        log.close();
+
+        log = open();
+        assertEquals(6, log.read(0L, 100).size());
+        assertTrue(log.find("even", "event6").isPresent());
+    }
+
+    private EventLog open() {
+        return new EventLog(folder.getRoot().getPath(), SEGMENT_SIZE);
+    }
+
+    /**
+     * @return the offset following the last record in the segment, found by walking the record lengths
+     */
+    private static long end(Path segment) throws Exception {
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "r")) {
+            long position = 0;
+            int length;
+            while (position + 16 <= file.length() && (length = readInt(file, position)) > 0) {
+                position += 16 + length;
+            }
+            return position;
+        }
+    }
+
+    private static int readInt(RandomAccessFile file, long position) throws Exception {
+        file.seek(position);
+        return file.readInt();
+    }
+
+    private List<Path> segments() {
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            return files.filter(file -> file.toString().endsWith(".log")).sorted().collect(Collectors.toList());
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static Path last(List<Path> segments) {
+        return segments.get(segments.size() - 1);
+    }
+
+    private static List<Event> events(long first, int count) {
+        List<Event> events = new ArrayList<>();
+        for (long sequence = first; sequence < first + count; sequence++) {
+            events.add(event(sequence, "event" + sequence));
+        }
+        return events;
+    }
+
+    private static Event event(long sequence, String id) {
+        return new Event(id, sequence, URI.create("accounts/" + id), Instant.parse("2016-01-01T10:00:00Z").plusSeconds(sequence), "info " + sequence,
+                sequence % 2 == 0 ? "even" : "odd");
+    }
+}
@@ -0,0 +1,50 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventNotifierTest {
+
+    @Test
+    public void testSignalSubscribersOfCategory() {
+        EventNotifier notifier = new EventNotifier();
+        CompletableFuture<Void> category = notifier.next("5479-123456");
+        CompletableFuture<Void> other = notifier.next("5479-654321");
+        CompletableFuture<Void> all = notifier.next();
+
+        notifier.stored("5479-123456");
+
+        assertTrue(category.isDone());
+        assertTrue(all.isDone());
+        assertFalse(other.isDone());
+        assertFalse(notifier.next("5479-123456").isDone());
+    }
+
+    @Test
+    public void testExpireAbandonedSignals() {
+        EventNotifier notifier = new EventNotifier();
+        notifier.next("5479-123456").cancel(false);
+        CompletableFuture<Void> waiting = notifier.next("5479-123456");
+
+        notifier.expire();
+        notifier.stored("5479-123456");
+
+        assertTrue(waiting.isDone());
+    }
+
+    @Test
+    public void testCapConcurrentStreams() {
+        EventNotifier notifier = new EventNotifier(2);
+
+        assertTrue(notifier.openStream());
+        assertTrue(notifier.openStream());
+        assertFalse(notifier.openStream());
+
+        notifier.closeStream();
+        assertTrue(notifier.openStream());
+    }
+}
@@ -0,0 +1,151 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import dk.nykredit.bank.account.model.Account;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReplicaRoutingTest {
+    private static EntityManagerFactory primary;
+    private static EntityManagerFactory replica;
+
+    @BeforeClass
+    public static void createDatabases() {
+        primary = TestDatabase.open("accountPersistenceUnit", "primary");
+        replica = TestDatabase.open("accountReplicaPersistenceUnit", "replica");
+        new QueryPlanRegistry(primary, replica).register();
+    }
+
+    @AfterClass
+    public static void closeDatabases() {
+        primary.close();
+        replica.close();
+    }
+
+    @Test
+    public void testReadFromReplicaUnlessRecentlyWritten() {
+        ReplicaRouting routing = new ReplicaRouting(60000L);
+        assertFalse(routing.readFromPrimary("5479-123456"));
+        assertFalse(routing.readFromPrimary(ReplicaRouting.ALL));
+
+        routing.written("5479-123456");
+
+        assertTrue(routing.readFromPrimary("5479-123456"));
+        assertFalse(routing.readFromPrimary(ReplicaRouting.ALL));
+        assertFalse(routing.readFromPrimary("5479-654321"));
+
+        routing.written("5479-654321", ReplicaRouting.ALL);
+
+        assertTrue(routing.readFromPrimary("5479-654321"));
+        assertTrue(routing.readFromPrimary(ReplicaRouting.ALL));
+    }
+
+    @Test
+    public void testReadFromReplicaWhenStale() {
+        ReplicaRouting routing = new ReplicaRouting(0L);
+        routing.written("5479-123456");
+
+        assertFalse(routing.readFromPrimary("5479-123456"));
+        routing.expire();
+        assertFalse(routing.readFromPrimary(ReplicaRouting.ALL));
+    }
+
+    @Test
+    public void testWriteIsRecordedWhenCommitted() {
+        TransactionSynchronizationRegistry registry = mock(TransactionSynchronizationRegistry.class);
+        when(registry.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+        ReplicaRouting routing = new ReplicaRouting(60000L, registry);
+
+        routing.written("5479-123456");
+        ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+        verify(registry).registerInterposedSynchronization(synchronization.capture());
+        when(registry.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+        assertFalse(routing.readFromPrimary("5479-123456"));
+
+        synchronization.getValue().afterCompletion(Status.STATUS_COMMITTED);
+        assertTrue(routing.readFromPrimary("5479-123456"));
+    }
+
+    @Test
+    public void testRolledBackWriteIsNotRecorded() {
+        TransactionSynchronizationRegistry registry = mock(TransactionSynchronizationRegistry.class);
+        when(registry.getTransactionStatus()).thenReturn(Status.STATUS_ACTIVE);
+        ReplicaRouting routing = new ReplicaRouting(60000L, registry);
+
+        routing.written("5479-123456");
+        ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+        verify(registry).registerInterposedSynchronization(synchronization.capture());
+        synchronization.getValue().afterCompletion(Status.STATUS_ROLLEDBACK);
+        when(registry.getTransactionStatus()).thenReturn(Status.STATUS_NO_TRANSACTION);
+
+        assertFalse(routing.readFromPrimary("5479-123456"));
+        assertFalse(routing.readFromPrimary(ReplicaRouting.ALL));
+    }
+
+    @Test
+    public void testTransactionLeavesListOnReplica() {
+        EntityManager em = primary.createEntityManager();
+        EntityManager lagging = replica.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Account account = new Account("5479", "5555555", "Budget account");
+            em.persist(account);
+            em.getTransaction().commit();
+
+            AccountArchivist archivist = AccountArchivist.of(em, lagging, new ReplicaRouting(60000L));
+            em.getTransaction().begin();
+            archivist.saveAll(Collections.singletonList(account.addTransaction("groceries", new BigDecimal("-42.50"))));
+            em.getTransaction().commit();
+
+            // the account having the transaction is read from the primary, the list of accounts from the replica
+            assertEquals("Budget account", archivist.getAccountWithTransactions("5479", "5555555").getName());
+            assertTrue(archivist.listAccounts().isEmpty());
+        } finally {
+            em.close();
+            lagging.close();
+        }
+    }
+
+    @Test
+    public void testReadsAreRoutedBetweenDatabases() {
+        EntityManager em = primary.createEntityManager();
+        EntityManager lagging = replica.createEntityManager();
+        try {
+            AccountArchivist archivist = AccountArchivist.of(em, lagging, new ReplicaRouting(60000L));
+            em.getTransaction().begin();
+            archivist.save(new Account("5479", "1234567", "Checking account"));
+            em.getTransaction().commit();
+
+            // the write has not reached the replica, the account is read from the primary within the staleness bound
+            assertEquals(1, archivist.listAccounts().size());
+            assertEquals("Checking account", archivist.getAccountWithTransactions("5479", "1234567").getName());
+
+            // once the staleness bound has passed the accounts are read from the replica
+            AccountArchivist stale = AccountArchivist.of(em, lagging, new ReplicaRouting(0L));
+            em.getTransaction().begin();
+            stale.save(new Account("5479", "7654321", "Savings account"));
+            em.getTransaction().commit();
+            assertEquals(0, stale.listAccounts().size());
+        } finally {
+            em.close();
+            lagging.close();
+        }
+    }
+}
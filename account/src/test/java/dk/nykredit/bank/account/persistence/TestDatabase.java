@@ -0,0 +1,46 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import org.apache.commons.io.IOUtils;
+import org.h2.jdbcx.JdbcDataSource;
+
+/**
+ * Opens a persistence unit on an in-memory H2 database created from the mappings, the database lives until the
+ * factory is closed. The migration scripts are read as the statements they hold.
+ */
+final class TestDatabase {
+
+    private TestDatabase() {
+        // static helper
+    }
+
+    static EntityManagerFactory open(String unit, String name) {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.transactionType", "RESOURCE_LOCAL");
+        properties.put("javax.persistence.jtaDataSource", ds);
+        properties.put("javax.persistence.nonJtaDataSource", ds);
+        properties.put("hibernate.transaction.jta.platform",
+                "org.hibernate.engine.transaction.jta.platform.internal.NoJtaPlatform");
+        properties.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("hibernate.hbm2ddl.auto", "create-drop");
+        return Persistence.createEntityManagerFactory(unit, properties);
+    }
+
+    static String[] statements(String script) throws IOException {
+        try (InputStream in = TestDatabase.class.getResourceAsStream(script)) {
+            String sql = IOUtils.toString(in, StandardCharsets.UTF_8).replaceAll("(?m)^--.*$", "");
+            return Arrays.stream(sql.split(";")).map(String::trim).filter(s -> !s.isEmpty()).toArray(String[]::new);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+import dk.nykredit.bank.account.model.Lease;
+import dk.nykredit.bank.account.model.TransactionOverview;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TransactionArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAppendAndRead() throws Exception {
+        TransactionArchive archive = new TransactionArchive(folder.getRoot().getPath(), 24);
+        archive.append("5479", "123456", 201401, Arrays.asList(tx("1", "2014-01-02T10:00:00Z"), tx("2", "2014-01-03T10:00:00Z")));
+        archive.append("5479", "123456", 201401, Arrays.asList(tx("3", "2014-01-04T10:00:00Z"), tx("1", "2014-01-02T10:00:00Z")));
+        archive.append("5479", "123456", 201402, Arrays.asList(tx("4", "2014-02-01T10:00:00Z")));
+
+        List<TransactionOverview> january = archive.read("5479", "123456", 201401, 201401);
+        assertEquals(3, january.size());
+        assertEquals("1", january.get(0).getId());
+        assertEquals("3", january.get(2).getId());
+        assertEquals(new BigDecimal("12.50"), january.get(0).getAmount());
+        assertEquals("5479", january.get(0).getRegNo());
+        assertEquals(Instant.parse("2014-01-02T10:00:00Z"), january.get(0).getLastModifiedTime().toInstant());
+
+        assertEquals(4, archive.read("5479", "123456", 201312, 201402).size());
+        assertTrue(archive.read("5479", "654321", 201401, 201402).isEmpty());
+    }
+
+    @Test
+    public void testIncompleteAppendIsIgnored() throws Exception {
+        TransactionArchive archive = new TransactionArchive(folder.getRoot().getPath(), 24);
+        archive.append("5479", "123456", 201401, Arrays.asList(tx("1", "2014-01-02T10:00:00Z")));
+        Path segment = folder.getRoot().toPath().resolve("5479-123456").resolve("201401.seg");
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(file.length());
+            file.write(new byte[]{31, -117, 8, 0});
+        }
+
+        assertEquals(1, archive.read("5479", "123456", 201401, 201401).size());
+
+        archive.append("5479", "123456", 201401, Arrays.asList(tx("2", "2014-01-03T10:00:00Z")));
+        assertEquals(2, archive.read("5479", "123456", 201401, 201401).size());
+    }
+
+    @Test
+    public void testSharedByRegisteredNodes() throws Exception {
+        TransactionArchive archive = new TransactionArchive(folder.getRoot().getPath(), 24);
+        TransactionArchive local = new TransactionArchive(folder.newFolder("local").getPath(), 24);
+        archive.register("node-1", "owner1");
+        archive.register("node-2", "owner2");
+        local.register("node-3", "owner3");
+        Lease node1 = new Lease("node-1", "owner1", Instant.now());
+        Lease node2 = new Lease("node-2", "owner2", Instant.now());
+
+        assertTrue(archive.isSharedBy(Arrays.asList(node1, node2)));
+        assertFalse(archive.isSharedBy(Arrays.asList(node1, new Lease("node-3", "owner3", Instant.now()))));
+        assertFalse(archive.isSharedBy(Arrays.asList(node1, new Lease("node-2", "restarted", Instant.now()))));
+    }
+
+    private static TransactionOverview tx(String id, String time) {
+        return new TransactionOverview("5479", "123456", id, new BigDecimal("12.50"), "description " + id,
+                Timestamp.from(Instant.parse(time)));
+    }
+}
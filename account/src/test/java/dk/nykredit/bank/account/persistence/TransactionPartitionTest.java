@@ -0,0 +1,134 @@
+package dk.nykredit.bank.account.persistence;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+
+import dk.nykredit.api.capabilities.Interval;
+import dk.nykredit.bank.account.model.Account;
+import dk.nykredit.bank.account.model.MonthPartition;
+import dk.nykredit.bank.account.model.TransactionOverview;
+import dk.nykredit.time.CurrentTime;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class TransactionPartitionTest {
+    private static EntityManagerFactory emf;
+
+    @BeforeClass
+    public static void createDatabase() {
+        emf = TestDatabase.open("accountPersistenceUnit", "partition");
+        new QueryPlanRegistry(emf, emf).register();
+    }
+
+    @AfterClass
+    public static void closeDatabase() {
+        emf.close();
+    }
+
+    @Test
+    public void testPartitionIsComputedFromTime() throws IOException {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Account account = new Account("5479", "1111111", "Checking account");
+            em.persist(account);
+            em.persist(account.addTransaction("salary", new BigDecimal("1200.50")));
+            em.persist(account.addTransaction("rent", new BigDecimal("-700.25")));
+            em.getTransaction().commit();
+            em.clear();
+
+            em.getTransaction().begin();
+            for (String statement : Arrays.asList(
+                    "DROP INDEX IDX_BANK_TRANSACTION_PARTITION",
+                    "ALTER TABLE BANK_TRANSACTION DROP COLUMN PARTITION_MONTH",
+                    "UPDATE BANK_TRANSACTION SET LAST_MODIFIED_TS = TIMESTAMP '2016-10-14 12:57:26' WHERE DESCRIPTION = 'rent'")) {
+                em.createNativeQuery(statement).executeUpdate();
+            }
+            for (String statement : TestDatabase.statements("/db/migration/transaction-partition.sql")) {
+                em.createNativeQuery(statement).executeUpdate();
+            }
+            em.getTransaction().commit();
+
+            assertEquals(201610, partition(em, "rent"));
+            Timestamp salary = (Timestamp) em.createNativeQuery(
+                    "SELECT LAST_MODIFIED_TS FROM BANK_TRANSACTION WHERE DESCRIPTION = 'salary'").getSingleResult();
+            assertEquals(MonthPartition.of(salary.toInstant()), partition(em, "salary"));
+
+            em.getTransaction().begin();
+            try {
+                em.createNativeQuery("UPDATE BANK_TRANSACTION SET PARTITION_MONTH = NULL").executeUpdate();
+                fail("The partition key must not be null");
+            } catch (PersistenceException e) {
+                // expected
+            } finally {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    @Test
+    public void testIntervalReadsOverlappedMonths() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            Account account = new Account("5479", "2222222", "Savings account");
+            em.persist(account);
+            em.persist(account.addTransaction("recent", new BigDecimal("10.00")));
+            em.persist(account.addTransaction("last quarter", new BigDecimal("20.00")));
+            em.persist(account.addTransaction("last year", new BigDecimal("30.00")));
+            em.getTransaction().commit();
+
+            em.getTransaction().begin();
+            storedAt(em, "recent", CurrentTime.now().minus(1, ChronoUnit.DAYS));
+            storedAt(em, "last quarter", CurrentTime.now().minus(95, ChronoUnit.DAYS));
+            storedAt(em, "last year", CurrentTime.now().minus(400, ChronoUnit.DAYS));
+            em.getTransaction().commit();
+            em.clear();
+
+            AccountArchivist archivist = AccountArchivist.of(em, new ReplicaRouting(0L),
+                    new TransactionArchive("target/archive", 120));
+
+            List<TransactionOverview> recent = archivist.getTransactions("5479", "2222222", Optional.empty(),
+                    Interval.getInterval("from::-14d|to::now"), Collections.emptyList());
+            assertEquals(1, recent.size());
+            assertEquals(new BigDecimal("10.00"), recent.get(0).getAmount());
+
+            List<TransactionOverview> lastHalfYear = archivist.getTransactions("5479", "2222222", Optional.empty(),
+                    Interval.getInterval("from::-180d|to::now"), Collections.emptyList());
+            assertEquals(2, lastHalfYear.size());
+        } finally {
+            em.close();
+        }
+    }
+
+    private static void storedAt(EntityManager em, String description, Instant time) {
+        em.createNativeQuery("UPDATE BANK_TRANSACTION SET LAST_MODIFIED_TS = ?, PARTITION_MONTH = ? WHERE DESCRIPTION = ?")
+                .setParameter(1, Timestamp.from(time))
+                .setParameter(2, MonthPartition.of(time))
+                .setParameter(3, description)
+                .executeUpdate();
+    }
+
+    private static int partition(EntityManager em, String description) {
+        return ((Number) em.createNativeQuery("SELECT PARTITION_MONTH FROM BANK_TRANSACTION WHERE DESCRIPTION = ?")
+                .setParameter(1, description)
+                .getSingleResult()).intValue();
+    }
+}
@@ -0,0 +1,52 @@
+package dk.nykredit.nic.rs;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ServerSentEventOutputTest {
+
+    @Test
+    public void testWriteEventsFollowingWatermark() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        List<Long> watermarks = new ArrayList<>();
+        ServerSentEventOutput<Long, String> output = new ServerSentEventOutput<>(41L,
+                after -> {
+                    watermarks.add(after);
+                    return reads.getAndIncrement() == 0 ? Arrays.asList(42L, 43L) : Collections.<Long>emptyList();
+                },
+                Long::longValue, value -> "event " + value,
+                () -> CompletableFuture.completedFuture(null), Duration.ofMillis(50));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        output.write(bytes);
+        String stream = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+
+        assertTrue(stream.startsWith("id: 42\ndata: \"event 42\"\n\nid: 43\ndata: \"event 43\"\n\n"));
+        assertEquals(Long.valueOf(41L), watermarks.get(0));
+        assertEquals(Long.valueOf(43L), watermarks.get(1));
+    }
+
+    @Test
+    public void testWriteHeartbeatWhenNothingIsSignalled() throws Exception {
+        ServerSentEventOutput<Long, String> output = new ServerSentEventOutput<>(0L,
+                after -> Collections.<Long>emptyList(), Long::longValue, value -> "event " + value,
+                CompletableFuture::new, Duration.ofMillis(50));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        output.write(bytes);
+
+        assertTrue(new String(bytes.toByteArray(), StandardCharsets.UTF_8).startsWith(": heartbeat\n\n"));
+    }
+}